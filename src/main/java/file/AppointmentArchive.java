@@ -0,0 +1,269 @@
+package file;
+
+import model.Appointment;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Cold storage for finished (COMPLETED and CANCELLED) appointments, kept out of
+ * appointments.txt so the resident store and its indexes only hold recent and live
+ * bookings. This is the history API: the AppointmentFileManager queries only see
+ * appointments.txt.
+ *
+ * archiveDue() moves finished appointments dated more than the archive horizon ago
+ * into month files of compressed blocks (ArchiveBuckets), each block a columnar
+ * ArchiveSegment, under src/main/resources/archive. Lookups by ID, student, lecturer
+ * or date range decompress only the blocks whose index entry can match, and lookups
+ * by ID, student or lecturer find those blocks through on-disk indexes rather than
+ * every month's block index. With -Doob.archive=true it runs in the background every
+ * few minutes (AppointmentFileManager schedules it). A month is written and forced before its
+ * appointments are deleted from appointments.txt in one Transaction, so a crash in
+ * between leaves a copy in both places, never in neither; the next run finds the
+ * copy in appointments.txt again and deletes it.
+ *
+ * The count methods work directly on the segments' primitive columns, and
+ * countByMonth on the block indexes alone.
+ */
+public class AppointmentArchive {
+    private static final String PREFIX = "appointments-";
+
+    private static final ArchiveBuckets<Appointment, ArchiveSegment> BUCKETS = new ArchiveBuckets<>(PREFIX,
+            new ArchiveBuckets.Codec<Appointment, ArchiveSegment>() {
+                @Override
+                public byte[] encode(List<Appointment> appointments) throws IOException {
+                    return ArchiveSegment.of(appointments).encode();
+                }
+
+                @Override
+                public ArchiveSegment decode(byte[] content) throws IOException {
+                    return ArchiveSegment.decode(content);
+                }
+
+                @Override
+                public List<Appointment> records(ArchiveSegment segment) {
+                    return segment.appointments();
+                }
+            },
+            Appointment::getAppointmentId, Appointment::getDate,
+            appointment -> new String[] {appointment.getStudentTp(), appointment.getLecturerTp()});
+
+    private AppointmentArchive() {
+    }
+
+    /**
+     * Move finished appointments older than the archive horizon out of appointments.txt
+     * @return Number of appointments moved
+     */
+    public static int archiveDue() {
+        return archiveBefore(ArchiveBuckets.cutoffDate());
+    }
+
+    /**
+     * Move finished appointments dated before a cutoff out of appointments.txt
+     * @param cutoff First yyyy-MM-dd date to keep in appointments.txt
+     * @return Number of appointments moved
+     */
+    public static int archiveBefore(String cutoff) {
+        BUCKETS.lockForWriting();
+        boolean written = false;
+        try {
+            TreeMap<String, ArrayList<Appointment>> byMonth = new TreeMap<>();
+            Transaction transaction = new Transaction();
+            int moved = 0;
+            for (String status : ArchiveSegment.STATUS_NAMES) {
+                for (Appointment appointment : AppointmentFileManager.getAppointmentsByStatus(status)) {
+                    if (ArchiveSegment.archivable(appointment) && appointment.getDate().compareTo(cutoff) < 0) {
+                        byMonth.computeIfAbsent(SlotPartitions.monthOf(appointment.getDate()), m -> new ArrayList<>()).add(appointment);
+                        AppointmentFileManager.delete(transaction, appointment.getAppointmentId());
+                        moved++;
+                    }
+                }
+            }
+            if (byMonth.isEmpty()) {
+                return 0;
+            }
+
+            for (String month : byMonth.keySet()) {
+                // Rewrite the month with what it held; the appointments.txt copy wins for an ID in both
+                LinkedHashMap<String, Appointment> merged = new LinkedHashMap<>();
+                for (Appointment appointment : BUCKETS.readAll(month)) {
+                    merged.put(appointment.getAppointmentId(), appointment);
+                }
+                for (Appointment appointment : byMonth.get(month)) {
+                    merged.put(appointment.getAppointmentId(), appointment);
+                }
+                BUCKETS.write(month, new ArrayList<>(merged.values()));
+                written = true;
+            }
+            transaction.commit();
+            return moved;
+        } catch (IOException e) {
+            // Error reading or writing a month, silent fail; the appointments stay in appointments.txt
+            return 0;
+        } finally {
+            BUCKETS.unlockForWriting(written);
+        }
+    }
+
+    // Every archived appointment, oldest month first
+    public static ArrayList<Appointment> loadAll() {
+        return getAppointmentsBetween(null, null);
+    }
+
+    /**
+     * Archived appointments dated within a range; only the months it covers are read
+     * @param from First date, yyyy-MM-dd, or null for no lower bound
+     * @param to Last date, yyyy-MM-dd, or null for no upper bound
+     */
+    public static ArrayList<Appointment> getAppointmentsBetween(String from, String to) {
+        ArrayList<Appointment> matches = new ArrayList<>();
+        Integer fromDay = from != null ? ArchiveSegment.epochDay(from) : null;
+        Integer toDay = to != null ? ArchiveSegment.epochDay(to) : null;
+        for (ArchiveSegment segment : BUCKETS.blocks(from != null ? SlotPartitions.monthOf(from) : null,
+                                                     to != null ? SlotPartitions.monthOf(to) : null,
+                                                     block -> block.overlaps(from, to))) {
+            int[] epochDays = segment.epochDays;
+            for (int row = 0; row < segment.rows; row++) {
+                if ((fromDay == null || epochDays[row] >= fromDay) && (toDay == null || epochDays[row] <= toDay)) {
+                    matches.add(segment.appointment(row));
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived appointments of one student
+    public static ArrayList<Appointment> getAppointmentsByStudent(String studentTp) {
+        ArrayList<Appointment> matches = new ArrayList<>();
+        for (ArchiveSegment segment : BUCKETS.blocksWithKey(studentTp)) {
+            int code = segment.codeOf(studentTp);
+            if (code < 0) {
+                continue;
+            }
+            int[] students = segment.students;
+            for (int row = 0; row < segment.rows; row++) {
+                if (students[row] == code) {
+                    matches.add(segment.appointment(row));
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived appointments of one lecturer
+    public static ArrayList<Appointment> getAppointmentsByLecturer(String lecturerTp) {
+        ArrayList<Appointment> matches = new ArrayList<>();
+        for (ArchiveSegment segment : BUCKETS.blocksWithKey(lecturerTp)) {
+            int code = segment.codeOf(lecturerTp);
+            if (code < 0) {
+                continue;
+            }
+            int[] lecturers = segment.lecturers;
+            for (int row = 0; row < segment.rows; row++) {
+                if (lecturers[row] == code) {
+                    matches.add(segment.appointment(row));
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived appointments with a status; only COMPLETED and CANCELLED are ever archived
+    public static ArrayList<Appointment> getAppointmentsByStatus(String status) {
+        ArrayList<Appointment> matches = new ArrayList<>();
+        byte code = ArchiveSegment.statusCode(status);
+        if (code < 0) {
+            return matches;
+        }
+        for (ArchiveSegment segment : allBlocks()) {
+            byte[] statuses = segment.statuses;
+            for (int row = 0; row < segment.rows; row++) {
+                if (statuses[row] == code) {
+                    matches.add(segment.appointment(row));
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived appointment by ID, or null; the ID index names the one block to decompress
+    public static Appointment findById(String appointmentId) {
+        for (ArchiveSegment segment : BUCKETS.blocksWithId(appointmentId)) {
+            for (int row = 0; row < segment.rows; row++) {
+                if (segment.ids[row].equals(appointmentId)) {
+                    return segment.appointment(row);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Highest appointment ID number archived, without decompressing any block
+    public static long highestIdNumber() {
+        return BUCKETS.highestId();
+    }
+
+    // Number of archived appointments per lecturer TP
+    public static LinkedHashMap<String, Integer> countByLecturer() {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        for (ArchiveSegment segment : allBlocks()) {
+            addCounts(counts, segment.people, histogram(segment.lecturers, segment.rows, segment.people.length));
+        }
+        return counts;
+    }
+
+    // Number of archived appointments per student TP
+    public static LinkedHashMap<String, Integer> countByStudent() {
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        for (ArchiveSegment segment : allBlocks()) {
+            addCounts(counts, segment.people, histogram(segment.students, segment.rows, segment.people.length));
+        }
+        return counts;
+    }
+
+    // Number of archived appointments per status (COMPLETED, CANCELLED)
+    public static LinkedHashMap<String, Integer> countByStatus() {
+        int[] totals = new int[ArchiveSegment.STATUS_NAMES.length];
+        for (ArchiveSegment segment : allBlocks()) {
+            byte[] statuses = segment.statuses;
+            for (int row = 0; row < segment.rows; row++) {
+                totals[statuses[row]]++;
+            }
+        }
+        LinkedHashMap<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < totals.length; i++) {
+            counts.put(ArchiveSegment.STATUS_NAMES[i], totals[i]);
+        }
+        return counts;
+    }
+
+    // Number of archived appointments per month, keyed "yyyy-MM" in ascending order
+    public static TreeMap<String, Integer> countByMonth() {
+        return BUCKETS.rowsByMonth();
+    }
+
+    // Count of each dictionary code in a code column
+    private static int[] histogram(int[] column, int rows, int codes) {
+        int[] counts = new int[codes];
+        for (int row = 0; row < rows; row++) {
+            counts[column[row]]++;
+        }
+        return counts;
+    }
+
+    private static void addCounts(LinkedHashMap<String, Integer> counts, String[] people, int[] perCode) {
+        for (int code = 0; code < perCode.length; code++) {
+            if (perCode[code] > 0) {
+                counts.merge(people[code], perCode[code], Integer::sum);
+            }
+        }
+    }
+
+    // Every block of every month
+    private static ArrayList<ArchiveSegment> allBlocks() {
+        return BUCKETS.blocks(null, null, block -> true);
+    }
+}
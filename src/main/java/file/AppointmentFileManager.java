@@ -3,126 +3,126 @@ package file;
 import model.Appointment;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.List;
 
 public class AppointmentFileManager {
     private static final String FILE_PATH = "src" + File.separator + "main" + File.separator + "resources" + File.separator + "appointments.txt";
 
-    // Load all appointments from file
-    public static ArrayList<Appointment> loadAll() {
-        ArrayList<Appointment> appointments = new ArrayList<>();
-        File file = new File(FILE_PATH);
-        
-        if (!file.exists()) {
-            return appointments;
+    // Secondary index names
+    private static final String BY_LECTURER = "lecturer";
+    private static final String BY_STUDENT = "student";
+    private static final String BY_STATUS = "status";
+
+    // Resident copy of appointments.txt, parsed once and written through on every change
+    private static final RecordStore<Appointment> STORE = new RecordStore<Appointment>(FILE_PATH, AppointmentFileManager::parse, Appointment::getAppointmentId, Appointment::toFields)
+            .withIndex(BY_LECTURER, Appointment::getLecturerTp)
+            .withIndex(BY_STUDENT, Appointment::getStudentTp)
+            .withIndex(BY_STATUS, appointment -> appointment.getStatus().toUpperCase());
+
+    // Appointment IDs, archived ones included
+    private static final IdSequence IDS = new IdSequence("appointments", "A", () -> Math.max(
+            IdSequence.highest(STORE.loadAll(), Appointment::getAppointmentId),
+            AppointmentArchive.highestIdNumber()));
+
+    static {
+        // Move old finished appointments to the archive now and then, if archiving is on
+        if (ArchiveBuckets.ENABLED) {
+            LogCompactor.scheduleEvery(AppointmentArchive::archiveDue, ArchiveBuckets.PERIOD_MINUTES);
         }
+    }
 
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-                
-                String[] parts = line.split("\\|");
-                if (parts.length >= 8) {
-                    String appointmentId = parts[0];
-                    String requestId = parts[1];
-                    String studentTp = parts[2];
-                    String lecturerTp = parts[3];
-                    String slotId = parts[4];
-                    String date = parts[5];
-                    String startTime = parts[6];
-                    String status = parts[7];
-                    String cancelReason = parts.length >= 9 ? parts[8] : null;
-                    
-                    Appointment appointment = new Appointment(appointmentId, requestId, studentTp, 
-                                                             lecturerTp, slotId, date, startTime, status, cancelReason);
-                    appointments.add(appointment);
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
+    // Parse one line of appointments.txt, or null if it is malformed
+    private static Appointment parse(PipeRecord line) {
+        if (line.fieldCount() < 8) {
+            return null;
         }
-        
-        return appointments;
+        String appointmentId = line.field(0);
+        String requestId = line.field(1);
+        String studentTp = line.field(2);
+        String lecturerTp = line.field(3);
+        String slotId = line.field(4);
+        String date = line.field(5);
+        String startTime = line.field(6);
+        String status = line.field(7);
+        // A trailing empty cancelReason column is not counted, so it reads as null
+        String cancelReason = line.fieldOr(8, null);
+
+        return new Appointment(appointmentId, requestId, studentTp,
+                               lecturerTp, slotId, date, startTime, status, cancelReason);
+    }
+
+    // Load all appointments; archived ones are only in AppointmentArchive
+    public static ArrayList<Appointment> loadAll() {
+        return STORE.loadAll();
+    }
+
+    // Immutable view of every appointment as of the last write, read without locking or copying; archived ones are only in AppointmentArchive
+    public static List<Appointment> viewAll() {
+        return STORE.view();
     }
 
     // Save all appointments to file
     public static void saveAll(ArrayList<Appointment> appointments) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            for (Appointment appointment : appointments) {
-                writer.println(appointment.toString());
-            }
-        } catch (IOException e) {
-            // Error saving, silent fail
-        }
+        STORE.saveAll(appointments);
     }
 
-    // Append one appointment to file
-    public static void appendOne(Appointment appointment) {
-        try (FileWriter fw = new FileWriter(FILE_PATH, true);
-             PrintWriter writer = new PrintWriter(fw)) {
-            writer.println(appointment.toString());
-        } catch (IOException e) {
-            // Error appending, silent fail
-        }
+    // Append one appointment to file; false if it could not be written
+    public static boolean appendOne(Appointment appointment) {
+        return STORE.append(appointment);
+    }
+
+    // Stage appending an appointment as part of a transaction
+    public static void appendOne(Transaction transaction, Appointment appointment) {
+        transaction.append(STORE, appointment);
+    }
+
+    // Next unused appointment ID
+    public static String nextId() {
+        return IDS.next();
+    }
+
+    // Reserve consecutive appointment IDs for a bulk insert
+    public static ArrayList<String> nextIds(int count) {
+        return IDS.next(count);
     }
 
     // Find appointment by ID
     public static Appointment findById(String appointmentId) {
-        ArrayList<Appointment> appointments = loadAll();
-        for (Appointment appointment : appointments) {
-            if (appointment.getAppointmentId().equals(appointmentId)) {
-                return appointment;
-            }
-        }
-        return null;
+        return STORE.findById(appointmentId);
     }
 
     // Update appointment
     public static boolean update(Appointment updatedAppointment) {
-        ArrayList<Appointment> appointments = loadAll();
-        for (int i = 0; i < appointments.size(); i++) {
-            if (appointments.get(i).getAppointmentId().equals(updatedAppointment.getAppointmentId())) {
-                appointments.set(i, updatedAppointment);
-                saveAll(appointments);
-                return true;
-            }
-        }
-        return false;
+        return STORE.update(updatedAppointment);
+    }
+
+    // Stage an appointment update as part of a transaction
+    public static void update(Transaction transaction, Appointment updatedAppointment) {
+        transaction.update(STORE, updatedAppointment);
     }
 
     // Delete appointment by ID
     public static boolean delete(String appointmentId) {
-        ArrayList<Appointment> appointments = loadAll();
-        boolean removed = appointments.removeIf(appointment -> 
-            appointment.getAppointmentId().equals(appointmentId));
-        if (removed) {
-            saveAll(appointments);
-        }
-        return removed;
+        return STORE.delete(appointmentId);
+    }
+
+    // Stage deleting an appointment as part of a transaction
+    public static void delete(Transaction transaction, String appointmentId) {
+        transaction.delete(STORE, appointmentId);
     }
 
     // Get appointments by lecturer TP
     public static ArrayList<Appointment> getAppointmentsByLecturer(String lecturerTp) {
-        ArrayList<Appointment> allAppointments = loadAll();
-        ArrayList<Appointment> lecturerAppointments = new ArrayList<>();
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getLecturerTp().equals(lecturerTp)) {
-                lecturerAppointments.add(appointment);
-            }
-        }
-        return lecturerAppointments;
+        return STORE.findBy(BY_LECTURER, lecturerTp);
     }
 
     // Get appointments by student TP
     public static ArrayList<Appointment> getAppointmentsByStudent(String studentTp) {
-        ArrayList<Appointment> allAppointments = loadAll();
-        ArrayList<Appointment> studentAppointments = new ArrayList<>();
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getStudentTp().equals(studentTp)) {
-                studentAppointments.add(appointment);
-            }
-        }
-        return studentAppointments;
+        return STORE.findBy(BY_STUDENT, studentTp);
+    }
+
+    // Get appointments by status (SCHEDULED, COMPLETED, CANCELLED)
+    public static ArrayList<Appointment> getAppointmentsByStatus(String status) {
+        return STORE.findBy(BY_STATUS, status.toUpperCase());
     }
 }
@@ -0,0 +1,806 @@
+package file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The month buckets of one archive: a file per month of record dates,
+ * src/main/resources/archive/appointments-2025-11.blk, holding every archived record
+ * of that month.
+ *
+ * A month's records are sorted by ID and cut into blocks of BLOCK_ROWS, each encoded
+ * by the archive's Codec and compressed on its own with Deflater. The block index at
+ * the front of the file gives, per block, its ID number range, date range, the keys
+ * its records are looked up by (student and lecturer TPs) and where its bytes are.
+ * A query reads only the index, then decompresses just the blocks whose ranges or
+ * keys can match. Decoded blocks are kept in a small LRU cache.
+ *
+ * Lookups by ID or key do not even read every month's block index: two SparseIndex
+ * files next to the months, appointments-ids.idx and appointments-keys.idx, map each
+ * ID and each key to the blocks holding it, so such a lookup reads a page or two of
+ * one of them and then one block per match. They are brought up to date at the end
+ * of every archiving run, and built from the months the first time. A month written
+ * after the indexes (the files' sizes and times are recorded in them) is searched
+ * through its block index instead until then.
+ *
+ * Layout, big-endian: magic "OOBK", version (short), reserved (short), block count
+ * (int), index length (int), the index entries, the CRC32C of the index (int), then
+ * the compressed blocks. Offsets in the index count from the end of the index, and
+ * each entry carries the CRC32C of its compressed block, checked before the block is
+ * inflated. A damaged block is left out of queries; when its month is next rewritten
+ * the block's bytes go to the Quarantine and the other blocks are kept.
+ *
+ * Archiving rewrites the months it adds records to, in full, with
+ * DataFiles.replaceAtomically.
+ *
+ * Archiving is off by default: archived records are only reached through the history
+ * views (Repositories.archive()), not the dashboards' lists. With -Doob.archive=true,
+ * records are due for archiving once their date is more than HORIZON_DAYS in the
+ * past. The horizon and the time between archival runs are set with
+ * -Doob.archive.horizonDays (default 30) and -Doob.archive.periodMinutes (default 60).
+ *
+ * @param <T> Archived record
+ * @param <B> Decoded form of one block
+ */
+final class ArchiveBuckets<T, B> {
+    static final Path DIRECTORY = Paths.get("src", "main", "resources", "archive");
+    static final boolean ENABLED = Boolean.getBoolean("oob.archive");
+    static final int HORIZON_DAYS = Integer.getInteger("oob.archive.horizonDays", 30);
+    static final long PERIOD_MINUTES = Math.max(1, Long.getLong("oob.archive.periodMinutes", 60));
+    static final int BLOCK_ROWS = 256;
+    private static final String SUFFIX = ".blk";
+    private static final int MAGIC = 0x4F4F424B;
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    private static final int CACHED_BLOCKS = 64;
+
+    // Encoding of one block of records, before compression
+    interface Codec<T, B> {
+        byte[] encode(List<T> records) throws IOException;
+
+        B decode(byte[] content) throws IOException;
+
+        List<T> records(B block);
+    }
+
+    // One block index entry
+    static final class Block {
+        final long firstId;
+        final long lastId;
+        final String firstDate;
+        final String lastDate;
+        final String[] keys;
+        final int rows;
+        final long offset;
+        final int length;
+        final int rawLength;
+        final int crc;
+
+        Block(long firstId, long lastId, String firstDate, String lastDate, String[] keys,
+              int rows, long offset, int length, int rawLength, int crc) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.firstDate = firstDate;
+            this.lastDate = lastDate;
+            this.keys = keys;
+            this.rows = rows;
+            this.offset = offset;
+            this.length = length;
+            this.rawLength = rawLength;
+            this.crc = crc;
+        }
+
+        // Whether a record with this ID can be in the block
+        boolean mayHoldId(String id) {
+            long number = IdSequence.numberOf(id);
+            return number >= firstId && number <= lastId;
+        }
+
+        // Whether some record of the block can be dated within a range (null bounds are open)
+        boolean overlaps(String from, String to) {
+            return (from == null || lastDate.compareTo(from) >= 0) && (to == null || firstDate.compareTo(to) <= 0);
+        }
+
+        // Whether some record of the block is looked up by this key
+        boolean hasKey(String key) {
+            return Arrays.binarySearch(keys, key) >= 0;
+        }
+    }
+
+    private final String prefix;
+    private final Codec<T, B> codec;
+    private final Function<T, String> idOf;
+    private final Function<T, String> dateOf;
+    private final Function<T, String[]> keysOf;
+    private final SharedFileLock fileLock;
+    private final SparseIndex idIndex;
+    private final SparseIndex keyIndex;
+
+    // One writer at a time in this process; the file lock lets threads of one process share it
+    private final ReentrantLock writing = new ReentrantLock();
+
+    // Month list, block indexes and recently decoded blocks; dropped when another process writes
+    private TreeSet<String> months;
+    private final HashMap<String, Block[]> indexes = new HashMap<>();
+    private final HashMap<String, long[]> stamps = new HashMap<>();
+
+    // Index entries of the months written in this archiving run, by month
+    private final HashMap<String, ArrayList<SparseIndex.Entry>> writtenIds = new HashMap<>();
+    private final HashMap<String, ArrayList<SparseIndex.Entry>> writtenKeys = new HashMap<>();
+    private final LinkedHashMap<String, B> decoded = new LinkedHashMap<String, B>(CACHED_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, B> eldest) {
+            return size() > CACHED_BLOCKS;
+        }
+    };
+
+    /**
+     * @param prefix File name prefix, e.g. "appointments-"
+     * @param codec Encoding of a block's records
+     * @param idOf ID of a record
+     * @param dateOf yyyy-MM-dd date of a record
+     * @param keysOf Keys a record is looked up by
+     */
+    ArchiveBuckets(String prefix, Codec<T, B> codec, Function<T, String> idOf,
+                   Function<T, String> dateOf, Function<T, String[]> keysOf) {
+        this.prefix = prefix;
+        this.codec = codec;
+        this.idOf = idOf;
+        this.dateOf = dateOf;
+        this.keysOf = keysOf;
+        this.fileLock = new SharedFileLock(Paths.get("src", "main", "resources", prefix + "archive.lock"));
+        this.idIndex = new SparseIndex(DIRECTORY.resolve(prefix + "ids.idx"));
+        this.keyIndex = new SparseIndex(DIRECTORY.resolve(prefix + "keys.idx"));
+    }
+
+    // Records dated before this yyyy-MM-dd date are due for archiving
+    static String cutoffDate() {
+        return LocalDate.now().minusDays(HORIZON_DAYS).toString();
+    }
+
+    /**
+     * Decoded blocks, oldest month first, of the months in a month range whose index
+     * entry passes a test; no other block is read. Damaged blocks are left out.
+     * @param fromMonth First month, yyyy-MM, or null for no lower bound
+     * @param toMonth Last month, yyyy-MM, or null for no upper bound
+     * @param wanted Test on each block's index entry
+     */
+    synchronized ArrayList<B> blocks(String fromMonth, String toMonth, Predicate<Block> wanted) {
+        ArrayList<B> matches = new ArrayList<>();
+        // Held throughout so no other process replaces a file between its index and its blocks
+        boolean stale = fileLock.lockShared();
+        try {
+            if (stale || months == null) {
+                reload();
+            }
+            for (String month : between(fromMonth, toMonth)) {
+                for (Block block : index(month)) {
+                    if (wanted.test(block)) {
+                        B decodedBlock = block(month, block);
+                        if (decodedBlock != null) {
+                            matches.add(decodedBlock);
+                        }
+                    }
+                }
+            }
+        } finally {
+            fileLock.unlockShared();
+        }
+        return matches;
+    }
+
+    /**
+     * Decoded blocks, oldest month first, that may hold the record with an ID; found
+     * through the ID index, so only the blocks holding it are read
+     */
+    synchronized ArrayList<B> blocksWithId(String id) {
+        return indexed(idIndex, id, block -> block.mayHoldId(id));
+    }
+
+    /**
+     * Decoded blocks, oldest month first, holding records looked up by a key; found
+     * through the key index, so only the blocks holding it are read
+     */
+    synchronized ArrayList<B> blocksWithKey(String key) {
+        return indexed(keyIndex, key, block -> block.hasKey(key));
+    }
+
+    // Blocks an on-disk index lists for a key; months it does not cover are searched through their block indexes
+    private ArrayList<B> indexed(SparseIndex index, String key, Predicate<Block> wanted) {
+        ArrayList<B> matches = new ArrayList<>();
+        boolean stale = fileLock.lockShared();
+        try {
+            if (stale || months == null) {
+                reload();
+            }
+            LinkedHashMap<String, long[]> covered = index.stamps();
+            ArrayList<SparseIndex.Entry> entries = covered != null ? index.find(key) : null;
+            if (entries == null) {
+                covered = new LinkedHashMap<>();
+                entries = new ArrayList<>();
+            }
+
+            TreeMap<String, ArrayList<Block>> found = new TreeMap<>();
+            for (String month : months) {
+                if (!Arrays.equals(covered.get(month), stamp(month))) {
+                    for (Block block : index(month)) {
+                        if (wanted.test(block)) {
+                            found.computeIfAbsent(month, m -> new ArrayList<>()).add(block);
+                        }
+                    }
+                }
+            }
+            for (SparseIndex.Entry entry : entries) {
+                if (months.contains(entry.month) && Arrays.equals(covered.get(entry.month), stamp(entry.month))) {
+                    Block block = blockAt(entry.month, entry.offset);
+                    if (block != null) {
+                        found.computeIfAbsent(entry.month, m -> new ArrayList<>()).add(block);
+                    }
+                }
+            }
+            for (String month : found.keySet()) {
+                for (Block block : found.get(month)) {
+                    B decodedBlock = block(month, block);
+                    if (decodedBlock != null) {
+                        matches.add(decodedBlock);
+                    }
+                }
+            }
+        } finally {
+            fileLock.unlockShared();
+        }
+        return matches;
+    }
+
+    // Highest ID number archived, from the block indexes alone
+    synchronized long highestId() {
+        refresh();
+        long highest = 0;
+        for (String month : months) {
+            for (Block block : index(month)) {
+                highest = Math.max(highest, block.lastId);
+            }
+        }
+        return highest;
+    }
+
+    // Number of archived records per month, from the block indexes alone
+    synchronized TreeMap<String, Integer> rowsByMonth() {
+        refresh();
+        TreeMap<String, Integer> counts = new TreeMap<>();
+        for (String month : months) {
+            int rows = 0;
+            for (Block block : index(month)) {
+                rows += block.rows;
+            }
+            if (rows > 0) {
+                counts.put(month, rows);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Every record of a month, for rewriting it; caller holds the write lock. Blocks
+     * that fail their checksum are quarantined and left out, so the rewrite keeps the rest.
+     * @return The records, empty if the month has no file yet
+     * @throws IOException if the file exists but its index cannot be read, so it is not overwritten
+     */
+    synchronized List<T> readAll(String month) throws IOException {
+        ArrayList<T> records = new ArrayList<>();
+        if (!months.contains(month)) {
+            return records;
+        }
+        Path path = path(month);
+        LoadedRecords<T> damaged = new LoadedRecords<>();
+        for (Block block : readIndex(path)) {
+            try {
+                records.addAll(codec.records(decodeBlock(path, block)));
+            } catch (IOException e) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    damaged.damagedBlocks.add(readAt(channel, block.offset, block.length).array());
+                }
+            }
+        }
+        Quarantine.save(path.getFileName().toString(), damaged);
+        return records;
+    }
+
+    // Take the write lock and read the month list afresh
+    void lockForWriting() {
+        writing.lock();
+        fileLock.lockExclusive();
+        synchronized (this) {
+            reload();
+        }
+    }
+
+    // Bring the ID and key indexes up to date, then release the write lock
+    void unlockForWriting(boolean written) {
+        boolean indexed = false;
+        try {
+            indexed = updateIndexes();
+        } finally {
+            try {
+                fileLock.unlockExclusive(written || indexed);
+            } finally {
+                writing.unlock();
+            }
+        }
+    }
+
+    /**
+     * Replace a month's file with these records, and force it to disk; caller holds
+     * the write lock
+     */
+    void write(String month, List<T> records) throws IOException {
+        ArrayList<T> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparingLong((T record) -> IdSequence.numberOf(idOf.apply(record)))
+                .thenComparing(idOf));
+
+        ArrayList<Block> index = new ArrayList<>();
+        ByteArrayOutputStream data = new ByteArrayOutputStream(sorted.size() * 16 + 64);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for (int start = 0; start < sorted.size(); start += BLOCK_ROWS) {
+                List<T> rows = sorted.subList(start, Math.min(sorted.size(), start + BLOCK_ROWS));
+                byte[] raw = codec.encode(rows);
+                byte[] compressed = deflate(deflater, raw);
+                index.add(describe(rows, data.size(), compressed.length, raw.length,
+                                   RecordChecksum.of(compressed, 0, compressed.length)));
+                data.write(compressed, 0, compressed.length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(index.size() * 64);
+        DataOutputStream out = new DataOutputStream(indexBytes);
+        for (Block block : index) {
+            out.writeLong(block.firstId);
+            out.writeLong(block.lastId);
+            out.writeUTF(block.firstDate);
+            out.writeUTF(block.lastDate);
+            out.writeShort(block.keys.length);
+            for (String key : block.keys) {
+                out.writeUTF(key);
+            }
+            out.writeInt(block.rows);
+            out.writeLong(block.offset);
+            out.writeInt(block.length);
+            out.writeInt(block.rawLength);
+            out.writeInt(block.crc);
+        }
+        out.flush();
+        byte[] indexContent = indexBytes.toByteArray();
+        out.writeInt(RecordChecksum.of(indexContent, 0, indexContent.length));
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(index.size()).putInt(indexBytes.size());
+        ByteArrayOutputStream file = new ByteArrayOutputStream(HEADER_BYTES + indexBytes.size() + data.size());
+        file.write(header.array(), 0, HEADER_BYTES);
+        indexBytes.writeTo(file);
+        data.writeTo(file);
+
+        Files.createDirectories(DIRECTORY);
+        // Index entries point at blocks by their offset in the file
+        long dataStart = HEADER_BYTES + (long) indexBytes.size();
+        ArrayList<SparseIndex.Entry> ids = new ArrayList<>(sorted.size());
+        ArrayList<SparseIndex.Entry> keys = new ArrayList<>();
+        for (int i = 0; i < index.size(); i++) {
+            Block block = index.get(i);
+            for (T record : sorted.subList(i * BLOCK_ROWS, i * BLOCK_ROWS + block.rows)) {
+                ids.add(new SparseIndex.Entry(idOf.apply(record), month, dataStart + block.offset));
+            }
+            for (String key : block.keys) {
+                keys.add(new SparseIndex.Entry(key, month, dataStart + block.offset));
+            }
+        }
+
+        Files.createDirectories(DIRECTORY);
+        // Under the monitor, so no reader pairs the old index with the new file
+        synchronized (this) {
+            DataFiles.replaceAtomically(path(month), file.toByteArray());
+            months.add(month);
+            indexes.remove(month);
+            stamps.remove(month);
+            decoded.keySet().removeIf(key -> key.startsWith(month + "@"));
+            writtenIds.put(month, ids);
+            writtenKeys.put(month, keys);
+        }
+    }
+
+    /**
+     * Rewrite the ID and key indexes if a month was written, or changed since they
+     * were built; caller holds the write lock
+     * @return Whether an index file was written
+     */
+    private boolean updateIndexes() {
+        LinkedHashMap<String, long[]> current = new LinkedHashMap<>();
+        TreeSet<String> changed = new TreeSet<>();
+        synchronized (this) {
+            for (String month : months) {
+                current.put(month, stamp(month));
+            }
+            changed.addAll(writtenIds.keySet());
+        }
+        boolean complete = true;
+        for (SparseIndex index : new SparseIndex[] {idIndex, keyIndex}) {
+            LinkedHashMap<String, long[]> covered = index.stamps();
+            if (covered == null) {
+                covered = new LinkedHashMap<>();
+            }
+            for (String month : current.keySet()) {
+                if (!Arrays.equals(covered.get(month), current.get(month))) {
+                    changed.add(month);
+                }
+            }
+            complete &= covered.keySet().equals(current.keySet());
+        }
+        if (changed.isEmpty() && complete) {
+            return false;
+        }
+
+        // Entries of the changed months: those just written are at hand, others are read back
+        ArrayList<SparseIndex.Entry> ids = new ArrayList<>();
+        ArrayList<SparseIndex.Entry> keys = new ArrayList<>();
+        for (String month : changed) {
+            synchronized (this) {
+                if (writtenIds.containsKey(month)) {
+                    ids.addAll(writtenIds.get(month));
+                    keys.addAll(writtenKeys.get(month));
+                    continue;
+                }
+            }
+            if (current.containsKey(month)) {
+                readEntries(month, ids, keys);
+            }
+        }
+        ids.sort(null);
+        keys.sort(null);
+        try {
+            SparseIndex.Writer idWriter = rewrite(idIndex, ids, changed, current);
+            SparseIndex.Writer keyWriter = rewrite(keyIndex, keys, changed, current);
+            // Under the monitor, so no reader pairs an old directory with a new file
+            synchronized (this) {
+                idWriter.install();
+                keyWriter.install();
+            }
+        } catch (IOException e) {
+            // Index not written, silent fail; lookups search the months it does not cover
+        } finally {
+            synchronized (this) {
+                writtenIds.clear();
+                writtenKeys.clear();
+                idIndex.drop();
+                keyIndex.drop();
+            }
+        }
+        return true;
+    }
+
+    // Merge an index's entries for unchanged months with fresh ones into a finished, not yet installed, index file
+    private static SparseIndex.Writer rewrite(SparseIndex index, ArrayList<SparseIndex.Entry> fresh, TreeSet<String> changed,
+                                LinkedHashMap<String, long[]> current) throws IOException {
+        SparseIndex.Scan old = null;
+        if (index.stamps() != null) {
+            try {
+                old = index.scan();
+            } catch (IOException e) {
+                // Unreadable, built again from the fresh entries alone
+            }
+        }
+        try (SparseIndex.Writer writer = new SparseIndex.Writer(index.path(), current)) {
+            int next = 0;
+            SparseIndex.Entry kept = nextKept(old, changed, current);
+            while (kept != null || next < fresh.size()) {
+                if (kept != null && (next == fresh.size() || kept.compareTo(fresh.get(next)) <= 0)) {
+                    writer.add(kept);
+                    kept = nextKept(old, changed, current);
+                } else {
+                    writer.add(fresh.get(next++));
+                }
+            }
+            writer.finish();
+            return writer;
+        } finally {
+            if (old != null) {
+                old.close();
+            }
+        }
+    }
+
+    // Next entry of the old index whose month still exists unchanged, or null
+    private static SparseIndex.Entry nextKept(SparseIndex.Scan old, TreeSet<String> changed,
+                                              LinkedHashMap<String, long[]> current) throws IOException {
+        if (old == null) {
+            return null;
+        }
+        SparseIndex.Entry entry;
+        while ((entry = old.next()) != null) {
+            if (current.containsKey(entry.month) && !changed.contains(entry.month)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // ID and key index entries of a month file, read back block by block; damaged blocks are skipped
+    private void readEntries(String month, ArrayList<SparseIndex.Entry> ids, ArrayList<SparseIndex.Entry> keys) {
+        Path path = path(month);
+        ArrayList<Block> blocks;
+        try {
+            blocks = readIndex(path);
+        } catch (IOException e) {
+            // Damaged month, nothing of it can be looked up
+            return;
+        }
+        for (Block block : blocks) {
+            try {
+                for (T record : codec.records(decodeBlock(path, block))) {
+                    ids.add(new SparseIndex.Entry(idOf.apply(record), month, block.offset));
+                }
+            } catch (IOException e) {
+                // Damaged block, left out as it is of every query
+                continue;
+            }
+            for (String key : block.keys) {
+                keys.add(new SparseIndex.Entry(key, month, block.offset));
+            }
+        }
+    }
+
+    // Length and modification time of a month file; caller holds this
+    private long[] stamp(String month) {
+        long[] stamp = stamps.get(month);
+        if (stamp == null) {
+            try {
+                Path path = path(month);
+                stamp = new long[] {Files.size(path), Files.getLastModifiedTime(path).toMillis()};
+            } catch (IOException e) {
+                // Gone or unreadable, matches no index
+                stamp = new long[] {-1, -1};
+            }
+            stamps.put(month, stamp);
+        }
+        return stamp;
+    }
+
+    // The index entry of a month's block at an offset, or null; caller holds this
+    private Block blockAt(String month, long offset) {
+        for (Block block : index(month)) {
+            if (block.offset == offset) {
+                return block;
+            }
+        }
+        return null;
+    }
+
+    // Index entry for a block of records sorted by ID
+    private Block describe(List<T> rows, long offset, int length, int rawLength, int crc) {
+        String firstDate = null;
+        String lastDate = null;
+        TreeSet<String> keys = new TreeSet<>();
+        for (T record : rows) {
+            String date = dateOf.apply(record);
+            if (firstDate == null || date.compareTo(firstDate) < 0) {
+                firstDate = date;
+            }
+            if (lastDate == null || date.compareTo(lastDate) > 0) {
+                lastDate = date;
+            }
+            for (String key : keysOf.apply(record)) {
+                if (key != null) {
+                    keys.add(key);
+                }
+            }
+        }
+        return new Block(IdSequence.numberOf(idOf.apply(rows.get(0))), IdSequence.numberOf(idOf.apply(rows.get(rows.size() - 1))),
+                         firstDate, lastDate, keys.toArray(new String[0]), rows.size(), offset, length, rawLength, crc);
+    }
+
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            compressed.write(buffer, 0, count);
+        }
+        return compressed.toByteArray();
+    }
+
+    // A month's block index, read on first use; empty if the file is damaged; caller holds this
+    private Block[] index(String month) {
+        Block[] index = indexes.get(month);
+        if (index == null) {
+            try {
+                index = readIndex(path(month)).toArray(new Block[0]);
+            } catch (IOException e) {
+                // Damaged month, left out of the history views
+                index = new Block[0];
+            }
+            indexes.put(month, index);
+        }
+        return index;
+    }
+
+    // One decoded block, from the cache or the file; null if it is damaged; caller holds this
+    private B block(String month, Block block) {
+        String key = month + "@" + block.offset;
+        B cached = decoded.get(key);
+        if (cached == null) {
+            try {
+                cached = decodeBlock(path(month), block);
+            } catch (IOException e) {
+                // Damaged block, left out of the history views
+                return null;
+            }
+            decoded.put(key, cached);
+        }
+        return cached;
+    }
+
+    private static ArrayList<Block> readIndex(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException(path.getFileName() + " is not an archive month");
+            }
+            header.getShort();
+            int count = header.getInt();
+            int indexLength = header.getInt();
+            if (count < 0 || indexLength < 0 || HEADER_BYTES + (long) indexLength > channel.size()) {
+                throw new IOException(path.getFileName() + " is damaged");
+            }
+            long dataStart = HEADER_BYTES + (long) indexLength;
+            byte[] indexContent = readAt(channel, HEADER_BYTES, indexLength).array();
+            if (indexLength < 4 || ByteBuffer.wrap(indexContent).getInt(indexLength - 4)
+                    != RecordChecksum.of(indexContent, 0, indexLength - 4)) {
+                throw new IOException(path.getFileName() + " has a damaged index");
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(indexContent));
+            ArrayList<Block> index = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long firstId = in.readLong();
+                long lastId = in.readLong();
+                String firstDate = in.readUTF();
+                String lastDate = in.readUTF();
+                String[] keys = new String[in.readUnsignedShort()];
+                for (int k = 0; k < keys.length; k++) {
+                    keys[k] = in.readUTF();
+                }
+                int rows = in.readInt();
+                long offset = dataStart + in.readLong();
+                int length = in.readInt();
+                int rawLength = in.readInt();
+                int crc = in.readInt();
+                if (rows < 0 || length < 0 || rawLength < 0 || offset + length > channel.size()) {
+                    throw new IOException(path.getFileName() + " is damaged");
+                }
+                index.add(new Block(firstId, lastId, firstDate, lastDate, keys, rows, offset, length, rawLength, crc));
+            }
+            return index;
+        }
+    }
+
+    private B decodeBlock(Path path, Block block) throws IOException {
+        byte[] compressed;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            compressed = readAt(channel, block.offset, block.length).array();
+        }
+        if (block.crc != RecordChecksum.of(compressed, 0, compressed.length)) {
+            throw new IOException(path.getFileName() + " has a damaged block");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[block.rawLength];
+            int filled = 0;
+            while (filled < raw.length && !inflater.finished()) {
+                int count = inflater.inflate(raw, filled, raw.length - filled);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                filled += count;
+            }
+            if (filled != raw.length) {
+                throw new IOException(path.getFileName() + " has a damaged block");
+            }
+            return codec.decode(raw);
+        } catch (DataFormatException e) {
+            throw new IOException(path.getFileName() + " has a damaged block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Exactly length bytes from a position, as a buffer positioned at its start
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Archive month ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private Path path(String month) {
+        return DIRECTORY.resolve(prefix + month + SUFFIX);
+    }
+
+    // Months of the month list within a range; caller holds this
+    private ArrayList<String> between(String fromMonth, String toMonth) {
+        ArrayList<String> between = new ArrayList<>();
+        for (String month : months) {
+            if ((fromMonth == null || month.compareTo(fromMonth) >= 0) && (toMonth == null || month.compareTo(toMonth) <= 0)) {
+                between.add(month);
+            }
+        }
+        return between;
+    }
+
+    // Drop cached indexes and blocks if another process wrote since; caller holds this
+    private void refresh() {
+        boolean stale = fileLock.lockShared();
+        try {
+            if (stale || months == null) {
+                reload();
+            }
+        } finally {
+            fileLock.unlockShared();
+        }
+    }
+
+    // Re-read the month list; caller holds this and the file lock
+    private void reload() {
+        indexes.clear();
+        stamps.clear();
+        decoded.clear();
+        idIndex.drop();
+        keyIndex.drop();
+        months = new TreeSet<>();
+        if (!Files.isDirectory(DIRECTORY)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(DIRECTORY, prefix + "????-??" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                months.add(name.substring(prefix.length(), name.length() - SUFFIX.length()));
+            }
+        } catch (IOException e) {
+            // Unreadable directory, treat the archive as empty
+        }
+    }
+}
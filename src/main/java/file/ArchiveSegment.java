@@ -0,0 +1,269 @@
+package file;
+
+import model.Appointment;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The columnar encoding of a block of finished appointments, one block of
+ * archive/appointments-2025-11.blk once decompressed (see ArchiveBuckets).
+ *
+ * Each field is stored as its own column, in row order:
+ *   people      dictionary shared by the student and lecturer columns
+ *   student     int dictionary codes
+ *   lecturer    int dictionary codes
+ *   epochDay    int days since 1970-01-01
+ *   status      byte, an index into STATUS_NAMES
+ *   ids, requestIds, slotIds, startTimes, cancelReasons   length-prefixed UTF-8
+ * so counting by lecturer, month or status reads one or two primitive arrays and
+ * never builds an Appointment. Whole rows are only assembled by appointment(row),
+ * for the history views.
+ *
+ * Layout, big-endian: magic "OOBA", version (short), row count (int), dictionary
+ * size (int) and entries, then the columns above in that order.
+ */
+final class ArchiveSegment {
+    static final String[] STATUS_NAMES = {"COMPLETED", "CANCELLED"};
+    private static final int MAGIC = 0x4F4F4241;
+    private static final short VERSION = 1;
+
+    final int rows;
+    final String[] people;
+    final int[] students;
+    final int[] lecturers;
+    final int[] epochDays;
+    final byte[] statuses;
+    final String[] ids;
+    final String[] requestIds;
+    final String[] slotIds;
+    final String[] startTimes;
+    final String[] cancelReasons;
+    private final HashMap<String, Integer> codes = new HashMap<>();
+
+    private ArchiveSegment(String[] people, int[] students, int[] lecturers, int[] epochDays,
+                           byte[] statuses, String[] ids, String[] requestIds, String[] slotIds,
+                           String[] startTimes, String[] cancelReasons) {
+        this.rows = ids.length;
+        this.people = people;
+        this.students = students;
+        this.lecturers = lecturers;
+        this.epochDays = epochDays;
+        this.statuses = statuses;
+        this.ids = ids;
+        this.requestIds = requestIds;
+        this.slotIds = slotIds;
+        this.startTimes = startTimes;
+        this.cancelReasons = cancelReasons;
+        for (int i = 0; i < people.length; i++) {
+            codes.put(people[i], i);
+        }
+    }
+
+    /**
+     * Status byte for an appointment status
+     * @return The code, or -1 if appointments with this status are not archived
+     */
+    static byte statusCode(String status) {
+        for (byte i = 0; i < STATUS_NAMES.length; i++) {
+            if (STATUS_NAMES[i].equalsIgnoreCase(status)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether an appointment can be stored in a segment and read back unchanged:
+     * it is finished and its date parses
+     */
+    static boolean archivable(Appointment appointment) {
+        return statusCode(appointment.getStatus()) >= 0 && epochDay(appointment.getDate()) != null;
+    }
+
+    // Days since 1970-01-01 of a yyyy-MM-dd date, or null if it does not parse
+    static Integer epochDay(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeException | NullPointerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Build a segment from archivable appointments
+     * @param appointments Appointments for which archivable() is true
+     */
+    static ArchiveSegment of(List<Appointment> appointments) {
+        int count = appointments.size();
+        ArrayList<String> people = new ArrayList<>();
+        HashMap<String, Integer> codes = new HashMap<>();
+        int[] students = new int[count];
+        int[] lecturers = new int[count];
+        int[] epochDays = new int[count];
+        byte[] statuses = new byte[count];
+        String[] ids = new String[count];
+        String[] requestIds = new String[count];
+        String[] slotIds = new String[count];
+        String[] startTimes = new String[count];
+        String[] cancelReasons = new String[count];
+        for (int row = 0; row < count; row++) {
+            Appointment appointment = appointments.get(row);
+            students[row] = code(appointment.getStudentTp(), people, codes);
+            lecturers[row] = code(appointment.getLecturerTp(), people, codes);
+            epochDays[row] = epochDay(appointment.getDate());
+            statuses[row] = statusCode(appointment.getStatus());
+            ids[row] = appointment.getAppointmentId();
+            requestIds[row] = appointment.getRequestId();
+            slotIds[row] = appointment.getSlotId();
+            startTimes[row] = appointment.getStartTime();
+            cancelReasons[row] = appointment.getCancelReason();
+        }
+        return new ArchiveSegment(people.toArray(new String[0]), students, lecturers, epochDays,
+                                  statuses, ids, requestIds, slotIds, startTimes, cancelReasons);
+    }
+
+    private static int code(String person, ArrayList<String> people, HashMap<String, Integer> codes) {
+        Integer code = codes.get(person);
+        if (code == null) {
+            code = people.size();
+            codes.put(person, code);
+            people.add(person);
+        }
+        return code;
+    }
+
+    /**
+     * Dictionary code of a student or lecturer TP
+     * @return The code, or -1 if nobody in this segment has that TP
+     */
+    int codeOf(String person) {
+        Integer code = codes.get(person);
+        return code != null ? code : -1;
+    }
+
+    // Assemble one row as an Appointment
+    Appointment appointment(int row) {
+        return new Appointment(ids[row], requestIds[row], people[students[row]], people[lecturers[row]],
+                               slotIds[row], LocalDate.ofEpochDay(epochDays[row]).toString(), startTimes[row],
+                               STATUS_NAMES[statuses[row]], cancelReasons[row]);
+    }
+
+    // Every row as an Appointment
+    ArrayList<Appointment> appointments() {
+        ArrayList<Appointment> appointments = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            appointments.add(appointment(row));
+        }
+        return appointments;
+    }
+
+    // Encoded content of this segment
+    byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(rows * 48 + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(rows);
+        out.writeInt(people.length);
+        writeStrings(out, people);
+        writeInts(out, students);
+        writeInts(out, lecturers);
+        writeInts(out, epochDays);
+        out.write(statuses);
+        writeStrings(out, ids);
+        writeStrings(out, requestIds);
+        writeStrings(out, slotIds);
+        writeStrings(out, startTimes);
+        writeStrings(out, cancelReasons);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a segment
+     * @throws IOException if the content is not a complete segment
+     */
+    static ArchiveSegment decode(byte[] content) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+            throw new IOException("not an archive segment");
+        }
+        int rows = in.readInt();
+        int dictionarySize = in.readInt();
+        // Every row and entry takes at least 4 bytes, so larger counts mean a damaged header
+        if (rows < 0 || dictionarySize < 0 || rows > content.length / 4 || dictionarySize > content.length / 4) {
+            throw new IOException("damaged archive segment");
+        }
+        String[] people = readStrings(in, dictionarySize);
+        int[] students = readInts(in, rows);
+        int[] lecturers = readInts(in, rows);
+        int[] epochDays = readInts(in, rows);
+        byte[] statuses = new byte[rows];
+        in.readFully(statuses);
+        String[] ids = readStrings(in, rows);
+        String[] requestIds = readStrings(in, rows);
+        String[] slotIds = readStrings(in, rows);
+        String[] startTimes = readStrings(in, rows);
+        String[] cancelReasons = readStrings(in, rows);
+        for (int row = 0; row < rows; row++) {
+            if (students[row] < 0 || students[row] >= people.length || lecturers[row] < 0
+                    || lecturers[row] >= people.length || statuses[row] < 0 || statuses[row] >= STATUS_NAMES.length) {
+                throw new IOException("damaged archive segment");
+            }
+        }
+        return new ArchiveSegment(people, students, lecturers, epochDays, statuses,
+                                  ids, requestIds, slotIds, startTimes, cancelReasons);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    // Each string as its byte length and UTF-8 bytes; length -1 for null
+    private static void writeStrings(DataOutputStream out, String[] values) throws IOException {
+        for (String value : values) {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in, int count) throws IOException {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            int length = in.readInt();
+            if (length > in.available()) {
+                throw new IOException("String runs past the end of the segment");
+            }
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                values[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return values;
+    }
+}
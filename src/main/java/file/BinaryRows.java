@@ -0,0 +1,429 @@
+package file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary form of a base data file (slots.bin next to slots.txt), used instead of the
+ * pipe-delimited text when the program runs with -Doob.format=binary.
+ *
+ * Layout, big-endian:
+ *   file header, 32 bytes: magic "OOBR", format version (short), record type (byte,
+ *     'U' users, 'S' slots, 'R' requests, 'A' appointments), flags (byte), seq (long),
+ *     txid (long), dictionary size (int), row count (int)
+ *   dictionary: one length-prefixed UTF-8 string per entry, then the CRC32C (int) of
+ *     the file header and dictionary
+ *   blocks of up to BLOCK_ROWS rows: a 12 byte block header (row count int, byte
+ *     length int, CRC32C of the rows int) followed by the rows
+ *   rows: a fixed 8 byte row header (body length int, record type byte, row version
+ *     byte, field count short) followed by one entry per field
+ * Every field starts with a varint tag: an even tag is a literal whose byte length is
+ * tag / 2 and whose UTF-8 bytes follow, an odd tag is dictionary entry tag / 2. The
+ * status and foreign ID columns of each record type are dictionary-coded, so
+ * "OPEN" or "LEC-001" is stored once per file and every row refers to it; decoding
+ * hands all those rows the same String.
+ *
+ * Blocks are verified and decoded in parallel on the common fork-join pool. A block
+ * whose checksum does not match is left out and returned as damaged, so a flipped
+ * bit costs the rows of one block rather than the rest of the file.
+ *
+ * seq and txid play the part of the text file's "# seq N tx M" line, so a file can be
+ * converted either way (RowFormatConverter) without touching its mutation log. Fields
+ * are stored as they are, so a reason containing '|' survives.
+ */
+final class BinaryRows {
+    static final String EXTENSION = ".bin";
+    private static final int MAGIC = 0x4F4F4252;
+    private static final short FORMAT_VERSION = 2;
+    private static final byte ROW_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int ROW_HEADER_BYTES = 8;
+    private static final int BLOCK_HEADER_BYTES = 12;
+    static final int BLOCK_ROWS = 1024;
+
+    // Fixed part of a binary file
+    static final class Header {
+        final char type;
+        final long seq;
+        final long txid;
+
+        Header(char type, long seq, long txid) {
+            this.type = type;
+            this.seq = seq;
+            this.txid = txid;
+        }
+    }
+
+    private BinaryRows() {
+    }
+
+    // Binary sibling of a text data file: slots.txt gives slots.bin
+    static Path binaryPath(Path textPath) {
+        String name = textPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return textPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + EXTENSION);
+    }
+
+    // Record type byte for a data file, from its name
+    static char typeOf(Path path) {
+        String name = path.getFileName().toString();
+        if (name.startsWith("users")) {
+            return 'U';
+        } else if (name.startsWith("slots")) {
+            return 'S';
+        } else if (name.startsWith("requests")) {
+            return 'R';
+        } else if (name.startsWith("appointments")) {
+            return 'A';
+        }
+        return name.isEmpty() ? '?' : Character.toUpperCase(name.charAt(0));
+    }
+
+    // Columns stored through the dictionary: status and the IDs rows point at
+    private static boolean[] dictionaryColumns(char type) {
+        int[] columns;
+        switch (type) {
+            case 'U':
+                columns = new int[] {1};          // role
+                break;
+            case 'S':
+                columns = new int[] {1, 5};       // lecturerTp, status
+                break;
+            case 'R':
+                columns = new int[] {1, 2, 8};    // studentTp, lecturerTp, status
+                break;
+            case 'A':
+                columns = new int[] {2, 3, 7};    // studentTp, lecturerTp, status
+                break;
+            default:
+                columns = new int[0];
+        }
+        boolean[] coded = new boolean[16];
+        for (int column : columns) {
+            coded[column] = true;
+        }
+        return coded;
+    }
+
+    /**
+     * Encode a whole base file
+     * @param type Record type byte
+     * @param seq Last mutation log entry contained
+     * @param txid Last transaction contained
+     * @param rows Field values of every record, in order
+     */
+    static byte[] encode(char type, long seq, long txid, List<String[]> rows) {
+        boolean[] coded = dictionaryColumns(type);
+        HashMap<String, Integer> dictionary = new HashMap<>();
+        ArrayList<String> entries = new ArrayList<>();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(rows.size() * 64);
+        ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_ROWS * 64);
+        ByteArrayOutputStream row = new ByteArrayOutputStream(128);
+        int blockRows = 0;
+        for (String[] fields : rows) {
+            row.reset();
+            for (int i = 0; i < fields.length; i++) {
+                String value = fields[i];
+                if (i < coded.length && coded[i]) {
+                    Integer index = dictionary.get(value);
+                    if (index == null) {
+                        index = entries.size();
+                        dictionary.put(value, index);
+                        entries.add(value);
+                    }
+                    writeVarint(row, (index << 1) | 1);
+                } else {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(row, bytes.length << 1);
+                    row.write(bytes, 0, bytes.length);
+                }
+            }
+            ByteBuffer rowHeader = ByteBuffer.allocate(ROW_HEADER_BYTES)
+                    .putInt(row.size()).put((byte) type).put(ROW_VERSION).putShort((short) fields.length);
+            block.write(rowHeader.array(), 0, ROW_HEADER_BYTES);
+            block.write(row.toByteArray(), 0, row.size());
+            if (++blockRows == BLOCK_ROWS) {
+                writeBlock(body, block, blockRows);
+                blockRows = 0;
+            }
+        }
+        if (blockRows > 0) {
+            writeBlock(body, block, blockRows);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(HEADER_BYTES + body.size() + entries.size() * 16);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putShort(FORMAT_VERSION).put((byte) type).put((byte) 0)
+                .putLong(seq).putLong(txid).putInt(entries.size()).putInt(rows.size());
+        file.write(header.array(), 0, HEADER_BYTES);
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            writeVarint(file, bytes.length);
+            file.write(bytes, 0, bytes.length);
+        }
+        byte[] head = file.toByteArray();
+        file.write(ByteBuffer.allocate(4).putInt(RecordChecksum.of(head, 0, head.length)).array(), 0, 4);
+        file.write(body.toByteArray(), 0, body.size());
+        return file.toByteArray();
+    }
+
+    // Append a block header and the block's rows, then empty the block
+    private static void writeBlock(ByteArrayOutputStream body, ByteArrayOutputStream block, int rows) {
+        byte[] bytes = block.toByteArray();
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES)
+                .putInt(rows).putInt(bytes.length).putInt(RecordChecksum.of(bytes, 0, bytes.length));
+        body.write(blockHeader.array(), 0, BLOCK_HEADER_BYTES);
+        body.write(bytes, 0, bytes.length);
+        block.reset();
+    }
+
+    /**
+     * Read the fixed header of a binary file
+     * @return The header, or null if the file is missing or not in this format
+     */
+    static Header readHeader(Path path) {
+        try {
+            return readHeader(Files.readAllBytes(path));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // The fixed header of a binary file's content, or null if it is not in this format
+    static Header readHeader(byte[] bytes) {
+        return bytes.length >= HEADER_BYTES ? header(ByteBuffer.wrap(bytes)) : null;
+    }
+
+    /**
+     * Verify and decode every block of a binary file into records
+     * @param path File to load
+     * @param parser Turns one row into a record, or null to skip it
+     * @return Records in file order and the damaged blocks; empty if the file is
+     *         missing or not in this format
+     */
+    static <T> LoadedRecords<T> load(Path path, Function<PipeRecord, T> parser) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            // Missing or unreadable file, treat as empty
+            return new LoadedRecords<>();
+        }
+        return decode(bytes, parser);
+    }
+
+    /**
+     * Verify and decode every block of a binary image into records
+     * @param parser Turns one row into a record, or null to skip it
+     * @return Records in order and the damaged blocks; empty if the content is not in this format
+     */
+    static <T> LoadedRecords<T> decode(byte[] bytes, Function<PipeRecord, T> parser) {
+        return decode(bytes, () -> {
+            PipeRecord record = new PipeRecord();
+            return fields -> parser.apply(record.reset(fields));
+        });
+    }
+
+    /**
+     * Decode every row of a binary file into field values
+     * @return Rows in file order, without those of damaged blocks
+     */
+    static ArrayList<String[]> readRows(Path path) {
+        try {
+            return decodeRows(Files.readAllBytes(path));
+        } catch (IOException e) {
+            // Missing or unreadable file, treat as empty
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Decode every row of a binary file's content
+     * @return Rows in order, without those of damaged blocks; empty if the content is
+     *         not in this format
+     */
+    static ArrayList<String[]> decodeRows(byte[] bytes) {
+        return decode(bytes).records;
+    }
+
+    // Every row of a binary file's content, and the blocks that failed verification
+    static LoadedRecords<String[]> decode(byte[] bytes) {
+        return decode(bytes, () -> fields -> fields);
+    }
+
+    /**
+     * Verify and decode a binary file's blocks, in parallel when there are several
+     * @param rowParsers Gives each decoding task its own row parser
+     */
+    private static <T> LoadedRecords<T> decode(byte[] bytes, Supplier<Function<String[], T>> rowParsers) {
+        LoadedRecords<T> loaded = new LoadedRecords<>();
+        if (bytes.length < HEADER_BYTES) {
+            return loaded;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (header(buffer) == null) {
+            return loaded;
+        }
+        int dictionarySize = buffer.getInt(24);
+        buffer.position(HEADER_BYTES);
+
+        String[] dictionary = new String[dictionarySize];
+        try {
+            for (int i = 0; i < dictionarySize; i++) {
+                dictionary[i] = readString(buffer, readVarint(buffer));
+            }
+        } catch (RuntimeException e) {
+            // Damaged dictionary, no row can be decoded
+            loaded.damagedBlocks.add(bytes);
+            return loaded;
+        }
+        int headEnd = buffer.position();
+        if (bytes.length < headEnd + 4 || buffer.getInt(headEnd) != RecordChecksum.of(bytes, 0, headEnd)) {
+            loaded.damagedBlocks.add(bytes);
+            return loaded;
+        }
+
+        // Block headers are walked first, so the blocks can be handed out to tasks
+        ArrayList<int[]> blocks = new ArrayList<>();
+        int position = headEnd + 4;
+        while (position < bytes.length) {
+            if (bytes.length - position < BLOCK_HEADER_BYTES) {
+                loaded.damagedBlocks.add(Arrays.copyOfRange(bytes, position, bytes.length));
+                break;
+            }
+            int rows = buffer.getInt(position);
+            int length = buffer.getInt(position + 4);
+            int start = position + BLOCK_HEADER_BYTES;
+            if (rows < 0 || length < 0 || length > bytes.length - start) {
+                // A damaged length hides where the next block starts; the rest is quarantined
+                loaded.damagedBlocks.add(Arrays.copyOfRange(bytes, position, bytes.length));
+                break;
+            }
+            blocks.add(new int[] {start, length, rows, buffer.getInt(position + 8)});
+            position = start + length;
+        }
+
+        if (blocks.size() == 1) {
+            loaded.add(decodeBlock(bytes, blocks.get(0), dictionary, rowParsers.get()));
+            return loaded;
+        }
+        List<Callable<LoadedRecords<T>>> tasks = new ArrayList<>(blocks.size());
+        for (int[] block : blocks) {
+            tasks.add(() -> decodeBlock(bytes, block, dictionary, rowParsers.get()));
+        }
+        try {
+            for (Future<LoadedRecords<T>> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                loaded.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            // A parser failed; keep what was decoded before it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return loaded;
+    }
+
+    // Check one block's checksum and decode its rows; block is {start, length, rows, crc}
+    private static <T> LoadedRecords<T> decodeBlock(byte[] bytes, int[] block, String[] dictionary,
+                                                    Function<String[], T> rowParser) {
+        LoadedRecords<T> loaded = new LoadedRecords<>();
+        int start = block[0];
+        int end = start + block[1];
+        loaded.verified = 1;
+        if (RecordChecksum.of(bytes, start, block[1]) != block[3]) {
+            loaded.damagedBlocks.add(Arrays.copyOfRange(bytes, start - BLOCK_HEADER_BYTES, end));
+            return loaded;
+        }
+        ArrayList<String[]> rows = decodeRowsAt(bytes, start, end, block[2], dictionary);
+        if (rows.size() < block[2]) {
+            // Checksum matched but the rows do not decode: written damaged, kept aside all the same
+            loaded.damagedBlocks.add(Arrays.copyOfRange(bytes, start - BLOCK_HEADER_BYTES, end));
+            return loaded;
+        }
+        for (String[] fields : rows) {
+            T parsed = rowParser.apply(fields);
+            if (parsed != null) {
+                loaded.records.add(parsed);
+            }
+        }
+        return loaded;
+    }
+
+    // Decode up to rowCount rows between two offsets; stops at the first row that does not decode
+    private static ArrayList<String[]> decodeRowsAt(byte[] bytes, int start, int end, int rowCount, String[] dictionary) {
+        ArrayList<String[]> rows = new ArrayList<>(Math.max(0, Math.min(rowCount, BLOCK_ROWS * 64)));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, end);
+        buffer.position(start);
+        try {
+            for (int r = 0; r < rowCount; r++) {
+                int length = buffer.getInt();
+                buffer.get();                       // record type, same for every row of a file
+                byte version = buffer.get();
+                int fieldCount = buffer.getShort() & 0xFFFF;
+                int rowEnd = buffer.position() + length;
+                if (version != ROW_VERSION || rowEnd > end) {
+                    break;
+                }
+                String[] fields = new String[fieldCount];
+                for (int i = 0; i < fieldCount; i++) {
+                    int tag = readVarint(buffer);
+                    fields[i] = (tag & 1) != 0 ? dictionary[tag >>> 1] : readString(buffer, tag >>> 1);
+                }
+                buffer.position(rowEnd);
+                rows.add(fields);
+            }
+        } catch (RuntimeException e) {
+            // Damaged or truncated rows; keep the rows decoded so far
+        }
+        return rows;
+    }
+
+    private static Header header(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != FORMAT_VERSION) {
+            return null;
+        }
+        return new Header((char) buffer.get(6), buffer.getLong(8), buffer.getLong(16));
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+}
@@ -0,0 +1,220 @@
+package file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+/**
+ * Loads a line-oriented data file by memory-mapping it, cutting it into chunks on
+ * newline boundaries and parsing the chunks in parallel on the common fork-join pool.
+ *
+ * Chunks are cut on '\n' bytes, which never occur inside a multi-byte UTF-8 sequence,
+ * so each chunk decodes on its own. Results are concatenated in chunk order, so the
+ * returned list keeps file order. Files smaller than MIN_CHUNK_BYTES are parsed on
+ * the calling thread as a single chunk. Lines are handed to the parser as a PipeRecord
+ * over the decoded chunk, so no per-line String is created.
+ *
+ * A checksummed file (see RecordChecksum) is verified in the same pass: each chunk
+ * task checks the CRC32C of its lines against the mapped bytes, so verification runs
+ * in parallel too. A line whose checksum is missing or wrong is not parsed but
+ * returned as damaged, and every other line still loads.
+ */
+final class ChunkedLoader {
+    static final int MIN_CHUNK_BYTES = 256 * 1024;
+    private static final int MAX_CHUNK_BYTES = 64 * 1024 * 1024;
+    private static final int SCAN_BYTES = 4096;
+
+    private ChunkedLoader() {
+    }
+
+    /**
+     * Parse every non-empty line of a file
+     * @param path File to load
+     * @param lineParser Turns one non-blank line into a record, or null to skip it
+     * @return Parsed records in file order; empty if the file is missing or unreadable
+     */
+    static <T> ArrayList<T> load(Path path, Function<PipeRecord, T> lineParser) {
+        return load(path, lineParser, false).records;
+    }
+
+    /**
+     * Parse every non-empty line of a file, verifying checksums if it has them
+     * @param path File to load
+     * @param lineParser Turns one record into a record object, or null to skip it
+     * @param checksummed Whether record lines carry a checksum; lines starting with
+     *        '#' are then skipped rather than parsed
+     * @return Parsed records in file order and the damaged lines; empty if the file
+     *         is missing or unreadable
+     */
+    static <T> LoadedRecords<T> load(Path path, Function<PipeRecord, T> lineParser, boolean checksummed) {
+        LoadedRecords<T> loaded = new LoadedRecords<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                return loaded;
+            }
+            long[] bounds = chunkBounds(channel, size);
+            if (bounds.length == 2) {
+                return parseChunk(channel, 0, size, lineParser, checksummed);
+            }
+
+            List<Callable<LoadedRecords<T>>> tasks = new ArrayList<>();
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                long start = bounds[i];
+                long end = bounds[i + 1];
+                tasks.add(() -> parseChunk(channel, start, end, lineParser, checksummed));
+            }
+            for (Future<LoadedRecords<T>> chunk : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                loaded.add(chunk.get());
+            }
+            return loaded;
+        } catch (IOException | ExecutionException e) {
+            // Missing or unreadable file, treat as empty
+            return new LoadedRecords<>();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new LoadedRecords<>();
+        }
+    }
+
+    // Chunk start offsets plus the file size; every inner bound sits just after a '\n'
+    private static long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        long chunks = Math.max(1, Math.min(parallelism * 4L, size / MIN_CHUNK_BYTES));
+        chunks = Math.max(chunks, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES);
+
+        ArrayList<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        for (long i = 1; i < chunks; i++) {
+            long bound = nextLineStart(channel, Math.max(i * size / chunks, bounds.get(bounds.size() - 1)), size);
+            if (bound > bounds.get(bounds.size() - 1) && bound < size) {
+                bounds.add(bound);
+            }
+        }
+        bounds.add(size);
+
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    // Offset just past the first '\n' at or after position, or size if there is none
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BYTES);
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    private static <T> LoadedRecords<T> parseChunk(FileChannel channel, long start, long end,
+                                            Function<PipeRecord, T> lineParser, boolean checksummed) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer decoded = StandardCharsets.UTF_8.decode(mapped.duplicate());
+        char[] chars = decoded.array();
+        int offset = decoded.arrayOffset() + decoded.position();
+        int limit = offset + decoded.remaining();
+
+        LoadedRecords<T> loaded = new LoadedRecords<>();
+        PipeRecord line = new PipeRecord();
+        CRC32C crc = new CRC32C();
+        int lineStart = offset;
+        // Byte offset of the current line in the mapped chunk; '\n' is one byte and one char
+        int byteStart = 0;
+        for (int i = offset; i <= limit; i++) {
+            if (i == limit || chars[i] == '\n') {
+                int byteEnd = checksummed ? lineEnd(mapped, byteStart, chars, lineStart, i) : 0;
+                if (!line.reset(chars, lineStart, i).isBlank()) {
+                    if (!checksummed) {
+                        T record = lineParser.apply(line);
+                        if (record != null) {
+                            loaded.records.add(record);
+                        }
+                    } else if (!line.startsWith('#')) {
+                        verifyLine(chars, lineStart, i, mapped, byteStart, byteEnd, crc, line, lineParser, loaded);
+                    }
+                }
+                lineStart = i + 1;
+                byteStart = byteEnd + 1;
+            }
+        }
+        return loaded;
+    }
+
+    // Check one checksummed line against its bytes, then parse it or set it aside as damaged
+    private static <T> void verifyLine(char[] chars, int lineStart, int lineEnd, MappedByteBuffer mapped,
+                                       int byteStart, int byteEnd, CRC32C crc, PipeRecord line,
+                                       Function<PipeRecord, T> lineParser, LoadedRecords<T> loaded) {
+        loaded.verified++;
+        int recordEnd = RecordChecksum.recordEnd(chars, lineStart, lineEnd);
+        Integer written = recordEnd >= 0 ? RecordChecksum.written(chars, recordEnd) : null;
+        boolean valid = false;
+        if (written != null) {
+            // The checksum and anything after the record are ASCII, one byte per char
+            ByteBuffer bytes = mapped.duplicate();
+            bytes.position(byteStart);
+            bytes.limit(byteEnd - (lineEnd - recordEnd));
+            valid = RecordChecksum.of(crc, bytes) == written;
+        }
+        if (!valid) {
+            loaded.damagedLines.add(new String(chars, lineStart, lineEnd - lineStart));
+            return;
+        }
+        T record = lineParser.apply(line.reset(chars, lineStart, recordEnd));
+        if (record != null) {
+            loaded.records.add(record);
+        }
+    }
+
+    /**
+     * Byte offset of the '\n' ending a line, counted from the line's characters; a
+     * line with malformed UTF-8 decodes to a different length, and is scanned for instead
+     */
+    private static int lineEnd(MappedByteBuffer mapped, int byteStart, char[] chars, int start, int end) {
+        int byteEnd = byteStart;
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            byteEnd += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        if (byteEnd == mapped.capacity() || (byteEnd < mapped.capacity() && mapped.get(byteEnd) == '\n')) {
+            return byteEnd;
+        }
+        return nextNewline(mapped, byteStart);
+    }
+
+    // Index of the next '\n' byte at or after from, or the buffer's capacity
+    private static int nextNewline(MappedByteBuffer mapped, int from) {
+        int capacity = mapped.capacity();
+        for (int i = from; i < capacity; i++) {
+            if (mapped.get(i) == '\n') {
+                return i;
+            }
+        }
+        return capacity;
+    }
+}
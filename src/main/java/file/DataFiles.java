@@ -0,0 +1,63 @@
+package file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Small file helpers shared by the stores.
+ */
+final class DataFiles {
+
+    private DataFiles() {
+    }
+
+    /**
+     * Replace a file's content so readers only ever see the old or the new version:
+     * write a sibling temp file, force it to disk, then rename it over the target.
+     * @param target File to replace
+     * @param content New content
+     * @throws IOException if the temp file cannot be written or moved
+     */
+    static void replaceAtomically(Path target, byte[] content) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        moveAtomically(temp, target);
+    }
+
+    /**
+     * Rename a finished, forced file over its target, atomically where the file
+     * system allows it
+     * @param source File to move
+     * @param target File to replace
+     * @throws IOException if the file cannot be moved
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Cut a file down to the given length, e.g. to drop a torn final line
+     * @param path File to truncate
+     * @param length New length in bytes
+     */
+    static void truncate(Path path, long length) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        } catch (IOException e) {
+            // Leave it; a torn line never parses as a complete entry
+        }
+    }
+}
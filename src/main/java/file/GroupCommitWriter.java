@@ -0,0 +1,242 @@
+package file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Appends lines to one file with group commit: appends from concurrent callers are
+ * collected for up to one commit window and then written with a single write and a
+ * single force(), after which every caller in the batch is released.
+ *
+ * The window is configurable with system properties:
+ *   oob.commit.windowMs  - how long the first append of a batch may wait (default 2, 0 = no wait)
+ *   oob.commit.maxBatch  - a batch is written at once when it reaches this many appends (default 64)
+ * So under bursty booking load a caller trades at most one window of latency for far
+ * fewer write and fsync calls, and under light load nothing waits longer than the window.
+ */
+final class GroupCommitWriter {
+    static final long WINDOW_NANOS = Long.getLong("oob.commit.windowMs", 2) * 1_000_000L;
+    static final int MAX_BATCH = Integer.getInteger("oob.commit.maxBatch", 64);
+
+    // Handle returned to a caller; await() blocks until its append is durable
+    static final class Commit {
+        private boolean done;
+        private boolean durable;
+
+        // Wait for the batch holding this append; true if it reached the disk, false if it was dropped
+        synchronized boolean await() {
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return durable;
+        }
+
+        private synchronized void complete(boolean durable) {
+            this.durable = durable;
+            this.done = true;
+            notifyAll();
+        }
+    }
+
+    private static final class Pending {
+        final byte[] bytes;
+        final Commit after;
+        final Commit commit = new Commit();
+
+        Pending(byte[] bytes, Commit after) {
+            this.bytes = bytes;
+            this.after = after;
+        }
+    }
+
+    private final Path path;
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Object ioLock = new Object();
+    private long submitted;
+    private long completed;
+    private Thread thread;
+    private FileChannel channel;
+
+    GroupCommitWriter(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Queue bytes for the next batch
+     * @param bytes Complete line(s), newline included
+     * @return Handle to wait on for durability
+     */
+    Commit submit(byte[] bytes) {
+        return submit(bytes, null);
+    }
+
+    /**
+     * Queue bytes that must not reach the disk before another commit does
+     * (a transaction's store entries wait for its journal line); if that commit
+     * fails, these bytes are never written and their commit fails too
+     * @param bytes Complete line(s), newline included
+     * @param after Commit that has to be durable first, or null
+     * @return Handle to wait on for durability
+     */
+    synchronized Commit submit(byte[] bytes, Commit after) {
+        if (thread == null) {
+            thread = new Thread(this::run, "group-commit-" + path.getFileName());
+            thread.setDaemon(true);
+            thread.start();
+        }
+        Pending pending = new Pending(bytes, after);
+        queue.add(pending);
+        submitted++;
+        if (queue.size() == 1 || queue.size() >= MAX_BATCH) {
+            notifyAll();
+        }
+        return pending.commit;
+    }
+
+    // Block until everything submitted so far has been written and forced
+    synchronized void flush() {
+        long target = submitted;
+        boolean interrupted = false;
+        while (completed < target) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flush, then close the file so it can be replaced or truncated underneath;
+     * the next batch reopens it.
+     */
+    void release() {
+        flush();
+        synchronized (ioLock) {
+            closeChannel();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            ArrayList<Pending> batch = nextBatch();
+            // Entries whose prerequisite never reached the disk are dropped, not written
+            ArrayList<Pending> ready = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                if (pending.after == null || pending.after.await()) {
+                    ready.add(pending);
+                } else {
+                    pending.commit.complete(false);
+                }
+            }
+            boolean durable = ready.isEmpty() || write(ready);
+            for (Pending pending : ready) {
+                pending.commit.complete(durable);
+            }
+            synchronized (this) {
+                completed += batch.size();
+                notifyAll();
+            }
+        }
+    }
+
+    // Wait for the first append, then let the batch fill until the window closes or it is full
+    private synchronized ArrayList<Pending> nextBatch() {
+        boolean interrupted = false;
+        while (queue.isEmpty()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        long deadline = System.nanoTime() + WINDOW_NANOS;
+        long remaining;
+        while (queue.size() < MAX_BATCH && (remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        ArrayList<Pending> batch = new ArrayList<>(queue);
+        queue.clear();
+        return batch;
+    }
+
+    private boolean write(ArrayList<Pending> batch) {
+        int length = 0;
+        for (Pending pending : batch) {
+            length += pending.bytes.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (Pending pending : batch) {
+            buffer.put(pending.bytes);
+        }
+        buffer.flip();
+
+        synchronized (ioLock) {
+            long start = -1;
+            try {
+                if (channel == null) {
+                    channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                }
+                start = channel.size();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+                return true;
+            } catch (IOException e) {
+                // Error appending; the callers are told, and whatever part of the batch was written is cut off again
+                truncateTo(start);
+                closeChannel();
+                return false;
+            }
+        }
+    }
+
+    // Drop a failed batch from the file, so a reload does not bring back changes reported as failed
+    private void truncateTo(long size) {
+        if (channel == null || size < 0) {
+            return;
+        }
+        try {
+            channel.truncate(size);
+            channel.force(false);
+        } catch (IOException e) {
+            // File unusable; its torn tail is cut off when it is next read
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already unusable
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package file;
+
+import java.util.Arrays;
+
+/**
+ * Primary-key index from record ID to record position inside a RecordStore.
+ *
+ * IDs in this system are a short prefix plus a number (S3, R1, APT1, TP001, LEC-001),
+ * so the table is keyed on the numeric part held as a primitive long. It is an
+ * open-addressing, linear-probing table of long keys with an int head position per key.
+ * IDs that share a number (APT1 and A1, or LEC-001 and STF-001 in users.txt) are chained
+ * through a per-position int link array, and the store confirms the full ID on lookup.
+ * Nothing is boxed and no String keys are kept by the index itself.
+ */
+final class IdIndex {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final int NO_POSITION = -1;
+
+    private long[] keys;
+    private int[] heads;
+    private int[] next;
+    private int size;
+    private int mask;
+
+    IdIndex() {
+        this(16);
+    }
+
+    IdIndex(int expectedKeys) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedKeys * 2 - 1)) << 1;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        next = new int[Math.max(16, expectedKeys)];
+    }
+
+    /**
+     * Numeric key of an ID: the value of its digits, ignoring prefix and separators.
+     * IDs with no digits, or too many to fit, fall back to a negative hash key.
+     */
+    static long keyOf(String id) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 18) {
+                    return ~(id.hashCode() & 0xffffffffL);
+                }
+                value = value * 10 + (c - '0');
+            }
+        }
+        return digits == 0 ? ~(id.hashCode() & 0xffffffffL) : value;
+    }
+
+    // Index a record position under its key
+    void add(long key, int position) {
+        ensurePositionCapacity(position);
+        int slot = find(key);
+        if (keys[slot] == key) {
+            next[position] = heads[slot];
+            heads[slot] = position;
+            return;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            rehash(keys.length << 1);
+            slot = find(key);
+        }
+        keys[slot] = key;
+        heads[slot] = position;
+        next[position] = NO_POSITION;
+        size++;
+    }
+
+    // Remove one record position from the chain of its key
+    void remove(long key, int position) {
+        int slot = find(key);
+        if (keys[slot] != key) {
+            return;
+        }
+        if (heads[slot] == position) {
+            heads[slot] = next[position];
+            if (heads[slot] == NO_POSITION) {
+                deleteSlot(slot);
+            }
+            return;
+        }
+        for (int p = heads[slot]; p != NO_POSITION; p = next[p]) {
+            if (next[p] == position) {
+                next[p] = next[position];
+                return;
+            }
+        }
+    }
+
+    // First position chained under a key, or -1
+    int head(long key) {
+        int slot = find(key);
+        return keys[slot] == key ? heads[slot] : NO_POSITION;
+    }
+
+    // Next position in the same chain, or -1
+    int next(int position) {
+        return next[position];
+    }
+
+    // Drop every key
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    // Number of distinct numeric keys
+    int size() {
+        return size;
+    }
+
+    /**
+     * Approximate heap footprint of the index arrays, in bytes
+     * (array headers included, the index object itself excluded).
+     */
+    long memoryBytes() {
+        return 16L + 8L * keys.length + 16L + 4L * heads.length + 16L + 4L * next.length;
+    }
+
+    /**
+     * Heap bytes per indexed record position.
+     * @param positions Number of record positions currently indexed
+     */
+    double bytesPerKey(int positions) {
+        return positions == 0 ? 0 : (double) memoryBytes() / positions;
+    }
+
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Backward-shift deletion keeps probe sequences intact without tombstones
+    private void deleteSlot(int slot) {
+        int gap = slot;
+        int probe = (gap + 1) & mask;
+        while (keys[probe] != EMPTY) {
+            int home = hash(keys[probe]) & mask;
+            if (((probe - home) & mask) >= ((probe - gap) & mask)) {
+                keys[gap] = keys[probe];
+                heads[gap] = heads[probe];
+                gap = probe;
+            }
+            probe = (probe + 1) & mask;
+        }
+        keys[gap] = EMPTY;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                heads[slot] = oldHeads[i];
+            }
+        }
+    }
+
+    private void ensurePositionCapacity(int position) {
+        if (position >= next.length) {
+            next = Arrays.copyOf(next, Math.max(position + 1, next.length + (next.length >> 1)));
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
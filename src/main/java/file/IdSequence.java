@@ -0,0 +1,204 @@
+package file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Persistent ID sequence for one entity (S1, S2... for slots), replacing
+ * "prefix + (loadAll().size() + 1)", which re-read a whole file and reused IDs
+ * once records were deleted.
+ *
+ * Numbers are reserved from src/main/resources/sequences.txt in blocks of
+ * BLOCK_SIZE (one "name|highest reserved" line per sequence), under a
+ * cross-process lock, and then handed out from memory, so next() is O(1) and
+ * touches the disk once per block. On a clean shutdown the unused rest of each
+ * block is handed back, unless another process has reserved numbers since, so
+ * the IDs users see carry on from one run to the next without a gap. Numbers
+ * of a block that is not used up otherwise (the program is killed, or a bulk
+ * reservation needs a fresh block) are skipped, never reused. A sequence with
+ * no line yet starts after the highest number its seed finds in the existing
+ * data.
+ *
+ * The block size is configurable with -Doob.ids.blockSize (default 32).
+ */
+public final class IdSequence {
+    static final int BLOCK_SIZE = Math.max(1, Integer.getInteger("oob.ids.blockSize", 32));
+
+    private static final Path PATH = Paths.get("src", "main", "resources", "sequences.txt");
+    private static final SharedFileLock FILE_LOCK = new SharedFileLock(Paths.get(PATH + ".lock"));
+    private static final ArrayList<IdSequence> SEQUENCES = new ArrayList<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(IdSequence::releaseAll, "id-sequences"));
+    }
+
+    private final String name;
+    private final String prefix;
+    private final LongSupplier seed;
+    private long next;
+    private long limit;
+
+    /**
+     * @param name Line name in sequences.txt
+     * @param prefix Text put before each number
+     * @param seed Highest number already in use, for a sequence seen for the first time
+     */
+    IdSequence(String name, String prefix, LongSupplier seed) {
+        this.name = name;
+        this.prefix = prefix;
+        this.seed = seed;
+        synchronized (SEQUENCES) {
+            SEQUENCES.add(this);
+        }
+    }
+
+    // Next unused ID
+    synchronized String next() {
+        return prefix + take(1);
+    }
+
+    /**
+     * Reserve consecutive IDs for a bulk insert
+     * @param count Number of IDs
+     * @return The IDs, in ascending order
+     */
+    synchronized ArrayList<String> next(int count) {
+        long first = take(count);
+        ArrayList<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(prefix + (first + i));
+        }
+        return ids;
+    }
+
+    private long take(int count) {
+        if (limit - next < count) {
+            next = reserve(Math.max(count, BLOCK_SIZE));
+            limit = next + Math.max(count, BLOCK_SIZE);
+        }
+        long first = next;
+        next += count;
+        return first;
+    }
+
+    // Move the persisted high-water mark up by count; returns the first reserved number
+    private long reserve(int count) {
+        FILE_LOCK.lockExclusive();
+        boolean written = false;
+        try {
+            LinkedHashMap<String, Long> highest = read();
+            Long stored = highest.get(name);
+            long from = stored != null ? stored : seed.getAsLong();
+            highest.put(name, from + count);
+            written = write(highest);
+            return from + 1;
+        } finally {
+            FILE_LOCK.unlockExclusive(written);
+        }
+    }
+
+    // Hand back the unused numbers of every sequence's current block
+    private static void releaseAll() {
+        ArrayList<IdSequence> sequences;
+        synchronized (SEQUENCES) {
+            sequences = new ArrayList<>(SEQUENCES);
+        }
+        for (IdSequence sequence : sequences) {
+            sequence.release();
+        }
+    }
+
+    // Lower the persisted high-water mark to the last number handed out, if it is still this block's
+    private synchronized void release() {
+        if (next >= limit) {
+            return;
+        }
+        FILE_LOCK.lockExclusive();
+        boolean written = false;
+        try {
+            LinkedHashMap<String, Long> highest = read();
+            Long stored = highest.get(name);
+            if (stored != null && stored == limit - 1) {
+                highest.put(name, next - 1);
+                written = write(highest);
+                if (written) {
+                    limit = next;
+                }
+            }
+        } finally {
+            FILE_LOCK.unlockExclusive(written);
+        }
+    }
+
+    private static LinkedHashMap<String, Long> read() {
+        LinkedHashMap<String, Long> highest = new LinkedHashMap<>();
+        if (!Files.exists(PATH)) {
+            return highest;
+        }
+        try {
+            for (String line : Files.readAllLines(PATH, StandardCharsets.UTF_8)) {
+                int bar = line.indexOf('|');
+                if (bar > 0) {
+                    try {
+                        highest.put(line.substring(0, bar), Long.parseLong(line.substring(bar + 1).trim()));
+                    } catch (NumberFormatException e) {
+                        // Damaged line, the sequence is re-seeded from the data
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable, every sequence is re-seeded from the data
+        }
+        return highest;
+    }
+
+    private static boolean write(LinkedHashMap<String, Long> highest) {
+        StringBuilder content = new StringBuilder();
+        for (String key : highest.keySet()) {
+            content.append(key).append('|').append(highest.get(key)).append('\n');
+        }
+        try {
+            DataFiles.replaceAtomically(PATH, content.toString().getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (IOException e) {
+            // Error saving, silent fail; the numbers are still unique within this run
+            return false;
+        }
+    }
+
+    // Highest number among the IDs of some records, for seeding
+    static <T> long highest(List<T> records, Function<T, String> idOf) {
+        long highest = 0;
+        for (T record : records) {
+            highest = Math.max(highest, numberOf(idOf.apply(record)));
+        }
+        return highest;
+    }
+
+    /**
+     * Number at the end of an ID ("S12" gives 12, "APT3" gives 3)
+     * @return The number, or 0 if the ID does not end in digits
+     */
+    public static long numberOf(String id) {
+        if (id == null) {
+            return 0;
+        }
+        int start = id.length();
+        while (start > 0 && id.charAt(start - 1) >= '0' && id.charAt(start - 1) <= '9') {
+            start--;
+        }
+        // Anything longer cannot be a sequence number and would overflow
+        if (start == id.length() || id.length() - start > 18) {
+            return 0;
+        }
+        return Long.parseLong(id.substring(start));
+    }
+}
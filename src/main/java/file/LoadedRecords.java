@@ -0,0 +1,28 @@
+package file;
+
+import java.util.ArrayList;
+
+/**
+ * What loading a base file produced: the records that passed their checksums, and
+ * the damaged lines (text files) or blocks (binary files) that did not.
+ */
+final class LoadedRecords<T> {
+    final ArrayList<T> records = new ArrayList<>();
+    final ArrayList<String> damagedLines = new ArrayList<>();
+    final ArrayList<byte[]> damagedBlocks = new ArrayList<>();
+
+    // Lines or blocks whose checksum was checked, 0 for a file without checksums
+    long verified;
+
+    boolean damaged() {
+        return !damagedLines.isEmpty() || !damagedBlocks.isEmpty();
+    }
+
+    // Fold in the result of one chunk or block
+    void add(LoadedRecords<T> part) {
+        records.addAll(part.records);
+        damagedLines.addAll(part.damagedLines);
+        damagedBlocks.addAll(part.damagedBlocks);
+        verified += part.verified;
+    }
+}
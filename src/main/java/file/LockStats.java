@@ -0,0 +1,41 @@
+package file;
+
+/**
+ * Wait and hold times of the cross-process data file locks, so contention can be
+ * watched as more desktop instances share one data directory.
+ *
+ * Run with -Doob.lock.stats=true to have the report printed when the JVM exits.
+ */
+public class LockStats {
+    static {
+        if (Boolean.getBoolean("oob.lock.stats")) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.print(report()), "lock-stats"));
+        }
+    }
+
+    private LockStats() {
+    }
+
+    /**
+     * One line per lock file: acquisitions, how many had to wait for another
+     * process, and average/maximum wait and hold times
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder("File lock statistics\n");
+        for (SharedFileLock lock : SharedFileLock.all()) {
+            report.append("  ").append(lock.describe()).append('\n');
+        }
+        return report.toString();
+    }
+
+    // Start measuring afresh
+    public static void reset() {
+        for (SharedFileLock lock : SharedFileLock.all()) {
+            lock.resetStats();
+        }
+    }
+
+    // Load this class so the shutdown report is registered
+    static void init() {
+    }
+}
@@ -0,0 +1,72 @@
+package file;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background thread that folds mutation logs back into their base files.
+ *
+ * A log is compacted once it passes MAX_LOG_BYTES, or once it is at least
+ * MIN_LOG_BYTES and more than MAX_LOG_RATIO of the base file's size. The same
+ * thread runs the other data maintenance jobs (slot sealing, archiving), so they
+ * never compete with each other for the files.
+ *
+ * With -Doob.storage=sql the text files are only read, for the database's first
+ * import, so no job is run and nothing rewrites them.
+ */
+final class LogCompactor {
+    static final long MIN_LOG_BYTES = 16 * 1024;
+    static final long MAX_LOG_BYTES = 1024 * 1024;
+    static final double MAX_LOG_RATIO = 0.5;
+
+    // Whether the text files are the configured backend (see repository.Repositories)
+    static final boolean TEXT_BACKEND = !"sql".equalsIgnoreCase(System.getProperty("oob.storage", "text"));
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private LogCompactor() {
+    }
+
+    /**
+     * Whether a log has grown enough to be worth folding into its base file
+     * @param logBytes Current size of the log
+     * @param baseBytes Current size of the base file
+     */
+    static boolean shouldCompact(long logBytes, long baseBytes) {
+        if (logBytes >= MAX_LOG_BYTES) {
+            return true;
+        }
+        return logBytes >= MIN_LOG_BYTES && logBytes > baseBytes * MAX_LOG_RATIO;
+    }
+
+    // Run a compaction on the background thread
+    static void schedule(Runnable compaction) {
+        if (!TEXT_BACKEND) {
+            return;
+        }
+        EXECUTOR.execute(compaction);
+    }
+
+    /**
+     * Run a maintenance job on the background thread now and then periodically
+     * @param job Job to run; an exception it throws is caught so later runs still happen
+     * @param periodMinutes Minutes between the start of one run and the next
+     */
+    static void scheduleEvery(Runnable job, long periodMinutes) {
+        if (!TEXT_BACKEND) {
+            return;
+        }
+        EXECUTOR.scheduleAtFixedRate(() -> {
+            try {
+                job.run();
+            } catch (RuntimeException e) {
+                // Failed run, silent fail; the next run tries again
+            }
+        }, 0, periodMinutes, TimeUnit.MINUTES);
+    }
+}
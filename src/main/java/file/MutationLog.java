@@ -0,0 +1,233 @@
+package file;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+
+/**
+ * Append-only log of single-record mutations that sits next to a data file
+ * (slots.txt.log next to slots.txt).
+ *
+ * Line format: seq|op|payload, where op is A (append record line), U (replace
+ * record line), D (delete by ID) or T (the following entries belong to the
+ * transaction whose txid is the payload; see TransactionJournal), followed by its
+ * CRC32C like a base file record (RecordChecksum). Sequence numbers only ever grow;
+ * the base file remembers the last sequence number folded into it, so entries at or
+ * below it are skipped on replay and a crash half-way through compaction cannot apply
+ * anything twice. A final line without its newline is a torn write; it is cut off
+ * when the log is read. A complete line that fails its checksum is never replayed:
+ * it is moved to the Quarantine and dropped from the log.
+ *
+ * Appends go through a GroupCommitWriter, so they are forced to disk in batches. The
+ * caller orders entries by submitting under its own lock and waits for durability
+ * after releasing it, which is what lets concurrent callers share one commit.
+ */
+class MutationLog {
+    static final char APPEND = 'A';
+    static final char UPDATE = 'U';
+    static final char DELETE = 'D';
+    static final char TRANSACTION = 'T';
+
+    // One replayable entry
+    static final class Entry {
+        final long seq;
+        final char op;
+        final String payload;
+
+        Entry(long seq, char op, String payload) {
+            this.seq = seq;
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    private final Path path;
+    private final GroupCommitWriter writer;
+    private long lastSeq;
+    private long bytes;
+
+    MutationLog(String filePath) {
+        this.path = Paths.get(filePath);
+        this.writer = new GroupCommitWriter(path);
+    }
+
+    /**
+     * Read every complete entry newer than the base file
+     * @param baseSeq Last sequence number already contained in the base file
+     * @return Entries in log order
+     */
+    ArrayList<Entry> read(long baseSeq) {
+        // Another process may have replaced the file; reopen it for the next append
+        writer.release();
+        ArrayList<Entry> entries = new ArrayList<>();
+        lastSeq = baseSeq;
+        bytes = 0;
+        if (!Files.exists(path)) {
+            return entries;
+        }
+
+        String content;
+        try {
+            content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return entries;
+        }
+        bytes = content.getBytes(StandardCharsets.UTF_8).length;
+
+        ArrayList<String> damaged = new ArrayList<>();
+        // The log without its damaged lines, once there is one
+        StringBuilder intact = null;
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            String verified = RecordChecksum.verified(line);
+            Entry entry = verified != null ? parse(verified) : null;
+            if (entry != null) {
+                lastSeq = Math.max(lastSeq, entry.seq);
+                if (entry.seq > baseSeq) {
+                    entries.add(entry);
+                }
+                if (intact != null) {
+                    intact.append(line).append('\n');
+                }
+            } else if (!line.trim().isEmpty()) {
+                damaged.add(line);
+                if (intact == null) {
+                    intact = new StringBuilder(content.substring(0, start));
+                }
+            }
+            start = end + 1;
+        }
+        if (intact != null) {
+            // Caller holds the write lock, so the damaged lines can be taken out of the file
+            Quarantine.saveLines(path.getFileName().toString(), damaged);
+            byte[] kept = intact.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                DataFiles.replaceAtomically(path, kept);
+                bytes = kept.length;
+            } catch (IOException e) {
+                // Left in place; they fail their checksum again on the next read
+                bytes = content.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+            }
+        } else if (start < content.length()) {
+            // Cut the torn tail so the next append starts on a fresh line
+            bytes = content.substring(0, start).getBytes(StandardCharsets.UTF_8).length;
+            DataFiles.truncate(path, bytes);
+        }
+        return entries;
+    }
+
+    /**
+     * Carry on from a known state of the file without reading it, as read would have
+     * left it (used when a store starts from a Snapshot taken after this state)
+     * @param lastSeq Highest sequence number in the file
+     * @param bytes Size of the file
+     */
+    void resume(long lastSeq, long bytes) {
+        writer.release();
+        this.lastSeq = lastSeq;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Queue one entry for the next group commit
+     * @param op APPEND, UPDATE or DELETE
+     * @param payload Record line, or ID for DELETE
+     * @return Handle to wait on until the entry is durable
+     */
+    GroupCommitWriter.Commit append(char op, String payload) {
+        return append(op, payload, null);
+    }
+
+    /**
+     * Queue one entry that must not reach the disk before another commit
+     * @param op APPEND, UPDATE, DELETE or TRANSACTION
+     * @param payload Record line, ID for DELETE, txid for TRANSACTION
+     * @param after Commit that has to be durable first, or null
+     * @return Handle to wait on until the entry is durable
+     */
+    GroupCommitWriter.Commit append(char op, String payload, GroupCommitWriter.Commit after) {
+        long seq = ++lastSeq;
+        byte[] line = format(seq, op, payload).getBytes(StandardCharsets.UTF_8);
+        bytes += line.length;
+        return writer.submit(line, after);
+    }
+
+    // Block until every queued entry is durable
+    void flush() {
+        writer.flush();
+    }
+
+    /**
+     * Rewrite the log keeping only entries newer than a compacted base file
+     * @param baseSeq Last sequence number now contained in the base file
+     */
+    void dropThrough(long baseSeq) {
+        writer.release();
+        long keepLastSeq = lastSeq;
+        ArrayList<Entry> tail = read(baseSeq);
+        StringBuilder kept = new StringBuilder();
+        for (Entry entry : tail) {
+            kept.append(format(entry.seq, entry.op, entry.payload));
+        }
+        try {
+            byte[] content = kept.toString().getBytes(StandardCharsets.UTF_8);
+            DataFiles.replaceAtomically(path, content);
+            bytes = content.length;
+        } catch (IOException e) {
+            // Compaction failed, the old log is still valid
+        }
+        lastSeq = Math.max(keepLastSeq, lastSeq);
+    }
+
+    // Truncate after the base file was rewritten wholesale
+    void clear(long baseSeq) {
+        writer.release();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Stale entries are below baseSeq and will be skipped anyway
+        }
+        bytes = 0;
+        lastSeq = Math.max(lastSeq, baseSeq);
+    }
+
+    // Hand out a sequence number without logging anything, for wholesale rewrites
+    long advance() {
+        return ++lastSeq;
+    }
+
+    // Highest sequence number handed out so far
+    long lastSeq() {
+        return lastSeq;
+    }
+
+    // Current size of the log file, in bytes
+    long bytes() {
+        return bytes;
+    }
+
+    private static String format(long seq, char op, String payload) {
+        StringBuilder line = new StringBuilder();
+        RecordChecksum.appendLine(line, seq + "|" + op + "|" + payload);
+        return line.toString();
+    }
+
+    private static Entry parse(String line) {
+        int first = line.indexOf('|');
+        if (first <= 0 || line.length() < first + 3 || line.charAt(first + 2) != '|') {
+            return null;
+        }
+        char op = line.charAt(first + 1);
+        if (op != APPEND && op != UPDATE && op != DELETE && op != TRANSACTION) {
+            return null;
+        }
+        try {
+            return new Entry(Long.parseLong(line.substring(0, first)), op, line.substring(first + 3));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package file;
+
+import java.util.Arrays;
+
+/**
+ * Reusable tokenizer for one pipe-delimited record, replacing line.trim().split("\\|").
+ *
+ * reset() walks the characters once and only records where each field starts and
+ * ends; a String is created only when a parser asks for that field. fieldCount()
+ * follows String.split, so trailing empty fields are not counted (an appointment
+ * line ending in "|" with no cancelReason has 8 fields, not 9). This keeps the
+ * existing "parts.length >= n" checks in the parsers meaningful.
+ *
+ * A record can also wrap fields that were decoded already (BinaryRows); field()
+ * then hands out those Strings as they are, and a field may contain '|'.
+ *
+ * Instances are not thread-safe; each loader thread keeps its own and parsers
+ * must not hold on to the record after parse returns.
+ */
+final class PipeRecord {
+    private char[] chars;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int fieldCount;
+    private String[] fields;
+
+    /**
+     * Tokenize a single line, e.g. a mutation log payload
+     * @param line Record text
+     * @return A new record over a copy of the line
+     */
+    static PipeRecord of(String line) {
+        char[] chars = line.toCharArray();
+        return new PipeRecord().reset(chars, 0, chars.length);
+    }
+
+    /**
+     * Wrap already separated fields, counted the way String.split would
+     * @param values Field values; the array is used as it is, not copied
+     * @return this record
+     */
+    PipeRecord reset(String[] values) {
+        chars = null;
+        fields = values;
+        int count = values.length;
+        if (count > 1) {
+            while (count > 0 && values[count - 1].isEmpty()) {
+                count--;
+            }
+        }
+        fieldCount = count;
+        return this;
+    }
+
+    /**
+     * Point this record at a region of a character buffer, trimming surrounding
+     * whitespace the way String.trim does
+     * @param buffer Characters holding the record
+     * @param start First character of the line
+     * @param end One past the last character of the line
+     * @return this record
+     */
+    PipeRecord reset(char[] buffer, int start, int end) {
+        while (start < end && buffer[start] <= ' ') {
+            start++;
+        }
+        while (end > start && buffer[end - 1] <= ' ') {
+            end--;
+        }
+        chars = buffer;
+        fields = null;
+
+        int count = 0;
+        int fieldStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer[i] == '|') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                starts[count] = fieldStart;
+                ends[count] = i;
+                count++;
+                fieldStart = i + 1;
+            }
+        }
+
+        // Like String.split: drop trailing empty fields, unless the line has no '|' at all
+        if (count > 1) {
+            while (count > 0 && starts[count - 1] == ends[count - 1]) {
+                count--;
+            }
+        }
+        fieldCount = count;
+        return this;
+    }
+
+    // True for a line with nothing but whitespace
+    boolean isBlank() {
+        if (fields != null) {
+            return fieldCount == 1 && fields[0].isEmpty();
+        }
+        return fieldCount == 1 && starts[0] == ends[0];
+    }
+
+    // True if the trimmed line starts with the given character
+    boolean startsWith(char c) {
+        if (fields != null) {
+            return fieldCount > 0 && !fields[0].isEmpty() && fields[0].charAt(0) == c;
+        }
+        return fieldCount > 0 && ends[0] > starts[0] && chars[starts[0]] == c;
+    }
+
+    // Number of fields, counted the way String.split would
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    // Field value as a new String
+    String field(int index) {
+        if (fields != null) {
+            return fields[index];
+        }
+        return new String(chars, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Optional field value
+     * @param index Field position
+     * @param fallback Value to use when the line has no such field
+     */
+    String fieldOr(int index, String fallback) {
+        return index < fieldCount ? field(index) : fallback;
+    }
+}
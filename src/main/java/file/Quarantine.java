@@ -0,0 +1,100 @@
+package file;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Keeps the records that failed their checksum, so nothing damaged is silently lost.
+ *
+ * When a store loads a base file with damaged lines (or a binary file with damaged
+ * blocks) it keeps the valid records, saves the damaged ones here and rewrites the
+ * base file without them. Mutation log and journal lines that fail their checksum
+ * are saved here the same way and dropped from their file. Each occurrence gets its own file under
+ * src/main/resources/quarantine, named after the data file and the time:
+ * slots.txt-20251201-093000.txt holds the damaged lines as they were read, and
+ * slots.bin-20251201-093000.bin the raw blocks, each preceded by its length (int).
+ */
+final class Quarantine {
+    static final Path DIRECTORY = Paths.get("src", "main", "resources", "quarantine");
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private Quarantine() {
+    }
+
+    /**
+     * Save what failed verification while loading a file
+     * @param name Name of the data file, e.g. slots.txt
+     * @param loaded Result of loading it
+     * @return The quarantine file written, or null if nothing was damaged or it could not be written
+     */
+    static Path save(String name, LoadedRecords<?> loaded) {
+        if (!loaded.damaged()) {
+            return null;
+        }
+        String stamp = LocalDateTime.now().format(STAMP);
+        try {
+            Files.createDirectories(DIRECTORY);
+            Path file;
+            if (!loaded.damagedLines.isEmpty()) {
+                StringBuilder content = new StringBuilder();
+                for (String line : loaded.damagedLines) {
+                    content.append(line).append('\n');
+                }
+                file = unused(name + "-" + stamp, ".txt");
+                Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                file = unused(name + "-" + stamp, ".bin");
+                Files.write(file, framed(loaded.damagedBlocks));
+            }
+            System.err.println(name + ": " + count(loaded) + " damaged " + (loaded.damagedLines.isEmpty() ? "block(s)" : "record(s)")
+                    + " moved to " + file);
+            return file;
+        } catch (IOException e) {
+            // Could not save them; the valid records still load and the file is left as it is
+            System.err.println(name + ": " + count(loaded) + " damaged record(s) could not be quarantined: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Save lines of a log or journal that failed verification
+     * @param name Name of the file, e.g. slots.txt.log
+     * @param lines The damaged lines as they were read
+     * @return The quarantine file written, or null if there were none or it could not be written
+     */
+    static Path saveLines(String name, List<String> lines) {
+        LoadedRecords<Void> damaged = new LoadedRecords<>();
+        damaged.damagedLines.addAll(lines);
+        return save(name, damaged);
+    }
+
+    private static int count(LoadedRecords<?> loaded) {
+        return loaded.damagedLines.size() + loaded.damagedBlocks.size();
+    }
+
+    // A file name not taken yet, for two damaged loads within the same second
+    private static Path unused(String base, String suffix) {
+        Path file = DIRECTORY.resolve(base + suffix);
+        for (int i = 2; Files.exists(file); i++) {
+            file = DIRECTORY.resolve(base + "-" + i + suffix);
+        }
+        return file;
+    }
+
+    private static byte[] framed(List<byte[]> blocks) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] block : blocks) {
+            out.write(ByteBuffer.allocate(4).putInt(block.length).array(), 0, 4);
+            out.write(block, 0, block.length);
+        }
+        return out.toByteArray();
+    }
+}
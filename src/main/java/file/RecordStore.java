@@ -0,0 +1,989 @@
+package file;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Resident, in-memory copy of one pipe-delimited data file.
+ *
+ * The file is parsed once, on first use, by ChunkedLoader, and every later read is
+ * served from memory.
+ * Mutations are applied in memory and recorded as one small entry in the file's
+ * MutationLog, so a single-record change costs one append instead of a rewrite; the
+ * caller returns once the entry's group commit has been forced to disk. LogCompactor folds the log back into the base file in the background.
+ * The base file starts with a "# seq N tx M crc32c" line naming the last log entry and
+ * the last Transaction it contains; the loader skips lines starting with '#'. Every
+ * record line carries its CRC32C (RecordChecksum), checked while the file is loaded.
+ * A damaged line is set aside in the Quarantine, the rest of the file loads, and a
+ * compaction is scheduled to write the base file again without it. Transactions
+ * spanning several stores are applied through beginTransaction/applyChange/
+ * endTransaction while the Transaction holds every involved store's lock.
+ *
+ * Records live at stable positions; a delete leaves an empty position behind, and the
+ * positions are packed again once more than half of them are empty. An IdIndex maps
+ * each ID to its positions, so findById, update and delete do not scan, and named
+ * SecondaryIndexes (lecturer, student, status, email) answer the dashboard queries
+ * in time proportional to the size of the result.
+ *
+ * Several processes may share the data directory. Every store holds a SharedFileLock
+ * on its own lock file: reads take it shared just long enough to see whether another
+ * process has written since (and reload if so), and writes take it exclusively from
+ * before the change is applied until its log entry is durable.
+ *
+ * On a clean shutdown the resident records go into the Snapshot, and the next start
+ * takes them from there instead of the files when the files are unchanged.
+ *
+ * With -Doob.format=binary the base file is kept in BinaryRows form (slots.bin) instead;
+ * the mutation log, lock and journal are the same in both formats. A binary store that
+ * finds no .bin file yet starts from the text file and writes .bin from then on;
+ * RowFormatConverter turns either form into the other.
+ *
+ * Every write ends by publishing a new RecordView, an immutable list of the records
+ * that shares its unchanged chunks with the previous one. loadAll and view() read the
+ * current view without the store lock, so a dashboard listing every record neither
+ * waits for writers nor holds them up, and never sees a write half-applied. A
+ * Transaction becomes visible in each store at once, when it has been applied there.
+ *
+ * With -Doob.writeBehind=true, updateBehind and replaceBehind queue their log entry
+ * instead of waiting for it (see WriteBehind); the next write to the store, or the
+ * write-behind thread, logs the queue first.
+ *
+ * Records handed out are the resident instances, shared by every view that holds
+ * them, so callers change a copy() and store that; changing a returned record in
+ * place would show in other readers' views before it was stored. The ID each record
+ * was stored under is remembered separately, so a caller that changes the ID on its
+ * copy (e.g. AdminService.updateUserTp) can still delete or replace it by the old ID.
+ */
+class RecordStore<T> {
+    private static final int NO_POSITION = -1;
+    private static final String SEQ_HEADER = "# seq ";
+    private static final String TX_FIELD = " tx ";
+    private static final String CHECKSUM_FIELD = " " + RecordChecksum.MARK;
+    static final boolean BINARY = "binary".equalsIgnoreCase(System.getProperty("oob.format", "text"));
+
+    private final String filePath;
+    private final Path basePath;
+    private final String name;
+    private final Function<PipeRecord, T> parser;
+    private final Function<T, String> idOf;
+    private final Function<T, String[]> fieldsOf;
+    private final LinkedHashMap<String, SecondaryIndex<T>> secondaryIndexes = new LinkedHashMap<>();
+    private final ArrayList<Listener<T>> listeners = new ArrayList<>();
+    private final MutationLog log;
+    private final SharedFileLock fileLock;
+
+    // Serialises base file rewrites between saveAll and the compactor
+    private final Object baseWriteLock = new Object();
+    private long baseSeq;
+    private long baseBytes;
+    private boolean compactionScheduled;
+    private long appliedTxId;
+    private boolean checksummed;
+
+    // Base file whose damaged records were last quarantined, so a reload does not save them twice
+    private long quarantinedSeq = -1;
+
+    private ArrayList<T> records;
+    private ArrayList<String> ids;
+    private IdIndex index;
+    private int live;
+
+    // Last view published to readers, and the chunks changed since; null dirty means all of them
+    private volatile RecordView<T> published;
+    private BitSet dirty = new BitSet();
+
+    // Write-behind updates applied in memory but not yet logged, by the ID they replace
+    private final LinkedHashMap<String, T> pending = new LinkedHashMap<>();
+
+    /**
+     * @param filePath Path of the backing text file
+     * @param parser Turns one tokenized line into a record, or null to skip it
+     * @param idOf Extracts the primary key of a record
+     * @param fieldsOf Field values of a record, in file order
+     */
+    RecordStore(String filePath, Function<PipeRecord, T> parser, Function<T, String> idOf,
+                Function<T, String[]> fieldsOf) {
+        this.filePath = filePath;
+        this.basePath = BINARY ? BinaryRows.binaryPath(Paths.get(filePath)) : Paths.get(filePath);
+        this.name = Paths.get(filePath).getFileName().toString();
+        this.parser = parser;
+        this.idOf = idOf;
+        this.fieldsOf = fieldsOf;
+        this.log = new MutationLog(filePath + ".log");
+        this.fileLock = new SharedFileLock(Paths.get(filePath + ".lock"));
+        TransactionJournal.register(name, this);
+        Snapshot.register(this);
+    }
+
+    // Store name used in the transaction journal (the data file's name)
+    String name() {
+        return name;
+    }
+
+    // One staged or journalled change: APPEND/UPDATE carry a record, DELETE an ID
+    static final class Change<T> {
+        final char op;
+        final T record;
+        final String id;
+
+        Change(char op, T record, String id) {
+            this.op = op;
+            this.record = record;
+            this.id = id;
+        }
+
+        // Text written to the journal and the store log
+        String payload() {
+            return op == MutationLog.DELETE ? id : record.toString();
+        }
+    }
+
+    /**
+     * Register a secondary index; call before the store is first used.
+     * @param name Name used with findBy
+     * @param keyOf Derives the normalised key of a record
+     * @return this store, for chaining
+     */
+    RecordStore<T> withIndex(String name, Function<T, String> keyOf) {
+        secondaryIndexes.put(name, new SecondaryIndex<>(keyOf));
+        return this;
+    }
+
+    /**
+     * Told about every record placed in or removed from the resident copy, under the
+     * ID it was stored with, so derived state (UserFileManager's free user numbers)
+     * follows loads, reloads, logged changes and recovered transactions alike.
+     * Called with the store lock held.
+     */
+    interface Listener<T> {
+        void added(String id, T record);
+
+        void removed(String id, T record);
+
+        // Everything is about to be placed again
+        void cleared();
+    }
+
+    /**
+     * Register a listener; call before the store is first used.
+     * @return this store, for chaining
+     */
+    RecordStore<T> withListener(Listener<T> listener) {
+        listeners.add(listener);
+        return this;
+    }
+
+    // Bring the resident copy up to date with the files without reading anything
+    synchronized void ensureCurrent() {
+        refresh();
+    }
+
+    // All records in file order, copied from the current view without the store lock
+    ArrayList<T> loadAll() {
+        return new ArrayList<>(view());
+    }
+
+    /**
+     * The records as of the last write, read without the store lock: only a check
+     * whether another process wrote since (a reload if so) comes before it. The view
+     * never changes; later writes publish new ones.
+     */
+    RecordView<T> view() {
+        boolean stale = fileLock.lockShared();
+        fileLock.unlockShared();
+        RecordView<T> current = published;
+        if (stale || current == null) {
+            synchronized (this) {
+                if (stale || records == null) {
+                    reloadExclusively();
+                }
+                return published;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Records whose secondary key equals the given key, in file order
+     * @param indexName Name the index was registered under
+     * @param key Normalised key to look up
+     */
+    synchronized ArrayList<T> findBy(String indexName, String key) {
+        refresh();
+        SecondaryIndex<T> secondary = secondaryIndexes.get(indexName);
+        ArrayList<T> matches = new ArrayList<>();
+        for (int position : secondary.positions(key)) {
+            T record = records.get(position);
+            // A record changed in place but never passed to update() no longer matches
+            if (secondary.keyOf(record).equals(key)) {
+                matches.add(record);
+            }
+        }
+        return matches;
+    }
+
+    // Keys present in a secondary index, in no particular order
+    synchronized ArrayList<String> indexKeys(String indexName) {
+        refresh();
+        return secondaryIndexes.get(indexName).keys();
+    }
+
+    // First record stored under the given ID, or null
+    synchronized T findById(String id) {
+        refresh();
+        int position = firstPosition(id);
+        return position != NO_POSITION ? records.get(position) : null;
+    }
+
+    /**
+     * Add one record and log it; returns once the log entry is durable
+     * @return false if the entry could not be written, in which case the record is not added
+     */
+    boolean append(T record) {
+        GroupCommitWriter.Commit commit;
+        synchronized (this) {
+            lockForWrite();
+            place(record);
+            publish();
+            commit = logged(MutationLog.APPEND, record.toString());
+        }
+        return awaitDurable(commit);
+    }
+
+    // Replace the record stored under the record's ID; false if there is none or the entry could not be written
+    boolean update(T record) {
+        GroupCommitWriter.Commit commit;
+        synchronized (this) {
+            lockForWrite();
+            if (!applyUpdate(record)) {
+                fileLock.unlockExclusive(false);
+                return false;
+            }
+            publish();
+            commit = logged(MutationLog.UPDATE, record.toString());
+        }
+        return awaitDurable(commit);
+    }
+
+    /**
+     * Replace the record stored under the record's ID without waiting for the disk
+     * when write-behind is enabled; see replaceBehind
+     */
+    boolean updateBehind(T record) {
+        return replaceBehind(idOf.apply(record), current -> record);
+    }
+
+    /**
+     * Replace the record stored under an ID in memory and queue its log entry, which
+     * the write-behind thread writes within WriteBehind.MAX_DELAY_MILLIS. A queued
+     * entry for the same ID is replaced, so only the last of a burst is logged; the
+     * caller whose update fills the queue logs it before returning. Without
+     * write-behind this is a plain replace that waits for its log entry.
+     * @param id ID the record is stored under
+     * @param next Builds the replacement from the current record
+     * @return false if there is no such record
+     */
+    boolean replaceBehind(String id, UnaryOperator<T> next) {
+        if (!WriteBehind.ENABLED) {
+            return replaceIf(id, current -> true, next);
+        }
+        boolean full;
+        synchronized (this) {
+            refresh();
+            int position = firstPosition(id);
+            if (position == NO_POSITION) {
+                return false;
+            }
+            T replacement = next.apply(records.get(position));
+            applyUpdate(replacement);
+            publish();
+            boolean first = pending.isEmpty();
+            pending.put(idOf.apply(replacement), replacement);
+            full = pending.size() >= WriteBehind.MAX_PENDING;
+            if (first) {
+                WriteBehind.register(this);
+                WriteBehind.schedule(this::flushPending);
+            }
+        }
+        if (full) {
+            flushPending();
+        }
+        return true;
+    }
+
+    // Log the queued write-behind updates now, if there are any
+    void flushPending() {
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            lockForWrite();
+        }
+        fileLock.unlockExclusive(true);
+    }
+
+    /**
+     * Replace the record stored under an ID only if it still passes a test. The test
+     * and the change happen in one write, after any other process's changes have been
+     * loaded, so nothing can change the record in between; a failed test returns at
+     * once without waiting or retrying.
+     * @param id ID the record is stored under
+     * @param expected Test the current record must pass
+     * @param next Builds the replacement from the current record
+     * @return false if there is no such record, it failed the test or the entry could not be written
+     */
+    boolean replaceIf(String id, Predicate<T> expected, UnaryOperator<T> next) {
+        GroupCommitWriter.Commit commit;
+        synchronized (this) {
+            lockForWrite();
+            int position = firstPosition(id);
+            if (position == NO_POSITION || !expected.test(records.get(position))) {
+                fileLock.unlockExclusive(false);
+                return false;
+            }
+            T replacement = next.apply(records.get(position));
+            applyUpdate(replacement);
+            publish();
+            commit = logged(MutationLog.UPDATE, replacement.toString());
+        }
+        return awaitDurable(commit);
+    }
+
+    // Remove every record stored under the given ID; false if there is none or the entry could not be written
+    boolean delete(String id) {
+        GroupCommitWriter.Commit commit;
+        synchronized (this) {
+            lockForWrite();
+            if (!applyDelete(id)) {
+                fileLock.unlockExclusive(false);
+                return false;
+            }
+            publish();
+            commit = logged(MutationLog.DELETE, id);
+        }
+        return awaitDurable(commit);
+    }
+
+    // Replace the whole data set and rewrite the base file
+    synchronized void saveAll(List<T> newRecords) {
+        lockForWrite();
+        try {
+            reset(newRecords.size());
+            for (T record : newRecords) {
+                place(record);
+            }
+            publish();
+            // A fresh sequence number makes any in-flight compaction snapshot stale
+            long seq = log.advance();
+            if (writeBase(snapshotRows(), seq, appliedTxId)) {
+                log.clear(seq);
+            } else {
+                // Not saved; go back to what the files hold
+                reload();
+            }
+        } finally {
+            fileLock.unlockExclusive(true);
+        }
+    }
+
+    /**
+     * Take the cross-process write lock, reloading first if another process changed
+     * the files, and log any queued write-behind updates so they precede what the
+     * caller writes. Caller holds the store lock and must later call unlockAfterWrite
+     * (or unlockExclusive directly).
+     */
+    void lockForWrite() {
+        if (fileLock.lockExclusive() || records == null) {
+            reload();
+        }
+        logPending();
+    }
+
+    /**
+     * Log the queued write-behind updates and wait until they are durable, so even a
+     * caller that then writes nothing releases the lock with them on disk. Caller
+     * holds the store lock and the write lock.
+     */
+    private void logPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        GroupCommitWriter.Commit commit = null;
+        for (T record : pending.values()) {
+            // Deleted by another process since it was queued
+            if (firstPosition(idOf.apply(record)) != NO_POSITION) {
+                commit = logged(MutationLog.UPDATE, record.toString());
+            }
+        }
+        pending.clear();
+        if (commit != null) {
+            if (commit.await()) {
+                fileLock.markChanged();
+            } else {
+                // The queued updates are lost; go back to what the files hold
+                reload();
+            }
+        }
+    }
+
+    /**
+     * Wait for the log entry of a change and release the write lock. An entry that
+     * could not be written has been cut off the log again (GroupCommitWriter), so the
+     * change is dropped from memory by reloading the files.
+     * @return Whether the change is durable
+     */
+    private boolean awaitDurable(GroupCommitWriter.Commit commit) {
+        if (commit.await()) {
+            fileLock.unlockExclusive(true);
+            return true;
+        }
+        synchronized (this) {
+            reload();
+        }
+        fileLock.unlockExclusive(false);
+        return false;
+    }
+
+    /**
+     * Undo a transaction that did not reach the disk: wait for its dropped entries,
+     * go back to what the files hold and release the write lock taken by
+     * lockForWrite; callable without the store lock
+     */
+    void rollBackAfterWrite() {
+        log.flush();
+        synchronized (this) {
+            reload();
+        }
+        fileLock.unlockExclusive(false);
+    }
+
+    /**
+     * Release the write lock taken by lockForWrite once everything logged under it
+     * is durable; callable without the store lock
+     * @param wroteFiles Whether anything was logged
+     */
+    void unlockAfterWrite(boolean wroteFiles) {
+        if (wroteFiles) {
+            log.flush();
+        }
+        fileLock.unlockExclusive(wroteFiles);
+    }
+
+    /**
+     * Whether a change can be applied to the current contents: updates and
+     * deletes need their record to exist. Caller holds the store lock.
+     */
+    boolean accepts(Change<T> change) {
+        if (change.op == MutationLog.APPEND) {
+            return true;
+        }
+        String id = change.op == MutationLog.DELETE ? change.id : idOf.apply(change.record);
+        return firstPosition(id) != NO_POSITION;
+    }
+
+    /**
+     * Whether an update can be applied and the record it replaces still passes a
+     * check, e.g. is still the version the caller read. Caller holds the store lock.
+     */
+    boolean accepts(Change<T> change, Predicate<T> expected) {
+        int position = firstPosition(idOf.apply(change.record));
+        return position != NO_POSITION && expected.test(records.get(position));
+    }
+
+    /**
+     * Start applying a transaction: log its marker entry. Caller holds the store lock
+     * and the write lock.
+     * @param txid Transaction ID
+     * @param after The transaction's journal commit; nothing of it reaches this log first
+     */
+    void beginTransaction(long txid, GroupCommitWriter.Commit after) {
+        logged(MutationLog.TRANSACTION, Long.toString(txid), after);
+    }
+
+    // Apply and log one change of the current transaction. Caller holds the store lock.
+    void applyChange(Change<T> change, GroupCommitWriter.Commit after) {
+        if (applyInMemory(change)) {
+            logged(change.op, change.payload(), after);
+        }
+    }
+
+    // Finish applying a transaction. Caller holds the store lock.
+    void endTransaction(long txid) {
+        appliedTxId = Math.max(appliedTxId, txid);
+        publish();
+    }
+
+    // Load (re-applying any journalled transactions) and make every log entry durable
+    void flushForJournal() {
+        synchronized (this) {
+            lockForWrite();
+        }
+        unlockAfterWrite(true);
+    }
+
+    /**
+     * Heap bytes the primary-key index spends per stored record.
+     * @return Bytes per key, measured from the index's current arrays
+     */
+    synchronized double indexBytesPerKey() {
+        refresh();
+        return index.bytesPerKey(live);
+    }
+
+    // Lowest position stored under an ID, or -1
+    private int firstPosition(String id) {
+        int first = NO_POSITION;
+        for (int p = index.head(IdIndex.keyOf(id)); p != NO_POSITION; p = index.next(p)) {
+            if (ids.get(p).equals(id) && (first == NO_POSITION || p < first)) {
+                first = p;
+            }
+        }
+        return first;
+    }
+
+    private boolean applyUpdate(T record) {
+        int position = firstPosition(idOf.apply(record));
+        if (position == NO_POSITION) {
+            return false;
+        }
+        T previous = records.set(position, record);
+        markDirty(position);
+        for (SecondaryIndex<T> secondary : secondaryIndexes.values()) {
+            secondary.update(record, position);
+        }
+        for (Listener<T> listener : listeners) {
+            listener.removed(ids.get(position), previous);
+            listener.added(ids.get(position), record);
+        }
+        return true;
+    }
+
+    private boolean applyDelete(String id) {
+        long key = IdIndex.keyOf(id);
+        boolean removed = false;
+        int position = index.head(key);
+        while (position != NO_POSITION) {
+            int following = index.next(position);
+            if (ids.get(position).equals(id)) {
+                index.remove(key, position);
+                for (SecondaryIndex<T> secondary : secondaryIndexes.values()) {
+                    secondary.remove(position);
+                }
+                for (Listener<T> listener : listeners) {
+                    listener.removed(id, records.get(position));
+                }
+                records.set(position, null);
+                ids.set(position, null);
+                markDirty(position);
+                live--;
+                removed = true;
+            }
+            position = following;
+        }
+        if (removed && records.size() - live > live) {
+            pack();
+        }
+        return removed;
+    }
+
+    private void place(T record) {
+        place(record, idOf.apply(record));
+    }
+
+    private void place(T record, String id) {
+        int position = records.size();
+        records.add(record);
+        ids.add(id);
+        markDirty(position);
+        index.add(IdIndex.keyOf(id), position);
+        for (SecondaryIndex<T> secondary : secondaryIndexes.values()) {
+            secondary.add(record, position);
+        }
+        for (Listener<T> listener : listeners) {
+            listener.added(id, record);
+        }
+        live++;
+    }
+
+    private void reset(int expected) {
+        dirty = null;
+        records = new ArrayList<>(expected);
+        ids = new ArrayList<>(expected);
+        index = new IdIndex(expected);
+        for (SecondaryIndex<T> secondary : secondaryIndexes.values()) {
+            secondary.clear();
+        }
+        for (Listener<T> listener : listeners) {
+            listener.cleared();
+        }
+        live = 0;
+    }
+
+    // Close the gaps left by deletes and rebuild the indexes over the new positions
+    private void pack() {
+        ArrayList<T> oldRecords = records;
+        ArrayList<String> oldIds = ids;
+        reset(live);
+        for (int i = 0; i < oldRecords.size(); i++) {
+            if (oldRecords.get(i) != null) {
+                place(oldRecords.get(i), oldIds.get(i));
+            }
+        }
+    }
+
+    // Field values of every live record; a null field is written as "null", as toString would
+    private ArrayList<String[]> snapshotRows() {
+        ArrayList<String[]> rows = new ArrayList<>(live);
+        for (T record : records) {
+            if (record != null) {
+                String[] fields = fieldsOf.apply(record);
+                for (int i = 0; i < fields.length; i++) {
+                    fields[i] = String.valueOf(fields[i]);
+                }
+                rows.add(fields);
+            }
+        }
+        return rows;
+    }
+
+    // Make sure the resident copy matches the files, reloading if another process wrote
+    private void refresh() {
+        boolean stale = fileLock.lockShared();
+        fileLock.unlockShared();
+        if (stale || records == null) {
+            reloadExclusively();
+        }
+    }
+
+    // Loading may finish journalled transactions, which writes, so it is done exclusively
+    private void reloadExclusively() {
+        fileLock.lockExclusive();
+        try {
+            reload();
+        } finally {
+            fileLock.unlockExclusive(false);
+        }
+    }
+
+    // Reload everything; caller holds the store lock and the exclusive file lock
+    private void reload() {
+        if (load()) {
+            fileLock.markChanged();
+            log.flush();
+        }
+        // Updates still queued were made after everything just loaded
+        for (T record : pending.values()) {
+            applyUpdate(record);
+        }
+        publish();
+    }
+
+    private void markDirty(int position) {
+        if (dirty != null) {
+            dirty.set(position / RecordView.CHUNK);
+        }
+    }
+
+    // Hand readers a view of the records as they are now; caller holds the store lock
+    private void publish() {
+        RecordView<T> previous = published != null ? published : RecordView.empty();
+        published = previous.next(records, dirty);
+        dirty = new BitSet();
+    }
+
+    /**
+     * Parse the base file, replay the log and finish pending journalled transactions
+     * @return true if any journalled transaction had to be re-applied (and logged)
+     */
+    private boolean load() {
+        baseSeq = 0;
+        baseBytes = 0;
+        appliedTxId = 0;
+
+        if (records == null && resumeFromSnapshot()) {
+            finishJournalled();
+            return false;
+        }
+
+        Path path = Paths.get(filePath);
+        long started = System.nanoTime();
+        LoadedRecords<T> loaded = new LoadedRecords<>();
+        BinaryRows.Header binary = BINARY && Files.exists(basePath) ? BinaryRows.readHeader(basePath) : null;
+        if (binary != null) {
+            baseSeq = binary.seq;
+            appliedTxId = binary.txid;
+            baseBytes = basePath.toFile().length();
+            loaded = BinaryRows.load(basePath, parser);
+        } else if (Files.exists(path)) {
+            checksummed = false;
+            readHeader(path);
+            baseBytes = path.toFile().length();
+            loaded = ChunkedLoader.load(path, line -> line.startsWith('#') ? null : parser.apply(line), checksummed);
+        }
+        IntegrityReport.record(name, loaded, System.nanoTime() - started);
+        if (loaded.damaged()) {
+            salvage(loaded);
+        }
+
+        reset(loaded.records.size());
+        for (T record : loaded.records) {
+            place(record);
+        }
+        for (MutationLog.Entry entry : log.read(baseSeq)) {
+            if (entry.op == MutationLog.TRANSACTION) {
+                appliedTxId = Math.max(appliedTxId, parseLong(entry.payload));
+            } else {
+                Change<T> change = toChange(entry.op, entry.payload);
+                if (change != null) {
+                    applyInMemory(change);
+                }
+            }
+        }
+
+        return finishJournalled();
+    }
+
+    /**
+     * Finish any transaction that reached the journal but not this store's log
+     * @return true if any had to be re-applied (and logged)
+     */
+    private boolean finishJournalled() {
+        TransactionJournal.observe(appliedTxId);
+        List<TransactionJournal.Record> pendingRecords = TransactionJournal.pendingFor(name, appliedTxId);
+        for (TransactionJournal.Record pending : pendingRecords) {
+            beginTransaction(pending.txid, null);
+            for (TransactionJournal.Operation operation : pending.operations) {
+                Change<T> change = toChange(operation.op, operation.payload);
+                if (change != null) {
+                    applyChange(change, null);
+                }
+            }
+            endTransaction(pending.txid);
+        }
+        return !pendingRecords.isEmpty();
+    }
+
+    /**
+     * Take the resident records from the shutdown snapshot, if the files are as it recorded them
+     * @return false if there is no usable section, and nothing was changed
+     */
+    private boolean resumeFromSnapshot() {
+        long started = System.nanoTime();
+        Snapshot.Section section = Snapshot.find(name, snapshotFiles());
+        byte[] image = section != null ? section.image() : null;
+        BinaryRows.Header header = image != null ? BinaryRows.readHeader(image) : null;
+        if (header == null) {
+            return false;
+        }
+        LoadedRecords<T> loaded = BinaryRows.decode(image, parser);
+        if (loaded.damaged()) {
+            return false;
+        }
+        IntegrityReport.record(name + " (snapshot)", loaded, System.nanoTime() - started);
+        baseSeq = header.seq;
+        appliedTxId = header.txid;
+        baseBytes = section.baseBytes;
+        reset(loaded.records.size());
+        for (T record : loaded.records) {
+            place(record);
+        }
+        log.resume(section.logSeq, section.logBytes);
+        return true;
+    }
+
+    // Files a snapshot of this store stands for: the text file, the base file and the log
+    private Path[] snapshotFiles() {
+        return new Path[] {Paths.get(filePath), basePath, Paths.get(filePath + ".log")};
+    }
+
+    /**
+     * This store's resident state for the shutdown snapshot
+     * @return The section, or null if the store was never loaded or another process
+     *         has written since it last reloaded
+     */
+    Snapshot.Section snapshot() {
+        // Resident records that are not in the log yet would not match it
+        flushPending();
+        synchronized (this) {
+            if (records == null) {
+                return null;
+            }
+            boolean stale = fileLock.lockShared();
+            try {
+                if (stale) {
+                    return null;
+                }
+                log.flush();
+                // No base file rewrite between reading the files' state and the rows
+                synchronized (baseWriteLock) {
+                    byte[] image = BinaryRows.encode(BinaryRows.typeOf(basePath), baseSeq, appliedTxId, snapshotRows());
+                    return new Snapshot.Section(name, snapshotFiles(), log.lastSeq(), log.bytes(), baseBytes, image);
+                }
+            } finally {
+                fileLock.unlockShared();
+            }
+        }
+    }
+
+    /**
+     * Quarantine the damaged records of the base file just read and schedule a
+     * compaction, which writes the base file again from the valid records and the log
+     */
+    private void salvage(LoadedRecords<T> loaded) {
+        if (quarantinedSeq != baseSeq) {
+            Quarantine.save(basePath.getFileName().toString(), loaded);
+            quarantinedSeq = baseSeq;
+        }
+        if (!compactionScheduled) {
+            compactionScheduled = true;
+            LogCompactor.schedule(this::compact);
+        }
+    }
+
+    // Sequence number, txid and checksum mark from a leading "# seq N tx M crc32c" line; 0, 0 and none for a plain data file
+    private void readHeader(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            if (first == null || !first.trim().startsWith(SEQ_HEADER)) {
+                // A damaged header line must not make checksums load as part of the records
+                String second = reader.readLine();
+                checksummed = second != null && RecordChecksum.verified(second) != null;
+                return;
+            }
+            String header = first.trim().substring(SEQ_HEADER.length());
+            if (header.endsWith(CHECKSUM_FIELD)) {
+                checksummed = true;
+                header = header.substring(0, header.length() - CHECKSUM_FIELD.length());
+            }
+            int tx = header.indexOf(TX_FIELD);
+            if (tx >= 0) {
+                appliedTxId = parseLong(header.substring(tx + TX_FIELD.length()));
+                header = header.substring(0, tx);
+            }
+            baseSeq = parseLong(header);
+        } catch (IOException e) {
+            // Unreadable header, replay the whole log
+        }
+    }
+
+    // Rebuild a change from a log or journal payload, or null if it does not parse
+    private Change<T> toChange(char op, String payload) {
+        if (op == MutationLog.DELETE) {
+            return new Change<>(op, null, payload);
+        }
+        T record = parser.apply(PipeRecord.of(payload));
+        return record != null ? new Change<>(op, record, null) : null;
+    }
+
+    private boolean applyInMemory(Change<T> change) {
+        switch (change.op) {
+            case MutationLog.APPEND:
+                place(change.record);
+                return true;
+            case MutationLog.UPDATE:
+                return applyUpdate(change.record);
+            case MutationLog.DELETE:
+                return applyDelete(change.id);
+            default:
+                return false;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Queue the log entry for a mutation that has already been applied in memory.
+     * Called under the store lock so entries reach the log in the order they were
+     * applied; the caller waits on the returned commit after releasing the lock.
+     */
+    private GroupCommitWriter.Commit logged(char op, String payload) {
+        return logged(op, payload, null);
+    }
+
+    private GroupCommitWriter.Commit logged(char op, String payload, GroupCommitWriter.Commit after) {
+        GroupCommitWriter.Commit commit = log.append(op, payload, after);
+        if (!compactionScheduled && LogCompactor.shouldCompact(log.bytes(), baseBytes)) {
+            compactionScheduled = true;
+            LogCompactor.schedule(this::compact);
+        }
+        return commit;
+    }
+
+    /**
+     * Fold the log into a fresh base file. The snapshot is taken under the store lock,
+     * but the base file is written without it, so readers and writers in this process
+     * keep going; entries logged meanwhile stay in the log because their sequence
+     * numbers are newer. Other processes wait on the file lock until the files are
+     * consistent again.
+     */
+    private void compact() {
+        ArrayList<String[]> rows;
+        long seq;
+        long txid;
+        synchronized (this) {
+            lockForWrite();
+            rows = snapshotRows();
+            seq = log.lastSeq();
+            txid = appliedTxId;
+        }
+        boolean written = false;
+        try {
+            written = writeBase(rows, seq, txid);
+            synchronized (this) {
+                if (written) {
+                    log.dropThrough(seq);
+                }
+                compactionScheduled = false;
+            }
+        } finally {
+            fileLock.unlockExclusive(written);
+        }
+    }
+
+    // Write a base file containing everything up to seq, unless a newer one already exists
+    private boolean writeBase(ArrayList<String[]> rows, long seq, long txid) {
+        synchronized (baseWriteLock) {
+            if (seq < baseSeq) {
+                return false;
+            }
+            try {
+                byte[] bytes = BINARY
+                        ? BinaryRows.encode(BinaryRows.typeOf(basePath), seq, txid, rows)
+                        : textBase(rows, seq, txid);
+                DataFiles.replaceAtomically(basePath, bytes);
+                baseSeq = seq;
+                baseBytes = bytes.length;
+                return true;
+            } catch (IOException e) {
+                // Error saving, the previous base file and the log are still intact
+                return false;
+            }
+        }
+    }
+
+    // Text base file: the "# seq N tx M crc32c" line, then one checksummed '|'-joined line per record
+    static byte[] textBase(List<String[]> rows, long seq, long txid) {
+        StringBuilder content = new StringBuilder();
+        content.append(SEQ_HEADER).append(seq).append(TX_FIELD).append(txid).append(CHECKSUM_FIELD).append('\n');
+        for (String[] fields : rows) {
+            RecordChecksum.appendLine(content, String.join("|", fields));
+        }
+        return content.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
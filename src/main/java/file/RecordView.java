@@ -0,0 +1,144 @@
+package file;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable, versioned list of a RecordStore's live records, in file order, as they
+ * were after one write. The store publishes a new view at the end of every write and
+ * readers take the current one without the store lock; a reader keeps seeing the
+ * view it took, however many writes follow.
+ *
+ * Records are kept in chunks of CHUNK store positions, each holding just the live
+ * records of its positions. A write rebuilds only the chunks it touched and shares
+ * the rest with the previous view, so publishing after a single-record change copies
+ * one chunk and the chunk table rather than the whole data set.
+ */
+final class RecordView<T> extends AbstractList<T> {
+    static final int CHUNK = 1024;
+    private static final Object[][] NO_CHUNKS = new Object[0][];
+
+    private final long version;
+    private final Object[][] chunks;
+
+    // Live records in the chunks before each chunk; one entry more than there are chunks
+    private final int[] before;
+
+    private RecordView(long version, Object[][] chunks) {
+        this.version = version;
+        this.chunks = chunks;
+        this.before = new int[chunks.length + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            before[c + 1] = before[c] + chunks[c].length;
+        }
+    }
+
+    static <T> RecordView<T> empty() {
+        return new RecordView<>(0, NO_CHUNKS);
+    }
+
+    /**
+     * The view after a write
+     * @param positions The store's records by position, null where one was deleted
+     * @param dirty Chunks holding a position that changed; every chunk if null
+     * @return A new view, sharing the unchanged chunks with this one
+     */
+    RecordView<T> next(List<T> positions, BitSet dirty) {
+        int count = (positions.size() + CHUNK - 1) / CHUNK;
+        Object[][] nextChunks = new Object[count][];
+        for (int c = 0; c < count; c++) {
+            if (dirty != null && !dirty.get(c) && c < chunks.length) {
+                nextChunks[c] = chunks[c];
+            } else {
+                nextChunks[c] = liveRecords(positions, c * CHUNK, Math.min(positions.size(), (c + 1) * CHUNK));
+            }
+        }
+        return new RecordView<>(version + 1, nextChunks);
+    }
+
+    private static Object[] liveRecords(List<?> positions, int from, int to) {
+        int live = 0;
+        for (int p = from; p < to; p++) {
+            if (positions.get(p) != null) {
+                live++;
+            }
+        }
+        Object[] chunk = new Object[live];
+        int i = 0;
+        for (int p = from; p < to; p++) {
+            Object record = positions.get(p);
+            if (record != null) {
+                chunk[i++] = record;
+            }
+        }
+        return chunk;
+    }
+
+    // Writes published since the store was created; grows by one with every view
+    long version() {
+        return version;
+    }
+
+    @Override
+    public int size() {
+        return before[chunks.length];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size());
+        }
+        // Last chunk starting at or before the index that holds any record
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (before[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return (T) chunks[low][index - before[low]];
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int chunk;
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                while (chunk < chunks.length && next == chunks[chunk].length) {
+                    chunk++;
+                    next = 0;
+                }
+                return chunk < chunks.length;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) chunks[chunk][next++];
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] all = new Object[size()];
+        for (int c = 0; c < chunks.length; c++) {
+            System.arraycopy(chunks[c], 0, all, before[c], chunks[c].length);
+        }
+        return all;
+    }
+}
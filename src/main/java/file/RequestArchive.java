@@ -0,0 +1,181 @@
+package file;
+
+import model.Request;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Cold storage for cancelled requests, the history that cancelled_requests.txt was
+ * once meant to hold.
+ *
+ * A request marked CANCELLED in requests.txt (cancelRequest itself deletes the
+ * request) stays there until its date is more than the archive horizon in the
+ * past; archiveDue() then moves it into a
+ * month file of compressed blocks (ArchiveBuckets) under src/main/resources/archive,
+ * each block stored as BinaryRows. Lookups by ID, student or date range decompress
+ * only the blocks whose index entry can match; the ID and student lookups find them
+ * through on-disk indexes. With -Doob.archive=true it runs in the background every few
+ * minutes (RequestFileManager schedules it), with the same write-then-delete order as
+ * AppointmentArchive.
+ */
+public class RequestArchive {
+    private static final ArchiveBuckets<Request, List<Request>> BUCKETS = new ArchiveBuckets<>("requests-",
+            new ArchiveBuckets.Codec<Request, List<Request>>() {
+                @Override
+                public byte[] encode(List<Request> requests) {
+                    return RequestArchive.encode(requests);
+                }
+
+                @Override
+                public List<Request> decode(byte[] content) throws IOException {
+                    return RequestArchive.decode(content);
+                }
+
+                @Override
+                public List<Request> records(List<Request> block) {
+                    return block;
+                }
+            },
+            Request::getRequestId, Request::getDate, request -> new String[] {request.getStudentTp()});
+
+    private RequestArchive() {
+    }
+
+    /**
+     * Move cancelled requests older than the archive horizon out of requests.txt
+     * @return Number of requests moved
+     */
+    public static int archiveDue() {
+        return archiveBefore(ArchiveBuckets.cutoffDate());
+    }
+
+    /**
+     * Move cancelled requests dated before a cutoff out of requests.txt
+     * @param cutoff First yyyy-MM-dd date to keep in requests.txt
+     * @return Number of requests moved
+     */
+    public static int archiveBefore(String cutoff) {
+        BUCKETS.lockForWriting();
+        boolean written = false;
+        try {
+            TreeMap<String, ArrayList<Request>> byMonth = new TreeMap<>();
+            Transaction transaction = new Transaction();
+            int moved = 0;
+            for (Request request : RequestFileManager.getRequestsByStatus("CANCELLED")) {
+                if (ArchiveSegment.epochDay(request.getDate()) != null && request.getDate().compareTo(cutoff) < 0) {
+                    byMonth.computeIfAbsent(SlotPartitions.monthOf(request.getDate()), m -> new ArrayList<>()).add(request);
+                    RequestFileManager.delete(transaction, request.getRequestId());
+                    moved++;
+                }
+            }
+            if (byMonth.isEmpty()) {
+                return 0;
+            }
+
+            for (String month : byMonth.keySet()) {
+                // Rewrite the month with what it held; the requests.txt copy wins for an ID in both
+                LinkedHashMap<String, Request> merged = new LinkedHashMap<>();
+                for (Request request : BUCKETS.readAll(month)) {
+                    merged.put(request.getRequestId(), request);
+                }
+                for (Request request : byMonth.get(month)) {
+                    merged.put(request.getRequestId(), request);
+                }
+                BUCKETS.write(month, new ArrayList<>(merged.values()));
+                written = true;
+            }
+            transaction.commit();
+            return moved;
+        } catch (IOException e) {
+            // Error reading or writing a month, silent fail; the requests stay in requests.txt
+            return 0;
+        } finally {
+            BUCKETS.unlockForWriting(written);
+        }
+    }
+
+    // Every archived request, oldest month first
+    public static ArrayList<Request> loadAll() {
+        return getRequestsBetween(null, null);
+    }
+
+    /**
+     * Archived requests dated within a range; only the months it covers are read
+     * @param from First date, yyyy-MM-dd, or null for no lower bound
+     * @param to Last date, yyyy-MM-dd, or null for no upper bound
+     */
+    public static ArrayList<Request> getRequestsBetween(String from, String to) {
+        ArrayList<Request> matches = new ArrayList<>();
+        for (List<Request> requests : BUCKETS.blocks(from != null ? SlotPartitions.monthOf(from) : null,
+                                                     to != null ? SlotPartitions.monthOf(to) : null,
+                                                     block -> block.overlaps(from, to))) {
+            for (Request request : requests) {
+                String date = request.getDate();
+                if ((from == null || date.compareTo(from) >= 0) && (to == null || date.compareTo(to) <= 0)) {
+                    matches.add(request);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived requests of one student
+    public static ArrayList<Request> getRequestsByStudent(String studentTp) {
+        ArrayList<Request> matches = new ArrayList<>();
+        for (List<Request> requests : BUCKETS.blocksWithKey(studentTp)) {
+            for (Request request : requests) {
+                if (request.getStudentTp().equals(studentTp)) {
+                    matches.add(request);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Archived request by ID, or null; the ID index names the one block to decompress
+    public static Request findById(String requestId) {
+        for (List<Request> requests : BUCKETS.blocksWithId(requestId)) {
+            for (Request request : requests) {
+                if (request.getRequestId().equals(requestId)) {
+                    return request;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Highest request ID number archived, without decompressing any block
+    public static long highestIdNumber() {
+        return BUCKETS.highestId();
+    }
+
+    private static byte[] encode(List<Request> requests) {
+        ArrayList<String[]> rows = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            String[] fields = request.toFields();
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = String.valueOf(fields[i]);
+            }
+            rows.add(fields);
+        }
+        return BinaryRows.encode('R', 0, 0, rows);
+    }
+
+    private static ArrayList<Request> decode(byte[] content) throws IOException {
+        if (BinaryRows.readHeader(content) == null) {
+            throw new IOException("not a request archive");
+        }
+        ArrayList<Request> requests = new ArrayList<>();
+        PipeRecord record = new PipeRecord();
+        for (String[] fields : BinaryRows.decodeRows(content)) {
+            Request request = RequestFileManager.parse(record.reset(fields));
+            if (request != null) {
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+}
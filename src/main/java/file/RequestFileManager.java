@@ -1,136 +1,133 @@
 package file;
 
+import model.Appointment;
 import model.Request;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.List;
 
 public class RequestFileManager {
     private static final String FILE_PATH = "src" + File.separator + "main" + File.separator + "resources" + File.separator + "requests.txt";
 
-    // Load all requests from file
-    public static ArrayList<Request> loadAll() {
-        ArrayList<Request> requests = new ArrayList<>();
-        File file = new File(FILE_PATH);
-        
-        if (!file.exists()) {
-            return requests;
+    // Secondary index names
+    private static final String BY_STUDENT = "student";
+    private static final String BY_STATUS = "status";
+
+    // Resident copy of requests.txt, parsed once and written through on every change
+    private static final RecordStore<Request> STORE = new RecordStore<Request>(FILE_PATH, RequestFileManager::parse, Request::getRequestId, Request::toFields)
+            .withIndex(BY_STUDENT, Request::getStudentTp)
+            .withIndex(BY_STATUS, request -> request.getStatus().toUpperCase());
+
+    // Request IDs; approved requests are deleted but still named by appointments
+    private static final IdSequence IDS = new IdSequence("requests", "R", () -> Math.max(
+            Math.max(IdSequence.highest(STORE.loadAll(), Request::getRequestId),
+                     RequestArchive.highestIdNumber()),
+            Math.max(IdSequence.highest(AppointmentFileManager.loadAll(), Appointment::getRequestId),
+                     IdSequence.highest(AppointmentArchive.loadAll(), Appointment::getRequestId))));
+
+    static {
+        // Move old cancelled requests to the archive now and then, if archiving is on
+        if (ArchiveBuckets.ENABLED) {
+            LogCompactor.scheduleEvery(RequestArchive::archiveDue, ArchiveBuckets.PERIOD_MINUTES);
         }
+    }
 
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-                
-                String[] parts = line.split("\\|");
-                if (parts.length >= 9) {
-                    String requestId = parts[0];
-                    String studentTp = parts[1];
-                    String lecturerTp = parts[2];
-                    String slotId = parts[3];
-                    String date = parts[4];
-                    String startTime = parts[5];
-                    String endTime = parts[6];
-                    String reason = parts[7];
-                    String status = parts[8];
-                    String cancelReason = parts.length >= 10 ? parts[9] : "";
-                    
-                    Request request = new Request(requestId, studentTp, lecturerTp, slotId, 
-                                                 date, startTime, endTime, reason, status, cancelReason);
-                    requests.add(request);
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
+    // Parse one line of requests.txt, or null if it is malformed
+    static Request parse(PipeRecord line) {
+        if (line.fieldCount() < 9) {
+            return null;
         }
-        
-        return requests;
+        String requestId = line.field(0);
+        String studentTp = line.field(1);
+        String lecturerTp = line.field(2);
+        String slotId = line.field(3);
+        String date = line.field(4);
+        String startTime = line.field(5);
+        String endTime = line.field(6);
+        String reason = line.field(7);
+        String status = line.field(8);
+        String cancelReason = line.fieldOr(9, "");
+
+        return new Request(requestId, studentTp, lecturerTp, slotId,
+                           date, startTime, endTime, reason, status, cancelReason);
+    }
+
+    // Load all requests
+    public static ArrayList<Request> loadAll() {
+        return STORE.loadAll();
+    }
+
+    // Immutable view of every request as of the last write, read without locking or copying
+    public static List<Request> viewAll() {
+        return STORE.view();
     }
 
     // Save all requests to file
     public static void saveAll(ArrayList<Request> requests) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            for (Request request : requests) {
-                writer.println(request.toString());
-            }
-        } catch (IOException e) {
-            // Error saving, silent fail
-        }
+        STORE.saveAll(requests);
     }
 
-    // Append one request to file
-    public static void appendOne(Request request) {
-        try (FileWriter fw = new FileWriter(FILE_PATH, true);
-             PrintWriter writer = new PrintWriter(fw)) {
-            writer.println(request.toString());
-        } catch (IOException e) {
-            // Error appending, silent fail
-        }
+    // Append one request to file; false if it could not be written
+    public static boolean appendOne(Request request) {
+        return STORE.append(request);
+    }
+
+    // Stage adding a request as part of a transaction
+    public static void appendOne(Transaction transaction, Request request) {
+        transaction.append(STORE, request);
+    }
+
+    // Next unused request ID
+    public static String nextId() {
+        return IDS.next();
+    }
+
+    // Reserve consecutive request IDs for a bulk insert
+    public static ArrayList<String> nextIds(int count) {
+        return IDS.next(count);
     }
 
     // Find request by ID
     public static Request findById(String requestId) {
-        ArrayList<Request> requests = loadAll();
-        for (Request request : requests) {
-            if (request.getRequestId().equals(requestId)) {
-                return request;
-            }
-        }
-        return null;
+        return STORE.findById(requestId);
     }
 
     // Update request
     public static boolean update(Request updatedRequest) {
-        ArrayList<Request> requests = loadAll();
-        for (int i = 0; i < requests.size(); i++) {
-            if (requests.get(i).getRequestId().equals(updatedRequest.getRequestId())) {
-                requests.set(i, updatedRequest);
-                saveAll(requests);
-                return true;
-            }
-        }
-        return false;
+        return STORE.update(updatedRequest);
     }
 
     // Delete request by ID
     public static boolean delete(String requestId) {
-        ArrayList<Request> requests = loadAll();
-        boolean removed = requests.removeIf(request -> request.getRequestId().equals(requestId));
-        if (removed) {
-            saveAll(requests);
-        }
-        return removed;
+        return STORE.delete(requestId);
+    }
+
+    // Stage deleting a request as part of a transaction
+    public static void delete(Transaction transaction, String requestId) {
+        transaction.delete(STORE, requestId);
     }
 
     // Get requests by student TP
     public static ArrayList<Request> getRequestsByStudent(String studentTp) {
-        ArrayList<Request> allRequests = loadAll();
-        ArrayList<Request> studentRequests = new ArrayList<>();
-        for (Request request : allRequests) {
-            if (request.getStudentTp().equals(studentTp)) {
-                studentRequests.add(request);
-            }
-        }
-        return studentRequests;
+        return STORE.findBy(BY_STUDENT, studentTp);
     }
 
     // Get pending requests
     public static ArrayList<Request> getPendingRequests() {
-        ArrayList<Request> allRequests = loadAll();
-        ArrayList<Request> pendingRequests = new ArrayList<>();
-        for (Request request : allRequests) {
-            if ("PENDING".equalsIgnoreCase(request.getStatus())) {
-                pendingRequests.add(request);
-            }
-        }
-        return pendingRequests;
+        return STORE.findBy(BY_STATUS, "PENDING");
+    }
+
+    // Requests in requests.txt with a status
+    static ArrayList<Request> getRequestsByStatus(String status) {
+        return STORE.findBy(BY_STATUS, status.toUpperCase());
     }
     
     /**
-     * Cancel a request and move it to cancelled_requests.txt
+     * Cancel a request: its slot is released and the request is deleted
      * @param requestId The request ID to cancel
      * @param reason Cancellation reason
-     * @return true if cancelled successfully, false if request not found or already processed
+     * @return true if cancelled successfully, false if request not found, already processed
+     *         or its slot is gone
      */
     public static boolean cancelRequest(String requestId, String reason) {
         Request request = findById(requestId);
@@ -143,15 +140,12 @@ public class RequestFileManager {
             return false;
         }
         
-        // Release the slot back to OPEN status
-        SlotFileManager.updateStatus(request.getSlotId(), "OPEN");
-        
-        // Update request status and cancel reason
-        request.setStatus("CANCELLED");
-        request.setCancelReason(reason);
-        
-        // Update the request in file (or just delete it)
-        // For now, we'll just delete cancelled requests
-        return delete(requestId);
+        // Release the slot back to OPEN status and drop the request together
+        Transaction transaction = new Transaction();
+        if (!SlotFileManager.updateStatus(transaction, request.getSlotId(), "OPEN")) {
+            return false;
+        }
+        delete(transaction, requestId);
+        return transaction.commit();
     }
 }
@@ -0,0 +1,156 @@
+package file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Converts base data files between the pipe-delimited text form and the BinaryRows
+ * form, e.g. before switching a data directory to -Doob.format=binary or back.
+ *
+ *   java file.RowFormatConverter toBinary [files...]
+ *   java file.RowFormatConverter toText [files...]
+ *
+ * Without file arguments the four data files in src/main/resources are converted.
+ * Files are named by their text path (slots.txt); the binary file sits next to it
+ * (slots.bin). Every field value, including empty trailing fields, and the "# seq N
+ * tx M" position are carried over, so the mutation log next to the file stays valid
+ * and converting back gives the same records. Checksums are verified on the way: a
+ * file with a damaged record or block is not converted (let a store load it first,
+ * which quarantines the damage and rewrites the file). Run it as its own process: it holds
+ * each store's write lock, so running instances wait and then reload.
+ *
+ * The stores only read their own format: after running in binary mode, convert back
+ * to text before running in text mode again, or the text file will be out of date.
+ */
+public class RowFormatConverter {
+    private static final String RESOURCES = "src" + File.separator + "main" + File.separator + "resources";
+    private static final String[] DATA_FILES = {"users.txt", "slots.txt", "requests.txt", "appointments.txt"};
+
+    private RowFormatConverter() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0 || !(args[0].equals("toBinary") || args[0].equals("toText"))) {
+            System.out.println("Usage: RowFormatConverter toBinary|toText [data files...]");
+            return;
+        }
+        ArrayList<Path> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(Paths.get(args[i]));
+        }
+        if (files.isEmpty()) {
+            for (String name : DATA_FILES) {
+                files.add(Paths.get(RESOURCES, name));
+            }
+        }
+        for (Path file : files) {
+            try {
+                int rows = args[0].equals("toBinary") ? toBinary(file) : toText(file);
+                System.out.println("Converted " + file.getFileName() + ": " + rows + " rows");
+            } catch (IOException e) {
+                System.out.println("Could not convert " + file.getFileName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the binary form of a text data file
+     * @param textFile Text data file, e.g. src/main/resources/slots.txt
+     * @return Number of rows converted
+     * @throws IOException if the text file cannot be read or the binary file written
+     */
+    public static int toBinary(Path textFile) throws IOException {
+        SharedFileLock lock = new SharedFileLock(Paths.get(textFile + ".lock"));
+        lock.lockExclusive();
+        boolean written = false;
+        try {
+            long seq = 0;
+            long txid = 0;
+            boolean checksummed = false;
+            ArrayList<String[]> rows = new ArrayList<>();
+            for (String line : Files.readAllLines(textFile, StandardCharsets.UTF_8)) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("# seq ")) {
+                    String[] header = trimmed.substring("# seq ".length()).split(" +");
+                    seq = Long.parseLong(header[0]);
+                    for (int i = 1; i < header.length; i++) {
+                        if (header[i].equals("tx") && i + 1 < header.length) {
+                            txid = Long.parseLong(header[++i]);
+                        } else if (header[i].equals(RecordChecksum.MARK)) {
+                            checksummed = true;
+                        }
+                    }
+                } else if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    String record = checksummed ? RecordChecksum.verified(line) : trimmed;
+                    if (record == null) {
+                        throw new IOException("damaged record line: " + trimmed);
+                    }
+                    rows.add(splitAll(record.trim()));
+                }
+            }
+            Path binaryFile = BinaryRows.binaryPath(textFile);
+            DataFiles.replaceAtomically(binaryFile, BinaryRows.encode(BinaryRows.typeOf(textFile), seq, txid, rows));
+            written = true;
+            return rows.size();
+        } catch (NumberFormatException e) {
+            throw new IOException("damaged header line", e);
+        } finally {
+            lock.unlockExclusive(written);
+        }
+    }
+
+    /**
+     * Write the text form of a data file's binary file
+     * @param textFile Text data file to (re)write; its .bin sibling is read
+     * @return Number of rows converted
+     * @throws IOException if the binary file is missing or damaged, a field cannot be
+     *         written as text, or the text file cannot be written
+     */
+    public static int toText(Path textFile) throws IOException {
+        Path binaryFile = BinaryRows.binaryPath(textFile);
+        SharedFileLock lock = new SharedFileLock(Paths.get(textFile + ".lock"));
+        lock.lockExclusive();
+        boolean written = false;
+        try {
+            BinaryRows.Header header = BinaryRows.readHeader(binaryFile);
+            if (header == null) {
+                throw new IOException(binaryFile.getFileName() + " is missing or not a binary data file");
+            }
+            LoadedRecords<String[]> decoded = BinaryRows.decode(Files.readAllBytes(binaryFile));
+            if (decoded.damaged()) {
+                throw new IOException(binaryFile.getFileName() + " has " + decoded.damagedBlocks.size() + " damaged block(s)");
+            }
+            ArrayList<String[]> rows = decoded.records;
+            for (String[] fields : rows) {
+                for (String field : fields) {
+                    if (field.indexOf('|') >= 0 || field.indexOf('\n') >= 0) {
+                        throw new IOException("a field of " + fields[0] + " contains '|' or a line break");
+                    }
+                }
+            }
+            DataFiles.replaceAtomically(textFile, RecordStore.textBase(rows, header.seq, header.txid));
+            written = true;
+            return rows.size();
+        } finally {
+            lock.unlockExclusive(written);
+        }
+    }
+
+    // Every field of a line, trailing empty ones included
+    private static String[] splitAll(String line) {
+        ArrayList<String> fields = new ArrayList<>();
+        int start = 0;
+        int bar;
+        while ((bar = line.indexOf('|', start)) >= 0) {
+            fields.add(line.substring(start, bar));
+            start = bar + 1;
+        }
+        fields.add(line.substring(start));
+        return fields.toArray(new String[0]);
+    }
+}
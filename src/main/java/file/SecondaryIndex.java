@@ -0,0 +1,118 @@
+package file;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Non-unique index from a derived key (lecturer TP, student TP, status, email)
+ * to the positions of the records that carry it, kept as sorted int arrays so
+ * results come back in file order without boxing.
+ *
+ * The key a position was indexed under is remembered, so the index can be moved
+ * correctly even when the caller has already changed the field on the record.
+ */
+final class SecondaryIndex<T> {
+    private static final int[] NONE = new int[0];
+
+    private final Function<T, String> keyOf;
+    private final HashMap<String, Positions> positionsByKey = new HashMap<>();
+    private final ArrayList<String> keyAt = new ArrayList<>();
+
+    /**
+     * @param keyOf Derives the (already normalised) index key of a record
+     */
+    SecondaryIndex(Function<T, String> keyOf) {
+        this.keyOf = keyOf;
+    }
+
+    // Normalised key of a record
+    String keyOf(T record) {
+        String key = keyOf.apply(record);
+        return key != null ? key : "";
+    }
+
+    // Index a newly placed record
+    void add(T record, int position) {
+        String key = keyOf(record);
+        while (keyAt.size() <= position) {
+            keyAt.add(null);
+        }
+        keyAt.set(position, key);
+        positionsByKey.computeIfAbsent(key, k -> new Positions()).add(position);
+    }
+
+    // Re-index a position after its record was replaced
+    void update(T record, int position) {
+        String oldKey = keyAt.get(position);
+        String newKey = keyOf(record);
+        if (!newKey.equals(oldKey)) {
+            remove(position);
+            add(record, position);
+        }
+    }
+
+    // Drop a position from the index
+    void remove(int position) {
+        String key = keyAt.get(position);
+        if (key == null) {
+            return;
+        }
+        Positions positions = positionsByKey.get(key);
+        positions.remove(position);
+        if (positions.size == 0) {
+            positionsByKey.remove(key);
+        }
+        keyAt.set(position, null);
+    }
+
+    // Positions indexed under a key, in ascending order
+    int[] positions(String key) {
+        Positions positions = positionsByKey.get(key);
+        return positions != null ? Arrays.copyOf(positions.values, positions.size) : NONE;
+    }
+
+    // Every key that currently has positions
+    ArrayList<String> keys() {
+        return new ArrayList<>(positionsByKey.keySet());
+    }
+
+    // Drop everything
+    void clear() {
+        positionsByKey.clear();
+        keyAt.clear();
+    }
+
+    // Sorted, growable int set; new records get the highest position, so adds are usually appends
+    private static final class Positions {
+        int[] values = new int[4];
+        int size;
+
+        void add(int position) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            if (size == 0 || values[size - 1] < position) {
+                values[size++] = position;
+                return;
+            }
+            int at = Arrays.binarySearch(values, 0, size, position);
+            if (at >= 0) {
+                return;
+            }
+            at = -at - 1;
+            System.arraycopy(values, at, values, at + 1, size - at);
+            values[at] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int at = Arrays.binarySearch(values, 0, size, position);
+            if (at >= 0) {
+                System.arraycopy(values, at + 1, values, at, size - at - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Reader/writer lock shared between every process using the same data directory,
+ * built on FileChannel.lock over a small lock file (slots.txt.lock next to slots.txt).
+ *
+ * Between processes it is a plain shared/exclusive lock. Inside one process, threads
+ * join whatever lock the process already holds: the stores' own monitors already
+ * order in-process access, and joining keeps group commit working, since every
+ * in-process writer of a batch shares one exclusive hold. The OS lock is released
+ * when the last in-process holder unlocks.
+ *
+ * The lock file holds a version number that is bumped whenever an exclusive hold
+ * changed the data files. A process that finds a version it has not seen knows
+ * another process wrote in the meantime and must reload its resident copy.
+ *
+ * Wait and hold times of the OS lock are counted per lock; see LockStats.
+ */
+final class SharedFileLock {
+    private static final ArrayList<SharedFileLock> ALL = new ArrayList<>();
+
+    private final Path path;
+    private FileChannel channel;
+    private FileLock lock;
+    private boolean exclusive;
+    private int holders;
+    private boolean changed;
+    private long knownVersion = -1;
+    private long acquiredAt;
+
+    // Statistics, guarded by this
+    private long acquisitions;
+    private long contended;
+    private long waitNanos;
+    private long maxWaitNanos;
+    private long holdNanos;
+    private long maxHoldNanos;
+
+    SharedFileLock(Path path) {
+        this.path = path;
+        LockStats.init();
+        synchronized (ALL) {
+            ALL.add(this);
+        }
+    }
+
+    /**
+     * Take the lock for reading
+     * @return true if another process changed the files since this process last held the lock
+     */
+    synchronized boolean lockShared() {
+        return acquire(false);
+    }
+
+    /**
+     * Take the lock for writing
+     * @return true if another process changed the files since this process last held the lock
+     */
+    synchronized boolean lockExclusive() {
+        return acquire(true);
+    }
+
+    // Count the current exclusive hold as having changed the files
+    synchronized void markChanged() {
+        changed = true;
+    }
+
+    synchronized void unlockShared() {
+        release(false);
+    }
+
+    /**
+     * Give up a write hold
+     * @param wroteFiles Whether this holder changed the data files
+     */
+    synchronized void unlockExclusive(boolean wroteFiles) {
+        release(wroteFiles);
+    }
+
+    private boolean acquire(boolean wantExclusive) {
+        boolean interrupted = false;
+        // A process holding the file shared must drain before it can hold it exclusively
+        while (holders > 0 && wantExclusive && !exclusive) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (holders > 0) {
+            holders++;
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            lock = channel.tryLock(0, Long.MAX_VALUE, !wantExclusive);
+            if (lock == null) {
+                lock = channel.lock(0, Long.MAX_VALUE, !wantExclusive);
+                contended++;
+            }
+        } catch (IOException e) {
+            // No lock support here (or no lock file); carry on as a single process
+            closeChannel();
+        }
+        long now = System.nanoTime();
+        recordWait(now - start);
+        acquiredAt = now;
+        exclusive = wantExclusive;
+        holders = 1;
+
+        long version = readVersion();
+        boolean stale = version != knownVersion;
+        knownVersion = version;
+        return stale;
+    }
+
+    private void release(boolean wroteFiles) {
+        changed |= wroteFiles;
+        if (--holders > 0) {
+            return;
+        }
+        if (exclusive && changed) {
+            knownVersion = knownVersion + 1;
+            writeVersion(knownVersion);
+        }
+        changed = false;
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // Closing the channel below drops the lock as well
+            closeChannel();
+        }
+        lock = null;
+        recordHold(System.nanoTime() - acquiredAt);
+        notifyAll();
+    }
+
+    private long readVersion() {
+        if (channel == null) {
+            return knownVersion;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+                // keep reading
+            }
+            return buffer.position() == Long.BYTES ? buffer.getLong(0) : 0;
+        } catch (IOException e) {
+            return knownVersion;
+        }
+    }
+
+    private void writeVersion(long version) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(0, version);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+        } catch (IOException e) {
+            // Other processes will not notice this change until the next successful write
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already unusable
+            }
+            channel = null;
+        }
+    }
+
+    private void recordWait(long nanos) {
+        acquisitions++;
+        waitNanos += nanos;
+        maxWaitNanos = Math.max(maxWaitNanos, nanos);
+    }
+
+    private void recordHold(long nanos) {
+        holdNanos += nanos;
+        maxHoldNanos = Math.max(maxHoldNanos, nanos);
+    }
+
+    // One line of statistics for this lock
+    synchronized String describe() {
+        double ms = 1_000_000.0;
+        return String.format("%s: %d acquisitions (%d contended), wait avg %.3f ms max %.3f ms, hold avg %.3f ms max %.3f ms",
+                path.getFileName(), acquisitions, contended,
+                acquisitions == 0 ? 0 : waitNanos / ms / acquisitions, maxWaitNanos / ms,
+                acquisitions == 0 ? 0 : holdNanos / ms / acquisitions, maxHoldNanos / ms);
+    }
+
+    synchronized void resetStats() {
+        acquisitions = 0;
+        contended = 0;
+        waitNanos = 0;
+        maxWaitNanos = 0;
+        holdNanos = 0;
+        maxHoldNanos = 0;
+    }
+
+    // Every lock created so far
+    static ArrayList<SharedFileLock> all() {
+        synchronized (ALL) {
+            return new ArrayList<>(ALL);
+        }
+    }
+}
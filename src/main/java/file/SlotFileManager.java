@@ -1,136 +1,194 @@
 package file;
 
+import model.Appointment;
+import model.Request;
 import model.Slot;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Scanner;
+import java.util.List;
 
 public class SlotFileManager {
     private static final String FILE_PATH = "src" + File.separator + "main" + File.separator + "resources" + File.separator + "slots.txt";
 
-    // Load all slots from file
-    public static ArrayList<Slot> loadAll() {
-        ArrayList<Slot> slots = new ArrayList<>();
-        File file = new File(FILE_PATH);
-        
-        if (!file.exists()) {
-            return slots;
-        }
+    // Secondary index names
+    private static final String BY_LECTURER = "lecturer";
+    private static final String BY_STATUS = "status";
+    private static final String BY_MONTH = "month";
+
+    // Resident copy of slots.txt (current and future months), parsed once and written through on every change
+    private static final RecordStore<Slot> STORE = new RecordStore<Slot>(FILE_PATH, SlotFileManager::parse, Slot::getSlotId, Slot::toFields)
+            .withIndex(BY_LECTURER, Slot::getLecturerTp)
+            .withIndex(BY_STATUS, slot -> slot.getStatus().toUpperCase())
+            .withIndex(BY_MONTH, slot -> SlotPartitions.monthOf(slot.getDate()));
+
+    // Read-only files of past months' slots
+    private static final SlotPartitions PARTITIONS = new SlotPartitions(STORE, BY_MONTH, SlotFileManager::parse);
+
+    static {
+        // Move slots of months that have ended out of slots.txt, once per run, off the caller's thread
+        LogCompactor.schedule(PARTITIONS::sealPastMonths);
+    }
+
+    // Slot IDs; booked slots are deleted but still named by requests and appointments
+    private static final IdSequence IDS = new IdSequence("slots", "S", () -> Math.max(
+            IdSequence.highest(loadAll(), Slot::getSlotId),
+            Math.max(IdSequence.highest(RequestFileManager.loadAll(), Request::getSlotId),
+                     IdSequence.highest(AppointmentFileManager.loadAll(), Appointment::getSlotId))));
 
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-                
-                String[] parts = line.split("\\|");
-                if (parts.length >= 6) {
-                    String slotId = parts[0];
-                    String lecturerTp = parts[1];
-                    String date = parts[2];
-                    String startTime = parts[3];
-                    String endTime = parts[4];
-                    String status = parts[5];
-                    
-                    Slot slot = new Slot(slotId, lecturerTp, date, startTime, endTime, status);
-                    slots.add(slot);
-                }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
+    // Parse one line of slots.txt, or null if it is malformed
+    private static Slot parse(PipeRecord line) {
+        if (line.fieldCount() < 6) {
+            return null;
         }
-        
-        return slots;
+        String slotId = line.field(0);
+        String lecturerTp = line.field(1);
+        String date = line.field(2);
+        String startTime = line.field(3);
+        String endTime = line.field(4);
+        String status = line.field(5);
+
+        return new Slot(slotId, lecturerTp, date, startTime, endTime, status);
+    }
+
+    // Load all slots, sealed past months included
+    public static ArrayList<Slot> loadAll() {
+        ArrayList<Slot> all = PARTITIONS.allSealed();
+        all.addAll(STORE.loadAll());
+        return all;
+    }
+
+    /**
+     * Immutable view of the slots in slots.txt (current and future months) as of the
+     * last write, read without locking or copying; sealed past months are read
+     * through loadAll or the dated queries
+     */
+    public static List<Slot> viewAll() {
+        return STORE.view();
     }
 
     // Save all slots to file
     public static void saveAll(ArrayList<Slot> slots) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            for (Slot slot : slots) {
-                writer.println(slot.toString());
-            }
-        } catch (IOException e) {
-            // Error saving, silent fail
-        }
+        STORE.saveAll(slots);
     }
 
-    // Append one slot to file
-    public static void appendOne(Slot slot) {
-        try (FileWriter fw = new FileWriter(FILE_PATH, true);
-             PrintWriter writer = new PrintWriter(fw)) {
-            writer.println(slot.toString());
-        } catch (IOException e) {
-            // Error appending, silent fail
-        }
+    // Append one slot to file; false if it could not be written
+    public static boolean appendOne(Slot slot) {
+        return STORE.append(slot);
+    }
+
+    // Next unused slot ID
+    public static String nextId() {
+        return IDS.next();
+    }
+
+    // Reserve consecutive slot IDs for a bulk insert
+    public static ArrayList<String> nextIds(int count) {
+        return IDS.next(count);
     }
 
-    // Find slot by ID
+    // Find slot by ID, in slots.txt first and then in the sealed months
     public static Slot findById(String slotId) {
-        ArrayList<Slot> slots = loadAll();
-        for (Slot slot : slots) {
-            if (slot.getSlotId().equals(slotId)) {
-                return slot;
-            }
-        }
-        return null;
+        Slot slot = STORE.findById(slotId);
+        return slot != null ? slot : PARTITIONS.findSealed(slotId);
     }
 
-    // Update slot
+    // Update slot; it becomes the next version of the stored one
     public static boolean update(Slot updatedSlot) {
-        ArrayList<Slot> slots = loadAll();
-        for (int i = 0; i < slots.size(); i++) {
-            if (slots.get(i).getSlotId().equals(updatedSlot.getSlotId())) {
-                slots.set(i, updatedSlot);
-                saveAll(slots);
-                return true;
-            }
-        }
-        return false;
+        return STORE.replaceIf(updatedSlot.getSlotId(), current -> true, current -> {
+            updatedSlot.setVersion(current.getVersion() + 1);
+            return updatedSlot;
+        });
     }
 
     // Delete slot by ID
     public static boolean delete(String slotId) {
-        ArrayList<Slot> slots = loadAll();
-        boolean removed = slots.removeIf(slot -> slot.getSlotId().equals(slotId));
-        if (removed) {
-            saveAll(slots);
-        }
-        return removed;
+        return STORE.delete(slotId);
+    }
+
+    // Stage deleting a slot as part of a transaction
+    public static void delete(Transaction transaction, String slotId) {
+        transaction.delete(STORE, slotId);
     }
 
-    // Get available slots (status = OPEN)
+    // Get available slots (status = OPEN), past months included
     public static ArrayList<Slot> getAvailableSlots() {
-        ArrayList<Slot> allSlots = loadAll();
-        ArrayList<Slot> availableSlots = new ArrayList<>();
-        for (Slot slot : allSlots) {
-            if ("OPEN".equalsIgnoreCase(slot.getStatus())) {
-                availableSlots.add(slot);
-            }
-        }
-        return availableSlots;
+        return getAvailableSlots(null, null);
+    }
+
+    /**
+     * Get available slots dated within a range; only the months in the range are read
+     * @param fromDate First date (yyyy-MM-dd), or null for no lower bound
+     * @param toDate Last date (yyyy-MM-dd), or null for no upper bound
+     */
+    public static ArrayList<Slot> getAvailableSlots(String fromDate, String toDate) {
+        return PARTITIONS.query(fromDate, toDate, BY_STATUS, "OPEN",
+                                slot -> "OPEN".equalsIgnoreCase(slot.getStatus()));
     }
 
-    // Get slots by lecturer TP
+    // Get slots by lecturer TP, past months included
     public static ArrayList<Slot> getSlotsByLecturer(String lecturerTp) {
-        ArrayList<Slot> allSlots = loadAll();
-        ArrayList<Slot> lecturerSlots = new ArrayList<>();
-        for (Slot slot : allSlots) {
-            if (slot.getLecturerTp().equals(lecturerTp)) {
-                lecturerSlots.add(slot);
-            }
-        }
-        return lecturerSlots;
+        return getSlotsByLecturer(lecturerTp, null, null);
+    }
+
+    /**
+     * Get a lecturer's slots dated within a range; only the months in the range are read
+     * @param fromDate First date (yyyy-MM-dd), or null for no lower bound
+     * @param toDate Last date (yyyy-MM-dd), or null for no upper bound
+     */
+    public static ArrayList<Slot> getSlotsByLecturer(String lecturerTp, String fromDate, String toDate) {
+        return PARTITIONS.query(fromDate, toDate, BY_LECTURER, lecturerTp,
+                                slot -> slot.getLecturerTp().equals(lecturerTp));
     }
 
     // Update slot status by ID
     public static boolean updateStatus(String slotId, String newStatus) {
-        ArrayList<Slot> slots = loadAll();
-        for (Slot slot : slots) {
-            if (slot.getSlotId().equals(slotId)) {
-                slot.setStatus(newStatus);
-                saveAll(slots);
-                return true;
-            }
+        return STORE.replaceIf(slotId, current -> true, current -> current.withStatus(newStatus));
+    }
+
+    /**
+     * Change a slot's status only if it is still the version the caller read and has the
+     * expected status, e.g. OPEN to ON_HOLD when a student books it. Checked and changed
+     * in the slot store's own write, so of two bookings of one slot exactly one succeeds.
+     * @param expectedVersion Version of the slot as read (Slot.getVersion)
+     * @param expectedStatus Status the slot must still have
+     * @return false if the slot does not exist or changed since it was read
+     */
+    public static boolean compareAndSetStatus(String slotId, long expectedVersion, String expectedStatus, String newStatus) {
+        return STORE.replaceIf(slotId,
+                current -> current.getVersion() == expectedVersion && expectedStatus.equalsIgnoreCase(current.getStatus()),
+                current -> current.withStatus(newStatus));
+    }
+
+    /**
+     * Stage a checked status change as part of a transaction: it is applied only if,
+     * when the transaction commits, the slot is still the version the caller read and
+     * has the expected status; otherwise the whole transaction is rejected
+     * @param expectedVersion Version of the slot as read (Slot.getVersion)
+     * @param expectedStatus Status the slot must still have
+     * @return false if the slot does not exist or already changed since it was read
+     */
+    public static boolean compareAndSetStatus(Transaction transaction, String slotId, long expectedVersion,
+                                              String expectedStatus, String newStatus) {
+        Slot slot = STORE.findById(slotId);
+        if (slot == null || slot.getVersion() != expectedVersion || !expectedStatus.equalsIgnoreCase(slot.getStatus())) {
+            return false;
+        }
+        transaction.updateIf(STORE, slot.withStatus(newStatus),
+                current -> current.getVersion() == expectedVersion && expectedStatus.equalsIgnoreCase(current.getStatus()));
+        return true;
+    }
+
+    /**
+     * Stage a slot status change as part of a transaction; the resident slot is
+     * left untouched until the transaction commits
+     * @return false if the slot does not exist
+     */
+    public static boolean updateStatus(Transaction transaction, String slotId, String newStatus) {
+        Slot slot = STORE.findById(slotId);
+        if (slot == null) {
+            return false;
         }
-        return false;
+        transaction.update(STORE, slot.withStatus(newStatus));
+        return true;
     }
 }
@@ -0,0 +1,337 @@
+package file;
+
+import model.Slot;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Month partitions of the slots.
+ *
+ * Slots of the current month and later live in the resident slots.txt store, which
+ * indexes them by month ("2025-12"), so a date-range query only visits the months it
+ * covers. Slots of past months that can no longer change (OPEN slots nobody booked,
+ * CANCELLED slots) are sealed into one read-only file per month,
+ * src/main/resources/slots/slots-2025-11.txt, and removed from slots.txt. A sealed
+ * month is parsed only when a query's range reaches back into it, and then kept.
+ * ON_HOLD slots stay in slots.txt until their request is settled.
+ *
+ * Sealing writes and forces the month files before the slots are deleted from
+ * slots.txt in one Transaction; if it is interrupted in between, a slot is in both
+ * places, readers take the slots.txt copy and the next sealing removes it. ids.txt
+ * in the same directory maps each sealed slot ID to its month, so findById never
+ * has to parse a month to find a past slot.
+ *
+ * Month files start with a "# crc32c" line and carry a checksum on every slot line
+ * (RecordChecksum); a damaged line is quarantined and left out, the rest of the
+ * month still loads.
+ */
+final class SlotPartitions {
+    private static final Path DIRECTORY = Paths.get("src", "main", "resources", "slots");
+    private static final Path IDS = DIRECTORY.resolve("ids.txt");
+    private static final SharedFileLock FILE_LOCK = new SharedFileLock(Paths.get("src", "main", "resources", "slots-partitions.lock"));
+    private static final String PREFIX = "slots-";
+    private static final String SUFFIX = ".txt";
+    private static final String CHECKSUM_HEADER = "# " + RecordChecksum.MARK;
+
+    private final RecordStore<Slot> store;
+    private final String monthIndex;
+    private final Function<PipeRecord, Slot> parser;
+
+    // One sealing at a time in this process; the file lock lets threads of one process share it
+    private final Object sealing = new Object();
+
+    // Parsed sealed months and the sealed slot ID directory; dropped when another process seals
+    private final HashMap<String, ArrayList<Slot>> sealedMonths = new HashMap<>();
+    private TreeSet<String> sealedMonthNames;
+    private HashMap<String, String> monthOfId;
+
+    /**
+     * @param store The resident slots.txt store
+     * @param monthIndex Name of the store's index keyed by month ("yyyy-MM")
+     * @param parser Parses one slot line
+     */
+    SlotPartitions(RecordStore<Slot> store, String monthIndex, Function<PipeRecord, Slot> parser) {
+        this.store = store;
+        this.monthIndex = monthIndex;
+        this.parser = parser;
+    }
+
+    // Month key of a yyyy-MM-dd date, or "" if the date is not in that form
+    static String monthOf(String date) {
+        if (date == null || date.length() < 7 || date.charAt(4) != '-') {
+            return "";
+        }
+        return date.substring(0, 7);
+    }
+
+    /**
+     * Slots with a date in a range that pass a filter, sealed months first
+     *
+     * In slots.txt a range bounded on both sides reads just its months' index
+     * entries; an open-ended range reads the entries of the given secondary index
+     * key instead (e.g. status OPEN), which the filter must then imply.
+     * @param from First date, yyyy-MM-dd, or null for no lower bound
+     * @param to Last date, yyyy-MM-dd, or null for no upper bound
+     * @param index Secondary index to use for an open-ended range
+     * @param key Key to look up in that index
+     * @param filter Condition on each slot
+     */
+    ArrayList<Slot> query(String from, String to, String index, String key, Predicate<Slot> filter) {
+        String fromMonth = from != null ? monthOf(from) : null;
+        String toMonth = to != null ? monthOf(to) : null;
+        ArrayList<Slot> matches = new ArrayList<>();
+
+        // Sealed months only when the range starts before the current month
+        if (fromMonth == null || fromMonth.compareTo(YearMonth.now().toString()) < 0) {
+            for (String month : sealedMonthsBetween(fromMonth, toMonth)) {
+                for (Slot slot : sealedMonth(month)) {
+                    if (inRange(slot, from, to) && filter.test(slot) && store.findById(slot.getSlotId()) == null) {
+                        matches.add(slot);
+                    }
+                }
+            }
+        }
+
+        if (from == null || to == null) {
+            for (Slot slot : store.findBy(index, key)) {
+                if (inRange(slot, from, to) && filter.test(slot)) {
+                    matches.add(slot);
+                }
+            }
+            return matches;
+        }
+        TreeSet<String> hotMonths = new TreeSet<>(store.indexKeys(monthIndex));
+        for (String month : hotMonths) {
+            if (month.compareTo(fromMonth) < 0 || month.compareTo(toMonth) > 0) {
+                continue;
+            }
+            for (Slot slot : store.findBy(monthIndex, month)) {
+                if (inRange(slot, from, to) && filter.test(slot)) {
+                    matches.add(slot);
+                }
+            }
+        }
+        return matches;
+    }
+
+    // Date compared as text, which orders yyyy-MM-dd dates correctly
+    private static boolean inRange(Slot slot, String from, String to) {
+        String date = slot.getDate();
+        return (from == null || date.compareTo(from) >= 0) && (to == null || date.compareTo(to) <= 0);
+    }
+
+    // Every sealed slot that is not also still in slots.txt
+    ArrayList<Slot> allSealed() {
+        ArrayList<Slot> all = new ArrayList<>();
+        for (String month : sealedMonthsBetween(null, null)) {
+            for (Slot slot : sealedMonth(month)) {
+                if (store.findById(slot.getSlotId()) == null) {
+                    all.add(slot);
+                }
+            }
+        }
+        return all;
+    }
+
+    // A sealed slot by ID, or null; parses at most the one month it belongs to
+    Slot findSealed(String slotId) {
+        String month;
+        synchronized (this) {
+            refresh();
+            month = monthOfId.get(slotId);
+        }
+        if (month == null) {
+            return null;
+        }
+        for (Slot slot : sealedMonth(month)) {
+            if (slot.getSlotId().equals(slotId)) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Seal every finished slot of a past month
+     * @return Number of slots moved out of slots.txt
+     */
+    int sealPastMonths() {
+        synchronized (sealing) {
+            return seal(YearMonth.now().toString());
+        }
+    }
+
+    private int seal(String currentMonth) {
+        FILE_LOCK.lockExclusive();
+        boolean written = false;
+        try {
+            synchronized (this) {
+                reload();
+            }
+            LinkedHashMap<String, ArrayList<Slot>> byMonth = new LinkedHashMap<>();
+            for (String month : new TreeSet<>(store.indexKeys(monthIndex))) {
+                if (month.isEmpty() || month.compareTo(currentMonth) >= 0) {
+                    continue;
+                }
+                for (Slot slot : store.findBy(monthIndex, month)) {
+                    if (sealable(slot)) {
+                        byMonth.computeIfAbsent(month, m -> new ArrayList<>()).add(slot);
+                    }
+                }
+            }
+            if (byMonth.isEmpty()) {
+                return 0;
+            }
+
+            Files.createDirectories(DIRECTORY);
+            Transaction transaction = new Transaction();
+            int moved = 0;
+            for (String month : byMonth.keySet()) {
+                // A month sealed before may get late additions; rewrite it with both
+                LinkedHashMap<String, Slot> merged = new LinkedHashMap<>();
+                for (Slot slot : sealedMonth(month)) {
+                    merged.put(slot.getSlotId(), slot);
+                }
+                for (Slot slot : byMonth.get(month)) {
+                    merged.put(slot.getSlotId(), slot);
+                    SlotFileManager.delete(transaction, slot.getSlotId());
+                    moved++;
+                }
+                writeMonth(month, new ArrayList<>(merged.values()));
+                written = true;
+                synchronized (this) {
+                    sealedMonths.put(month, new ArrayList<>(merged.values()));
+                    sealedMonthNames.add(month);
+                    for (String id : merged.keySet()) {
+                        monthOfId.put(id, month);
+                    }
+                }
+            }
+            writeIds();
+            transaction.commit();
+            return moved;
+        } catch (IOException e) {
+            // Error writing a month file, silent fail; unsealed slots simply stay in slots.txt
+            return 0;
+        } finally {
+            FILE_LOCK.unlockExclusive(written);
+        }
+    }
+
+    // Past slots that can no longer change
+    private static boolean sealable(Slot slot) {
+        return "OPEN".equalsIgnoreCase(slot.getStatus()) || "CANCELLED".equalsIgnoreCase(slot.getStatus());
+    }
+
+    private void writeMonth(String month, List<Slot> slots) throws IOException {
+        StringBuilder content = new StringBuilder(CHECKSUM_HEADER).append('\n');
+        for (Slot slot : slots) {
+            RecordChecksum.appendLine(content, slot.toString());
+        }
+        DataFiles.replaceAtomically(monthPath(month), content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private synchronized void writeIds() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String id : monthOfId.keySet()) {
+            content.append(id).append('|').append(monthOfId.get(id)).append('\n');
+        }
+        DataFiles.replaceAtomically(IDS, content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Path monthPath(String month) {
+        return DIRECTORY.resolve(PREFIX + month + SUFFIX);
+    }
+
+    // Sealed months within a month range (null bounds are open)
+    private synchronized ArrayList<String> sealedMonthsBetween(String fromMonth, String toMonth) {
+        refresh();
+        ArrayList<String> months = new ArrayList<>();
+        for (String month : sealedMonthNames) {
+            if ((fromMonth == null || month.compareTo(fromMonth) >= 0) && (toMonth == null || month.compareTo(toMonth) <= 0)) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+    // One sealed month's slots, parsed on first use
+    private synchronized ArrayList<Slot> sealedMonth(String month) {
+        refresh();
+        ArrayList<Slot> slots = sealedMonths.get(month);
+        if (slots == null) {
+            Path path = monthPath(month);
+            LoadedRecords<Slot> loaded = Files.exists(path) ? ChunkedLoader.load(path, parser, checksummed(path)) : new LoadedRecords<>();
+            Quarantine.save(path.getFileName().toString(), loaded);
+            slots = loaded.records;
+            sealedMonths.put(month, slots);
+        }
+        return slots;
+    }
+
+    // Whether a month file starts with the checksum header; files sealed before checksums do not
+    private static boolean checksummed(Path path) {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            return first != null && first.trim().equals(CHECKSUM_HEADER);
+        } catch (IOException e) {
+            // Unreadable; loading it finds nothing either
+            return false;
+        }
+    }
+
+    // Drop cached months if another process sealed since; caller holds this
+    private void refresh() {
+        boolean stale = FILE_LOCK.lockShared();
+        try {
+            if (stale || sealedMonthNames == null) {
+                reload();
+            }
+        } finally {
+            FILE_LOCK.unlockShared();
+        }
+    }
+
+    // Re-read the month list and the ID directory; caller holds this and the file lock
+    private void reload() {
+        sealedMonths.clear();
+        sealedMonthNames = new TreeSet<>();
+        monthOfId = new HashMap<>();
+        if (!Files.isDirectory(DIRECTORY)) {
+            return;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(DIRECTORY, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                sealedMonthNames.add(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            }
+        } catch (IOException e) {
+            // Unreadable directory, no sealed months
+        }
+        if (Files.exists(IDS)) {
+            try {
+                for (String line : Files.readAllLines(IDS, StandardCharsets.UTF_8)) {
+                    int bar = line.indexOf('|');
+                    if (bar > 0) {
+                        monthOfId.put(line.substring(0, bar), line.substring(bar + 1).trim());
+                    }
+                }
+            } catch (IOException e) {
+                // Unreadable directory file; past slots are still found by date range
+            }
+        }
+    }
+}
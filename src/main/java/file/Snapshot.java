@@ -0,0 +1,306 @@
+package file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Binary image of every store's resident records, written when the JVM shuts down
+ * cleanly and used by the next start instead of parsing the data files and
+ * replaying their logs.
+ *
+ * src/main/resources/snapshot.bin holds one section per store: its records as a
+ * BinaryRows image (block checksums included), the mutation log's last sequence
+ * number and size, and the size and modification time of the text file, base file
+ * and log as they were when the section was taken. A store memory-maps just its own
+ * section on first load, and only if all its files still have those sizes and times;
+ * if anything changed since (another process wrote, the program was killed after a
+ * write, a file was edited by hand) or the section fails its checksums, the files
+ * are loaded as before.
+ *
+ * Sections are taken under the store's lock and a shared file lock, after its log
+ * has been flushed. Stores this run never loaded keep their previous section while
+ * it still matches their files. Run with -Doob.snapshot=false to neither write nor
+ * use snapshots; with -Doob.storage=sql there are none either.
+ *
+ * Layout, big-endian: magic "OOBS", version (short), reserved (short), directory
+ * length (int), directory CRC32C (int), the directory, then the sections' images.
+ * The directory holds the section count and per section its store name, its files
+ * (path, size, modification time), the log's last seq and size, the base file size,
+ * and where its image is.
+ */
+final class Snapshot {
+    static final boolean ENABLED = LogCompactor.TEXT_BACKEND
+            && !"false".equalsIgnoreCase(System.getProperty("oob.snapshot", "true"));
+    static final Path PATH = Paths.get("src", "main", "resources", "snapshot.bin");
+    private static final int MAGIC = 0x4F4F4253;
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private static final ArrayList<RecordStore<?>> STORES = new ArrayList<>();
+    private static List<Section> previous;
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Snapshot::write, "data-snapshot"));
+        }
+    }
+
+    // One store's resident state and the file state it was taken from
+    static final class Section {
+        final String name;
+        final String[] files;
+        final long[] sizes;
+        final long[] modified;
+        final long logSeq;
+        final long logBytes;
+        final long baseBytes;
+        private byte[] image;
+        private long offset;
+        private int length;
+
+        Section(String name, Path[] files, long logSeq, long logBytes, long baseBytes, byte[] image) {
+            this(name, new String[files.length], new long[files.length], new long[files.length], logSeq, logBytes, baseBytes);
+            for (int i = 0; i < files.length; i++) {
+                long[] stamp = stamp(files[i]);
+                this.files[i] = files[i].toString();
+                sizes[i] = stamp[0];
+                modified[i] = stamp[1];
+            }
+            this.image = image;
+            this.length = image.length;
+        }
+
+        private Section(String name, String[] files, long[] sizes, long[] modified,
+                        long logSeq, long logBytes, long baseBytes) {
+            this.name = name;
+            this.files = files;
+            this.sizes = sizes;
+            this.modified = modified;
+            this.logSeq = logSeq;
+            this.logBytes = logBytes;
+            this.baseBytes = baseBytes;
+        }
+
+        // Whether these files are the ones recorded and still have the recorded sizes and times
+        boolean matches(Path[] current) {
+            if (current.length != files.length) {
+                return false;
+            }
+            for (int i = 0; i < files.length; i++) {
+                long[] stamp = stamp(current[i]);
+                if (!files[i].equals(current[i].toString()) || stamp[0] != sizes[i] || stamp[1] != modified[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean stillCurrent() {
+            Path[] current = new Path[files.length];
+            for (int i = 0; i < files.length; i++) {
+                current[i] = Paths.get(files[i]);
+            }
+            return matches(current);
+        }
+
+        /**
+         * The BinaryRows image of the records, mapped from the snapshot file on first use
+         * @return The image, or null if the snapshot file can no longer be read
+         */
+        synchronized byte[] image() {
+            if (image == null) {
+                try (FileChannel channel = FileChannel.open(PATH, StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+                    image = new byte[length];
+                    mapped.get(image);
+                } catch (IOException e) {
+                    // Replaced or removed since the directory was read
+                    return null;
+                }
+            }
+            return image;
+        }
+    }
+
+    private Snapshot() {
+    }
+
+    // Include a store in the snapshot written at shutdown
+    static synchronized void register(RecordStore<?> store) {
+        STORES.add(store);
+    }
+
+    /**
+     * A store's section of the last snapshot, if its files have not changed since
+     * @param name Store name
+     * @param files The store's files, as RecordStore lists them for snapshots
+     * @return The section, or null if there is none or it is out of date
+     */
+    static Section find(String name, Path[] files) {
+        if (!ENABLED) {
+            return null;
+        }
+        for (Section section : previous()) {
+            if (section.name.equals(name)) {
+                return section.matches(files) ? section : null;
+            }
+        }
+        return null;
+    }
+
+    // Sections of the snapshot file, read once; empty if there is none or it is damaged
+    private static synchronized List<Section> previous() {
+        if (previous == null) {
+            previous = new ArrayList<>();
+            if (Files.exists(PATH)) {
+                try (FileChannel channel = FileChannel.open(PATH, StandardOpenOption.READ)) {
+                    previous = readDirectory(channel);
+                } catch (IOException e) {
+                    // Damaged snapshot, the data files are loaded instead
+                }
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Write a snapshot of every store loaded in this process, keeping the previous
+     * sections of the others while they still match their files
+     */
+    static void write() {
+        ArrayList<RecordStore<?>> stores;
+        synchronized (Snapshot.class) {
+            stores = new ArrayList<>(STORES);
+        }
+        LinkedHashMap<String, Section> sections = new LinkedHashMap<>();
+        for (Section section : previous()) {
+            if (section.stillCurrent() && section.image() != null) {
+                sections.put(section.name, section);
+            }
+        }
+        for (RecordStore<?> store : stores) {
+            Section section = store.snapshot();
+            if (section != null) {
+                sections.put(section.name, section);
+            }
+        }
+        if (sections.isEmpty()) {
+            return;
+        }
+        try {
+            DataFiles.replaceAtomically(PATH, encode(new ArrayList<>(sections.values())));
+        } catch (IOException e) {
+            // No snapshot this time; the next start loads the data files
+        }
+    }
+
+    private static byte[] encode(List<Section> sections) throws IOException {
+        // Offsets depend on the directory's length, so it is written twice
+        byte[] directory = directory(sections, 0);
+        long start = HEADER_BYTES + directory.length;
+        directory = directory(sections, start);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(directory.length).putInt(RecordChecksum.of(directory, 0, directory.length));
+        file.write(header.array(), 0, HEADER_BYTES);
+        file.write(directory, 0, directory.length);
+        for (Section section : sections) {
+            byte[] image = section.image();
+            file.write(image, 0, image.length);
+        }
+        return file.toByteArray();
+    }
+
+    private static byte[] directory(List<Section> sections, long start) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(sections.size());
+        long offset = start;
+        for (Section section : sections) {
+            out.writeUTF(section.name);
+            out.writeShort(section.files.length);
+            for (int i = 0; i < section.files.length; i++) {
+                out.writeUTF(section.files[i]);
+                out.writeLong(section.sizes[i]);
+                out.writeLong(section.modified[i]);
+            }
+            out.writeLong(section.logSeq);
+            out.writeLong(section.logBytes);
+            out.writeLong(section.baseBytes);
+            out.writeLong(offset);
+            out.writeInt(section.length);
+            offset += section.length;
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static List<Section> readDirectory(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // Keep reading until the header is complete or the file ends
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IOException("not a snapshot");
+        }
+        header.getShort();
+        int length = header.getInt();
+        int crc = header.getInt();
+        if (length < 0 || HEADER_BYTES + (long) length > channel.size()) {
+            throw new IOException("damaged snapshot");
+        }
+        byte[] directory = new byte[length];
+        channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, length).get(directory);
+        if (RecordChecksum.of(directory, 0, length) != crc) {
+            throw new IOException("damaged snapshot directory");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(directory));
+        ArrayList<Section> sections = new ArrayList<>();
+        int count = in.readInt();
+        for (int s = 0; s < count; s++) {
+            String name = in.readUTF();
+            int fileCount = in.readUnsignedShort();
+            String[] files = new String[fileCount];
+            long[] sizes = new long[fileCount];
+            long[] modified = new long[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                files[i] = in.readUTF();
+                sizes[i] = in.readLong();
+                modified[i] = in.readLong();
+            }
+            Section section = new Section(name, files, sizes, modified, in.readLong(), in.readLong(), in.readLong());
+            section.offset = in.readLong();
+            section.length = in.readInt();
+            if (section.offset < 0 || section.length < 0 || section.offset + section.length > channel.size()) {
+                throw new IOException("damaged snapshot directory");
+            }
+            sections.add(section);
+        }
+        return sections;
+    }
+
+    // Size and modification time of a file; -1 for both if it does not exist
+    static long[] stamp(Path path) {
+        try {
+            return new long[] {Files.size(path), Files.getLastModifiedTime(path).toMillis()};
+        } catch (IOException e) {
+            return new long[] {-1, -1};
+        }
+    }
+}
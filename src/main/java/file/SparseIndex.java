@@ -0,0 +1,430 @@
+package file;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A sorted index on disk from keys (archived record IDs, student TPs) to the archive
+ * blocks holding them, for point lookups in an archive too large to keep resident.
+ *
+ * Entries (key, month, block offset) are sorted by key and packed into fixed pages of
+ * PAGE_BYTES; only the first key of each page is kept in memory, one string per page
+ * rather than one per record. A lookup binary-searches those first keys and reads
+ * the page or two that can hold the key with positional FileChannel reads. Recently
+ * read pages stay in a small LRU cache, sized with -Doob.archive.indexPages (default 64).
+ *
+ * Layout, big-endian: a header page (magic "OOBX", version short, reserved short,
+ * page count int, entry count long, directory length int, directory CRC32C int),
+ * the entry pages, then the directory: the month files the index was built from
+ * (count int, then per month its name, length long and modification time long) and
+ * the first key of every page. A page holds its entry count (short), then per entry
+ * the key, month and block offset (long), strings as a short length and UTF-8 bytes;
+ * its last 4 bytes are the CRC32C of the rest of the page.
+ *
+ * The file is written whole, streamed page by page to a temp file that is renamed
+ * over the old one.
+ */
+final class SparseIndex {
+    static final int PAGE_BYTES = 4096;
+    private static final int MAGIC = 0x4F4F4258;
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 28;
+    private static final int CACHED_PAGES = Math.max(1, Integer.getInteger("oob.archive.indexPages", 64));
+
+    // One index entry: a key and the archive block holding a record with that key
+    static final class Entry implements Comparable<Entry> {
+        final String key;
+        final String month;
+        final long offset;
+
+        Entry(String key, String month, long offset) {
+            this.key = key;
+            this.month = month;
+            this.offset = offset;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int byKey = key.compareTo(other.key);
+            if (byKey != 0) {
+                return byKey;
+            }
+            int byMonth = month.compareTo(other.month);
+            return byMonth != 0 ? byMonth : Long.compare(offset, other.offset);
+        }
+    }
+
+    // The resident part of an index file
+    private static final class Directory {
+        final int pages;
+        final long entries;
+        final LinkedHashMap<String, long[]> stamps;
+        final String[] firstKeys;
+
+        Directory(int pages, long entries, LinkedHashMap<String, long[]> stamps, String[] firstKeys) {
+            this.pages = pages;
+            this.entries = entries;
+            this.stamps = stamps;
+            this.firstKeys = firstKeys;
+        }
+    }
+
+    private final Path path;
+
+    // Read on first use; dropped when the file is rewritten or another process writes
+    private boolean opened;
+    private Directory directory;
+    private final LinkedHashMap<Integer, Entry[]> pages = new LinkedHashMap<Integer, Entry[]>(CACHED_PAGES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry[]> eldest) {
+            return size() > CACHED_PAGES;
+        }
+    };
+
+    SparseIndex(Path path) {
+        this.path = path;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    // Forget the directory and cached pages, so the file is read again on next use
+    synchronized void drop() {
+        opened = false;
+        directory = null;
+        pages.clear();
+    }
+
+    /**
+     * Month files the index was built from
+     * @return Length and modification time of each month file, or null if the index
+     *         is missing or damaged
+     */
+    synchronized LinkedHashMap<String, long[]> stamps() {
+        Directory current = directory();
+        return current != null ? current.stamps : null;
+    }
+
+    /**
+     * Entries with a key, reading at most the pages whose key range can hold it
+     * @return The entries in order, or null if the index is missing or damaged
+     */
+    synchronized ArrayList<Entry> find(String key) {
+        Directory current = directory();
+        if (current == null) {
+            return null;
+        }
+        String[] firstKeys = current.firstKeys;
+        // Entries with the key may end the last page that starts below it
+        int page = Arrays.binarySearch(firstKeys, key);
+        if (page < 0) {
+            page = -page - 1;
+        }
+        while (page > 0 && firstKeys[page - 1].compareTo(key) >= 0) {
+            page--;
+        }
+        page = Math.max(0, page - 1);
+
+        ArrayList<Entry> found = new ArrayList<>();
+        FileChannel channel = null;
+        try {
+            for (; page < current.pages; page++) {
+                if (firstKeys[page].compareTo(key) > 0) {
+                    break;
+                }
+                Entry[] entries = pages.get(page);
+                if (entries == null) {
+                    if (channel == null) {
+                        channel = FileChannel.open(path, StandardOpenOption.READ);
+                    }
+                    entries = readPage(channel, page);
+                    pages.put(page, entries);
+                }
+                for (Entry entry : entries) {
+                    if (entry.key.equals(key)) {
+                        found.add(entry);
+                    }
+                }
+            }
+            return found;
+        } catch (IOException e) {
+            // Damaged or replaced underneath; callers fall back to the block indexes
+            directory = null;
+            pages.clear();
+            return null;
+        } finally {
+            closeQuietly(channel);
+        }
+    }
+
+    // The directory, read on first use; null if the file is missing or damaged
+    private Directory directory() {
+        if (!opened) {
+            opened = true;
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    directory = readDirectory(channel);
+                } catch (IOException e) {
+                    // Damaged index, rebuilt by the next archiving run
+                    directory = null;
+                }
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Every entry in key order, read page by page for merging into a new index
+     * @throws IOException if the index is missing or damaged
+     */
+    Scan scan() throws IOException {
+        return new Scan(path);
+    }
+
+    // Sequential reader over all entries of an index file
+    static final class Scan implements Closeable {
+        private final FileChannel channel;
+        private final Directory directory;
+        private int page;
+        private Entry[] entries = new Entry[0];
+        private int next;
+
+        private Scan(Path path) throws IOException {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                directory = readDirectory(channel);
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // The next entry, or null after the last
+        Entry next() throws IOException {
+            while (next == entries.length) {
+                if (page == directory.pages) {
+                    return null;
+                }
+                entries = readPage(channel, page++);
+                next = 0;
+            }
+            return entries[next++];
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes a new index file from entries given in order. finish writes it to a temp
+     * file and install renames that over the old one; closing an unfinished writer
+     * leaves the old one in place.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final LinkedHashMap<String, long[]> stamps;
+        private final FileChannel channel;
+        private final ArrayList<String> firstKeys = new ArrayList<>();
+        private final ByteBuffer page = ByteBuffer.allocate(PAGE_BYTES);
+        private int pageEntries;
+        private long entries;
+        private Entry last;
+        private boolean finished;
+
+        /**
+         * @param target Index file to replace
+         * @param stamps Length and modification time of each month file indexed
+         */
+        Writer(Path target, LinkedHashMap<String, long[]> stamps) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.stamps = stamps;
+            this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                            StandardOpenOption.TRUNCATE_EXISTING);
+            page.position(2);
+        }
+
+        // Add the next entry; entries must come in order and equal ones are written once
+        void add(Entry entry) throws IOException {
+            if (last != null && last.compareTo(entry) >= 0) {
+                if (last.compareTo(entry) == 0) {
+                    return;
+                }
+                throw new IOException("index entries out of order at " + entry.key);
+            }
+            byte[] key = entry.key.getBytes(StandardCharsets.UTF_8);
+            byte[] month = entry.month.getBytes(StandardCharsets.UTF_8);
+            int size = 2 + key.length + 2 + month.length + 8;
+            if (size > PAGE_BYTES - 6) {
+                throw new IOException("index key too long: " + entry.key);
+            }
+            if (page.position() + size > PAGE_BYTES - 4) {
+                flushPage();
+            }
+            if (pageEntries == 0) {
+                firstKeys.add(entry.key);
+            }
+            page.putShort((short) key.length).put(key).putShort((short) month.length).put(month).putLong(entry.offset);
+            pageEntries++;
+            entries++;
+            last = entry;
+        }
+
+        // Write the last page, the directory and the header, and force the temp file to disk
+        void finish() throws IOException {
+            if (pageEntries > 0) {
+                flushPage();
+            }
+            ByteArrayOutputStream directoryBytes = new ByteArrayOutputStream(firstKeys.size() * 16 + 64);
+            DataOutputStream out = new DataOutputStream(directoryBytes);
+            out.writeInt(stamps.size());
+            for (Map.Entry<String, long[]> stamp : stamps.entrySet()) {
+                out.writeUTF(stamp.getKey());
+                out.writeLong(stamp.getValue()[0]);
+                out.writeLong(stamp.getValue()[1]);
+            }
+            for (String key : firstKeys) {
+                out.writeUTF(key);
+            }
+            out.flush();
+            byte[] content = directoryBytes.toByteArray();
+            writeFully(ByteBuffer.wrap(content), (long) (firstKeys.size() + 1) * PAGE_BYTES);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(firstKeys.size()).putLong(entries)
+                    .putInt(content.length).putInt(RecordChecksum.of(content, 0, content.length));
+            header.flip();
+            writeFully(header, 0);
+            channel.force(true);
+            channel.close();
+            finished = true;
+        }
+
+        // Replace the old index with the finished one
+        void install() throws IOException {
+            DataFiles.moveAtomically(temp, target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private void flushPage() throws IOException {
+            page.putShort(0, (short) pageEntries);
+            Arrays.fill(page.array(), page.position(), PAGE_BYTES, (byte) 0);
+            page.putInt(PAGE_BYTES - 4, RecordChecksum.of(page.array(), 0, PAGE_BYTES - 4));
+            page.clear();
+            writeFully(page, (long) firstKeys.size() * PAGE_BYTES);
+            page.clear();
+            page.position(2);
+            pageEntries = 0;
+        }
+
+        private void writeFully(ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+    }
+
+    private static Directory readDirectory(FileChannel channel) throws IOException {
+        ByteBuffer header = readAt(channel, 0, HEADER_BYTES);
+        if (header.getInt() != MAGIC || header.getShort() != VERSION) {
+            throw new IOException("not an index file");
+        }
+        header.getShort();
+        int pageCount = header.getInt();
+        long entries = header.getLong();
+        int length = header.getInt();
+        int crc = header.getInt();
+        long start = (long) (pageCount + 1) * PAGE_BYTES;
+        if (pageCount < 0 || length < 0 || start + length > channel.size()) {
+            throw new IOException("damaged index file");
+        }
+        byte[] content = readAt(channel, start, length).array();
+        if (RecordChecksum.of(content, 0, length) != crc) {
+            throw new IOException("damaged index directory");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        LinkedHashMap<String, long[]> stamps = new LinkedHashMap<>();
+        int months = in.readInt();
+        for (int i = 0; i < months; i++) {
+            stamps.put(in.readUTF(), new long[] {in.readLong(), in.readLong()});
+        }
+        String[] firstKeys = new String[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            firstKeys[i] = in.readUTF();
+        }
+        return new Directory(pageCount, entries, stamps, firstKeys);
+    }
+
+    // The entries of one page, after checking its checksum
+    private static Entry[] readPage(FileChannel channel, int page) throws IOException {
+        ByteBuffer buffer = readAt(channel, (long) (page + 1) * PAGE_BYTES, PAGE_BYTES);
+        if (buffer.getInt(PAGE_BYTES - 4) != RecordChecksum.of(buffer.array(), 0, PAGE_BYTES - 4)) {
+            throw new IOException("damaged index page " + page);
+        }
+        try {
+            Entry[] entries = new Entry[buffer.getShort() & 0xFFFF];
+            for (int i = 0; i < entries.length; i++) {
+                String key = readString(buffer);
+                String month = readString(buffer);
+                entries[i] = new Entry(key, month, buffer.getLong());
+            }
+            return entries;
+        } catch (RuntimeException e) {
+            throw new IOException("damaged index page " + page, e);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // Exactly length bytes from a position, as a buffer positioned at its start
+    private static ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("index file ends early");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Read-only channel, nothing was lost
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package file;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * A group of changes to several data files that is applied all-or-nothing,
+ * e.g. approving a request (add appointment, delete slot, delete request).
+ *
+ * Changes are staged through the FileManager overloads that take a Transaction
+ * and nothing is visible until commit(). commit() takes the journal lock, then
+ * locks every involved store in name order (so two transactions, in this or
+ * another process, can never deadlock), checks that each update and delete still
+ * has its record (and that a checked update's record still passes its check),
+ * writes the whole transaction as one journal line and only then applies it to
+ * the stores. The result depends only on that journal write; the
+ * stores' own log entries follow in the same commit window, and a crash in
+ * between is repaired from the journal on the next load. The cross-process locks
+ * are held until the store entries are durable too.
+ */
+public class Transaction {
+    private final ArrayList<Step<?>> steps = new ArrayList<>();
+    private boolean committed;
+
+    // One staged change against one store
+    private static final class Step<T> {
+        final RecordStore<T> store;
+        final RecordStore.Change<T> change;
+        final Predicate<T> expected;
+
+        Step(RecordStore<T> store, RecordStore.Change<T> change, Predicate<T> expected) {
+            this.store = store;
+            this.change = change;
+            this.expected = expected;
+        }
+
+        boolean accepted() {
+            return expected == null ? store.accepts(change) : store.accepts(change, expected);
+        }
+
+        void apply(GroupCommitWriter.Commit after) {
+            store.applyChange(change, after);
+        }
+
+        TransactionJournal.Operation operation() {
+            return new TransactionJournal.Operation(store.name(), change.op, change.payload());
+        }
+    }
+
+    // Stage a new record
+    <T> void append(RecordStore<T> store, T record) {
+        stage(store, new RecordStore.Change<>(MutationLog.APPEND, record, null));
+    }
+
+    // Stage a replacement for the record with the same ID
+    <T> void update(RecordStore<T> store, T record) {
+        stage(store, new RecordStore.Change<>(MutationLog.UPDATE, record, null));
+    }
+
+    // Stage a replacement that is applied only if the stored record still passes the check at commit
+    <T> void updateIf(RecordStore<T> store, T record, Predicate<T> expected) {
+        stage(store, new RecordStore.Change<>(MutationLog.UPDATE, record, null), expected);
+    }
+
+    // Stage removal of the record with this ID
+    <T> void delete(RecordStore<T> store, String id) {
+        stage(store, new RecordStore.Change<>(MutationLog.DELETE, null, id));
+    }
+
+    private <T> void stage(RecordStore<T> store, RecordStore.Change<T> change) {
+        stage(store, change, null);
+    }
+
+    private <T> void stage(RecordStore<T> store, RecordStore.Change<T> change, Predicate<T> expected) {
+        if (committed) {
+            throw new IllegalStateException("Transaction already committed");
+        }
+        steps.add(new Step<>(store, change, expected));
+    }
+
+    /**
+     * Apply every staged change, or none of them
+     * @return true if all changes were applied and reached the disk, false if a
+     *         record was missing or failed its check (nothing applied) or the journal
+     *         could not be written (the stores are rolled back to what the files hold)
+     */
+    public boolean commit() {
+        if (committed) {
+            throw new IllegalStateException("Transaction already committed");
+        }
+        committed = true;
+        if (steps.isEmpty()) {
+            return true;
+        }
+
+        ArrayList<RecordStore<?>> stores = new ArrayList<>();
+        for (Step<?> step : steps) {
+            if (!stores.contains(step.store)) {
+                stores.add(step.store);
+            }
+        }
+        stores.sort(Comparator.comparing(RecordStore::name));
+
+        TransactionJournal.beginCommit();
+        try {
+            GroupCommitWriter.Commit journalled = lockAndApply(stores, 0);
+            if (journalled == null) {
+                return false;
+            }
+            if (!journalled.await()) {
+                // Nothing of it is on disk; the stores drop it again
+                for (RecordStore<?> store : stores) {
+                    store.rollBackAfterWrite();
+                }
+                return false;
+            }
+            for (RecordStore<?> store : stores) {
+                store.unlockAfterWrite(true);
+            }
+            return true;
+        } finally {
+            TransactionJournal.endCommit();
+        }
+    }
+
+    /**
+     * Take the store locks one at a time, in order, then apply with all of them held.
+     * On success every store is left write-locked across processes; on rejection
+     * nothing is applied and the write locks are released again.
+     */
+    private GroupCommitWriter.Commit lockAndApply(ArrayList<RecordStore<?>> stores, int index) {
+        if (index < stores.size()) {
+            synchronized (stores.get(index)) {
+                return lockAndApply(stores, index + 1);
+            }
+        }
+
+        for (RecordStore<?> store : stores) {
+            store.lockForWrite();
+        }
+        for (Step<?> step : steps) {
+            if (!step.accepted()) {
+                for (RecordStore<?> store : stores) {
+                    store.unlockAfterWrite(false);
+                }
+                return null;
+            }
+        }
+
+        long txid = TransactionJournal.nextTxId();
+        ArrayList<TransactionJournal.Operation> operations = new ArrayList<>(steps.size());
+        for (Step<?> step : steps) {
+            operations.add(step.operation());
+        }
+        GroupCommitWriter.Commit journalled = TransactionJournal.append(txid, operations);
+
+        // Store log entries wait for the journal line, so they can never reach the disk first
+        for (RecordStore<?> store : stores) {
+            store.beginTransaction(txid, journalled);
+        }
+        for (Step<?> step : steps) {
+            step.apply(journalled);
+        }
+        for (RecordStore<?> store : stores) {
+            store.endTransaction(txid);
+        }
+        return journalled;
+    }
+}
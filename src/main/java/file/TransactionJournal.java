@@ -0,0 +1,307 @@
+package file;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Recovery journal for multi-store transactions (src/main/resources/transactions.log).
+ *
+ * Each committed Transaction is one line holding every staged operation:
+ *   txid|opCount then, per operation, |store|op|payloadLength|payload
+ * followed by its CRC32C like a base file record (RecordChecksum). A line that fails
+ * its checksum is never re-applied; under the journal's exclusive lock it is moved to
+ * the Quarantine and dropped from the file.
+ * The line is written with one group-committed write, which is the only write a
+ * committing caller waits for. The stores' own logs are written afterwards without
+ * waiting; each store remembers the highest txid it has durably applied (a T entry
+ * in its log, or "tx" in its base file header). When a store loads, any journalled
+ * transaction newer than that is re-applied, so a crash can never leave a booking
+ * half-applied. Because every store applies transactions in txid order and its log
+ * is append-only, a store that has any later entry on disk has all earlier ones too.
+ *
+ * Once the journal passes TRUNCATE_BYTES it is emptied in the background, after
+ * every registered store has loaded (applying what it was missing) and flushed.
+ *
+ * Other processes may share the journal. A commit holds transactions.log.lock
+ * exclusively from before it locks any store until its store entries are durable,
+ * re-reading the journal first if another process wrote to it, so txids stay unique.
+ * A store reloading its data reads the journal without that lock: it holds its own
+ * write lock, so no transaction touching it can be half-written at that moment.
+ */
+final class TransactionJournal {
+    static final long TRUNCATE_BYTES = 64 * 1024;
+    private static final String TX_HEADER = "# tx ";
+
+    private static final Path PATH = Paths.get("src", "main", "resources", "transactions.log");
+    private static final GroupCommitWriter WRITER = new GroupCommitWriter(PATH);
+    private static final SharedFileLock FILE_LOCK = new SharedFileLock(Paths.get(PATH + ".lock"));
+    private static final HashMap<String, RecordStore<?>> STORES = new HashMap<>();
+
+    // Commits hold the read side; truncation takes the write side
+    private static final ReentrantReadWriteLock TRUNCATION = new ReentrantReadWriteLock();
+
+    // One journalled operation against a named store
+    static final class Operation {
+        final String store;
+        final char op;
+        final String payload;
+
+        Operation(String store, char op, String payload) {
+            this.store = store;
+            this.op = op;
+            this.payload = payload;
+        }
+    }
+
+    // One journalled transaction
+    static final class Record {
+        final long txid;
+        final ArrayList<Operation> operations;
+
+        Record(long txid, ArrayList<Operation> operations) {
+            this.txid = txid;
+            this.operations = operations;
+        }
+    }
+
+    private static long lastTxId;
+    private static long bytes;
+    private static boolean truncationScheduled;
+
+    private TransactionJournal() {
+    }
+
+    // Make a store known to recovery and truncation
+    static synchronized void register(String name, RecordStore<?> store) {
+        STORES.put(name, store);
+    }
+
+    /**
+     * Journalled operations a store has not applied yet, oldest transaction first
+     * @param name Store name
+     * @param appliedTxId Highest txid the store already contains
+     */
+    static synchronized List<Record> pendingFor(String name, long appliedTxId) {
+        ArrayList<Record> pending = new ArrayList<>();
+        for (Record record : read(false)) {
+            if (record.txid <= appliedTxId) {
+                continue;
+            }
+            ArrayList<Operation> mine = new ArrayList<>();
+            for (Operation operation : record.operations) {
+                if (operation.store.equals(name)) {
+                    mine.add(operation);
+                }
+            }
+            if (!mine.isEmpty()) {
+                pending.add(new Record(record.txid, mine));
+            }
+        }
+        pending.sort((a, b) -> Long.compare(a.txid, b.txid));
+        return pending;
+    }
+
+    // Keep txids above anything a store has already seen
+    static synchronized void observe(long txid) {
+        lastTxId = Math.max(lastTxId, txid);
+    }
+
+    /**
+     * Held from before the stores are locked until they have applied the transaction,
+     * so truncation never sees a journalled but unapplied transaction: the read side
+     * of TRUNCATION in this process, the exclusive file lock across processes
+     */
+    static void beginCommit() {
+        TRUNCATION.readLock().lock();
+        if (FILE_LOCK.lockExclusive()) {
+            synchronized (TransactionJournal.class) {
+                // Another process appended or truncated; reopen and catch up on txids
+                WRITER.release();
+                read(true);
+            }
+        }
+    }
+
+    static void endCommit() {
+        FILE_LOCK.unlockExclusive(true);
+        TRUNCATION.readLock().unlock();
+        boolean schedule;
+        synchronized (TransactionJournal.class) {
+            schedule = !truncationScheduled && bytes >= TRUNCATE_BYTES;
+            truncationScheduled |= schedule;
+        }
+        if (schedule) {
+            LogCompactor.schedule(TransactionJournal::truncate);
+        }
+    }
+
+    // Next transaction ID; called while the caller holds every involved store's lock
+    static synchronized long nextTxId() {
+        return ++lastTxId;
+    }
+
+    /**
+     * Queue a transaction's journal line
+     * @param txid ID from nextTxId
+     * @param operations Every staged operation, in apply order
+     * @return Commit to wait on; once it is durable the transaction is
+     */
+    static synchronized GroupCommitWriter.Commit append(long txid, ArrayList<Operation> operations) {
+        StringBuilder line = new StringBuilder();
+        line.append(txid).append('|').append(operations.size());
+        for (Operation operation : operations) {
+            line.append('|').append(operation.store)
+                .append('|').append(operation.op)
+                .append('|').append(operation.payload.length())
+                .append('|').append(operation.payload);
+        }
+        StringBuilder checked = new StringBuilder(line.length() + 10);
+        RecordChecksum.appendLine(checked, line.toString());
+        byte[] encoded = checked.toString().getBytes(StandardCharsets.UTF_8);
+        bytes += encoded.length;
+        return WRITER.submit(encoded);
+    }
+
+    /**
+     * Read every complete journal line, raising lastTxId to match
+     * @param cutTornTail Cut off an incomplete final line and quarantine damaged ones; only safe
+     *                    under the exclusive file lock
+     */
+    private static ArrayList<Record> read(boolean cutTornTail) {
+        ArrayList<Record> records = new ArrayList<>();
+        if (!Files.exists(PATH)) {
+            bytes = 0;
+            return records;
+        }
+        String content;
+        try {
+            content = new String(Files.readAllBytes(PATH), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return records;
+        }
+        bytes = content.length();
+        ArrayList<String> damaged = new ArrayList<>();
+        // The journal without its damaged lines, once there is one
+        StringBuilder intact = null;
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String raw = content.substring(start, end);
+            String line = RecordChecksum.verified(raw);
+            boolean header = line != null && line.startsWith(TX_HEADER);
+            Record record = line != null && !header ? parse(line) : null;
+            if (!header && record == null) {
+                if (!raw.trim().isEmpty()) {
+                    damaged.add(raw);
+                    if (intact == null) {
+                        intact = new StringBuilder(content.substring(0, start));
+                    }
+                }
+                start = end + 1;
+                continue;
+            }
+            if (intact != null) {
+                intact.append(raw).append('\n');
+            }
+            if (header) {
+                try {
+                    lastTxId = Math.max(lastTxId, Long.parseLong(line.substring(TX_HEADER.length()).trim()));
+                } catch (NumberFormatException e) {
+                    // Damaged header, the records still carry their txids
+                }
+            } else {
+                records.add(record);
+                lastTxId = Math.max(lastTxId, record.txid);
+            }
+            start = end + 1;
+        }
+        if (cutTornTail && intact != null) {
+            // Under the exclusive lock: quarantine the damaged lines and rewrite without them (and any torn tail)
+            Quarantine.saveLines(PATH.getFileName().toString(), damaged);
+            try {
+                DataFiles.replaceAtomically(PATH, intact.toString().getBytes(StandardCharsets.UTF_8));
+                bytes = intact.length();
+            } catch (IOException e) {
+                // Left in place; they fail their checksum again on the next read
+            }
+        } else if (cutTornTail && start < content.length()) {
+            // A torn final line was never acknowledged; cut it so the next append starts clean
+            DataFiles.truncate(PATH, content.substring(0, start).getBytes(StandardCharsets.UTF_8).length);
+        }
+        return records;
+    }
+
+    private static Record parse(String line) {
+        try {
+            int at = line.indexOf('|');
+            long txid = Long.parseLong(line.substring(0, at));
+            int next = line.indexOf('|', at + 1);
+            int count = Integer.parseInt(next < 0 ? line.substring(at + 1) : line.substring(at + 1, next));
+            ArrayList<Operation> operations = new ArrayList<>(count);
+            at = next;
+            for (int i = 0; i < count; i++) {
+                int storeEnd = line.indexOf('|', at + 1);
+                String store = line.substring(at + 1, storeEnd);
+                char op = line.charAt(storeEnd + 1);
+                int lengthEnd = line.indexOf('|', storeEnd + 3);
+                int length = Integer.parseInt(line.substring(storeEnd + 3, lengthEnd));
+                String payload = line.substring(lengthEnd + 1, lengthEnd + 1 + length);
+                operations.add(new Operation(store, op, payload));
+                at = lengthEnd + 1 + length;
+            }
+            return at == line.length() ? new Record(txid, operations) : null;
+        } catch (RuntimeException e) {
+            // Damaged line; it cannot have been acknowledged
+            return null;
+        }
+    }
+
+    // Empty the journal once every store holds everything it records
+    private static void truncate() {
+        TRUNCATION.writeLock().lock();
+        FILE_LOCK.lockExclusive();
+        boolean truncated = false;
+        try {
+            ArrayList<RecordStore<?>> stores;
+            synchronized (TransactionJournal.class) {
+                WRITER.release();
+                ArrayList<Record> records = read(true);
+                // A store that has not been opened in this run may still be missing operations
+                for (Record record : records) {
+                    for (Operation operation : record.operations) {
+                        if (!STORES.containsKey(operation.store)) {
+                            return;
+                        }
+                    }
+                }
+                stores = new ArrayList<>(STORES.values());
+            }
+            for (RecordStore<?> store : stores) {
+                store.flushForJournal();
+            }
+            WRITER.release();
+            synchronized (TransactionJournal.class) {
+                StringBuilder header = new StringBuilder();
+                RecordChecksum.appendLine(header, TX_HEADER + lastTxId);
+                DataFiles.replaceAtomically(PATH, header.toString().getBytes(StandardCharsets.UTF_8));
+                bytes = 0;
+                truncated = true;
+            }
+        } catch (IOException e) {
+            // Keep the old journal; it is still correct, only longer
+        } finally {
+            synchronized (TransactionJournal.class) {
+                truncationScheduled = false;
+            }
+            FILE_LOCK.unlockExclusive(truncated);
+            TRUNCATION.writeLock().unlock();
+        }
+    }
+}
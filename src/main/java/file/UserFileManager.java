@@ -1,136 +1,123 @@
 package file;
 
 import model.*;
+import util.FreeIdAllocator;
 import util.UserIdGenerator;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 
 public class UserFileManager {
     private static final String FILE_PATH = "src" + File.separator + "main" + File.separator + "resources" + File.separator + "users.txt";
 
-    // Load all users from file
-    public static ArrayList<User> loadAll() {
-        ArrayList<User> users = new ArrayList<>();
-        File file = new File(FILE_PATH);
-        
-        if (!file.exists()) {
-            return users;
-        }
+    // Secondary index name
+    private static final String BY_EMAIL = "email";
 
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-                
-                String[] parts = line.split("\\|");
-                if (parts.length >= 5) {
-                    String tp = parts[0];
-                    String role = parts[1];
-                    String name = parts[2];
-                    String email = parts[3];
-                    String password = parts[4];
-                    
-                    // Handle optional profile fields (backward compatible)
-                    String profilePicture = (parts.length > 5 && !parts[5].isEmpty()) ? parts[5] : "👤";
-                    String description = (parts.length > 6) ? parts[6] : "";
-                    String phoneNumber = (parts.length > 7) ? parts[7] : "";
-                    String address = (parts.length > 8) ? parts[8] : "";
-                    
-                    User user;
-                    switch (role.toUpperCase()) {
-                        case "STUDENT":
-                            user = new Student(tp, name, email, password);
-                            break;
-                        case "LECTURER":
-                            user = new Lecturer(tp, name, email, password);
-                            break;
-                        case "STAFF":
-                            user = new Staff(tp, name, email, password);
-                            break;
-                        case "ADMIN":
-                            user = new Admin(tp, name, email, password);
-                            break;
-                        default:
-                            user = new User(tp, role, name, email, password);
-                    }
-                    // Set profile fields
-                    user.setProfilePicture(profilePicture);
-                    user.setDescription(description);
-                    user.setPhoneNumber(phoneNumber);
-                    user.setAddress(address);
-                    
-                    users.add(user);
+    // Numbers taken by each role's user IDs, for generateNewUserId's gap filling
+    private static final FreeIdAllocator USED_NUMBERS = new FreeIdAllocator();
+
+    // Resident copy of users.txt, parsed once and written through on every change
+    private static final RecordStore<User> STORE = new RecordStore<User>(FILE_PATH, UserFileManager::parse, User::getTp, User::toFields)
+            .withIndex(BY_EMAIL, user -> user.getEmail().toLowerCase())
+            .withListener(new RecordStore.Listener<User>() {
+                @Override
+                public void added(String id, User user) {
+                    USED_NUMBERS.add(user.getRole(), id);
                 }
-            }
-        } catch (FileNotFoundException e) {
-            // File doesn't exist yet, return empty list
+
+                @Override
+                public void removed(String id, User user) {
+                    USED_NUMBERS.remove(user.getRole(), id);
+                }
+
+                @Override
+                public void cleared() {
+                    USED_NUMBERS.clear();
+                }
+            });
+
+    // Parse one line of users.txt, or null if it is malformed
+    private static User parse(PipeRecord line) {
+        if (line.fieldCount() < 5) {
+            return null;
         }
-        
-        return users;
+        String tp = line.field(0);
+        String role = line.field(1);
+        String name = line.field(2);
+        String email = line.field(3);
+        String password = line.field(4);
+
+        // Handle optional profile fields (backward compatible)
+        String profilePicture = line.fieldOr(5, "");
+        if (profilePicture.isEmpty()) {
+            profilePicture = "👤";
+        }
+        String description = line.fieldOr(6, "");
+        String phoneNumber = line.fieldOr(7, "");
+        String address = line.fieldOr(8, "");
+
+        User user;
+        switch (role.toUpperCase()) {
+            case "STUDENT":
+                user = new Student(tp, name, email, password);
+                break;
+            case "LECTURER":
+                user = new Lecturer(tp, name, email, password);
+                break;
+            case "STAFF":
+                user = new Staff(tp, name, email, password);
+                break;
+            case "ADMIN":
+                user = new Admin(tp, name, email, password);
+                break;
+            default:
+                user = new User(tp, role, name, email, password);
+        }
+        // Set profile fields
+        user.setProfilePicture(profilePicture);
+        user.setDescription(description);
+        user.setPhoneNumber(phoneNumber);
+        user.setAddress(address);
+
+        return user;
+    }
+
+    // Load all users
+    public static ArrayList<User> loadAll() {
+        return STORE.loadAll();
     }
 
     // Save all users to file
     public static void saveAll(ArrayList<User> users) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(FILE_PATH))) {
-            for (User user : users) {
-                writer.println(user.toString());
-            }
-        } catch (IOException e) {
-            // Error saving, silent fail
-        }
+        STORE.saveAll(users);
     }
 
-    // Append one user to file
-    public static void appendOne(User user) {
-        try (FileWriter fw = new FileWriter(FILE_PATH, true);
-             PrintWriter writer = new PrintWriter(fw)) {
-            writer.println(user.toString());
-        } catch (IOException e) {
-            // Error appending, silent fail
-        }
+    // Append one user to file; false if it could not be written
+    public static boolean appendOne(User user) {
+        return STORE.append(user);
     }
 
     // Find user by TP
     public static User findById(String tp) {
-        ArrayList<User> users = loadAll();
-        for (User user : users) {
-            if (user.getTp().equals(tp)) {
-                return user;
-            }
-        }
-        return null;
+        return STORE.findById(tp);
     }
 
-    // Update user
+    // Update user; written behind when -Doob.writeBehind=true (see WriteBehind). A copy is
+    // stored, so the caller's object (often the session's user) can change without touching it
     public static boolean update(User updatedUser) {
-        ArrayList<User> users = loadAll();
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getTp().equals(updatedUser.getTp())) {
-                users.set(i, updatedUser);
-                saveAll(users);
-                return true;
-            }
-        }
-        return false;
+        return STORE.updateBehind(updatedUser.copy());
     }
 
     // Delete user by TP
     public static boolean delete(String tp) {
-        ArrayList<User> users = loadAll();
-        boolean removed = users.removeIf(user -> user.getTp().equals(tp));
-        if (removed) {
-            saveAll(users);
-        }
-        return removed;
+        return STORE.delete(tp);
     }
 
-    // Validate login
+    // Validate login; the session gets its own copy, which profile editing changes
     public static User validateLogin(String tp, String password) {
         User user = findById(tp);
         if (user != null && user.getPassword().equals(password)) {
-            return user;
+            return user.copy();
         }
         return null;
     }
@@ -142,11 +129,11 @@ public class UserFileManager {
      * @return User object if credentials are valid, null otherwise
      */
     public static User validateLoginByEmail(String email, String password) {
-        ArrayList<User> users = loadAll();
+        ArrayList<User> users = STORE.findBy(BY_EMAIL, email.toLowerCase());
         
         for (User user : users) {
-            if (user.getEmail().equalsIgnoreCase(email) && user.getPassword().equals(password)) {
-                return user;
+            if (user.getPassword().equals(password)) {
+                return user.copy();
             }
         }
         return null;
@@ -158,13 +145,8 @@ public class UserFileManager {
      * @return User object if found, null otherwise
      */
     public static User findByEmail(String email) {
-        ArrayList<User> users = loadAll();
-        for (User user : users) {
-            if (user.getEmail().equalsIgnoreCase(email)) {
-                return user;
-            }
-        }
-        return null;
+        ArrayList<User> users = STORE.findBy(BY_EMAIL, email.toLowerCase());
+        return users.isEmpty() ? null : users.get(0);
     }
     
     /**
@@ -174,8 +156,8 @@ public class UserFileManager {
      * @return Generated unique user ID
      */
     public static String generateNewUserId(String role, String name) {
-        ArrayList<User> existingUsers = loadAll();
-        return UserIdGenerator.generateUserId(role, name, existingUsers);
+        STORE.ensureCurrent();
+        return UserIdGenerator.generateUserId(role, USED_NUMBERS);
     }
     
     /**
@@ -184,7 +166,7 @@ public class UserFileManager {
      * @param name User's name
      * @param email User's email
      * @param plainPassword Plain text password (stored as-is)
-     * @return Created User object
+     * @return Created User object, or null if it could not be saved
      */
     public static User createUserWithAutoId(String role, String name, String email, String plainPassword) {
         String userId = generateNewUserId(role, name);
@@ -208,8 +190,7 @@ public class UserFileManager {
                 user = new User(userId, role, name, email, plainPassword);
         }
         
-        appendOne(user);
-        return user;
+        return appendOne(user) ? user : null;
     }
     
     /**
@@ -222,7 +203,8 @@ public class UserFileManager {
         ArrayList<User> migratedUsers = new ArrayList<>();
         boolean needsMigration = false;
         
-        for (User user : users) {
+        for (User stored : users) {
+            User user = stored.copy();
             String oldId = user.getTp();
             String role = user.getRole();
             
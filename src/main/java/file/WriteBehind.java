@@ -0,0 +1,78 @@
+package file;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional write-behind mode for profile edits (UserFileManager.update), the frequent
+ * single-record updates nothing else depends on. Off by default; run with
+ * -Doob.writeBehind=true to enable it.
+ *
+ * A write-behind update is applied in memory and published at once, so every reader
+ * in this process sees it, and the caller returns without waiting for the disk. Its
+ * log entry is queued per store, keyed by record ID: a later update of the same ID
+ * replaces the queued one, so a record changed ten times in a burst is logged once.
+ * The queue is logged as one batch by the write-behind thread at most
+ * -Doob.writeBehind.maxDelayMillis (default 200) after its first update, by the
+ * caller whose update fills it to -Doob.writeBehind.maxPending records (default 256),
+ * or by any other write to the same store, which logs it ahead of its own change so
+ * the log keeps the order the changes were made in. Everything still queued is logged
+ * when the JVM shuts down, before the Snapshot is taken.
+ *
+ * Other processes see a write-behind update only once it has been logged, and an
+ * update still queued when the process is killed is lost; use it only where that is
+ * acceptable. Slot status changes, checked changes (SlotRepository.compareAndSetStatus)
+ * and Transactions always write through.
+ */
+public final class WriteBehind {
+    static final boolean ENABLED = Boolean.getBoolean("oob.writeBehind");
+    static final long MAX_DELAY_MILLIS = Math.max(1, Long.getLong("oob.writeBehind.maxDelayMillis", 200));
+    static final int MAX_PENDING = Math.max(1, Integer.getInteger("oob.writeBehind.maxPending", 256));
+
+    private static final ArrayList<RecordStore<?>> STORES = new ArrayList<>();
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "data-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(WriteBehind::flushAll, "data-write-behind-flush"));
+        }
+    }
+
+    private WriteBehind() {
+    }
+
+    // Include a store in the flush at shutdown; called on its first write-behind update
+    static synchronized void register(RecordStore<?> store) {
+        if (!STORES.contains(store)) {
+            STORES.add(store);
+        }
+    }
+
+    // Log a store's queue once the maximum delay has passed
+    static void schedule(Runnable flush) {
+        EXECUTOR.schedule(() -> {
+            try {
+                flush.run();
+            } catch (RuntimeException e) {
+                // Failed flush, silent fail; the queue is logged by the store's next write or at shutdown
+            }
+        }, MAX_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Log every store's queue now
+    static void flushAll() {
+        ArrayList<RecordStore<?>> stores;
+        synchronized (WriteBehind.class) {
+            stores = new ArrayList<>(STORES);
+        }
+        for (RecordStore<?> store : stores) {
+            store.flushPending();
+        }
+    }
+}
@@ -105,6 +105,17 @@ public class Appointment {
         this.cancelReason = cancelReason;
     }
 
+    // Copy to change and store; records read from a repository are shared with other readers
+    public Appointment copy() {
+        return new Appointment(appointmentId, requestId, studentTp, lecturerTp, slotId, date, startTime, status, cancelReason);
+    }
+
+    // Field values in file order, the same ones toString joins with '|'
+    public String[] toFields() {
+        return new String[] {appointmentId, requestId, studentTp, lecturerTp, slotId, date, startTime,
+                             status, cancelReason != null ? cancelReason : ""};
+    }
+
     @Override
     public String toString() {
         return appointmentId + "|" + requestId + "|" + studentTp + "|" + lecturerTp + "|" + 
@@ -115,6 +115,17 @@ public class Request {
         this.cancelReason = cancelReason;
     }
 
+    // Copy to change and store; records read from a repository are shared with other readers
+    public Request copy() {
+        return new Request(requestId, studentTp, lecturerTp, slotId, date, startTime, endTime, reason, status, cancelReason);
+    }
+
+    // Field values in file order, the same ones toString joins with '|'
+    public String[] toFields() {
+        return new String[] {requestId, studentTp, lecturerTp, slotId, date, startTime, endTime,
+                             reason, status, cancelReason != null ? cancelReason : ""};
+    }
+
     @Override
     public String toString() {
         return requestId + "|" + studentTp + "|" + lecturerTp + "|" + slotId + "|" + 
@@ -8,6 +8,10 @@ public class Slot {
     private String endTime;
     private String status;
 
+    // Bumped by every stored change, so a booking can tell whether the slot changed since it was read.
+    // Kept in memory only: not written to the file, and back to 0 whenever the store is reloaded
+    private long version;
+
     public Slot(String slotId, String lecturerTp, String date, String startTime, String endTime, String status) {
         this.slotId = slotId;
         this.lecturerTp = lecturerTp;
@@ -42,6 +46,10 @@ public class Slot {
         return status;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     // Setters
     public void setSlotId(String slotId) {
         this.slotId = slotId;
@@ -67,6 +75,29 @@ public class Slot {
         this.status = status;
     }
 
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    // Copy with another status and the next version
+    public Slot withStatus(String newStatus) {
+        Slot copy = new Slot(slotId, lecturerTp, date, startTime, endTime, newStatus);
+        copy.version = version + 1;
+        return copy;
+    }
+
+    // Copy to change and store; records read from a repository are shared with other readers
+    public Slot copy() {
+        Slot copy = new Slot(slotId, lecturerTp, date, startTime, endTime, status);
+        copy.version = version;
+        return copy;
+    }
+
+    // Field values in file order, the same ones toString joins with '|'
+    public String[] toFields() {
+        return new String[] {slotId, lecturerTp, date, startTime, endTime, status};
+    }
+
     @Override
     public String toString() {
         return slotId + "|" + lecturerTp + "|" + date + "|" + startTime + "|" + endTime + "|" + status;
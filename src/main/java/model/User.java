@@ -136,6 +136,16 @@ public class User {
         }
     }
 
+    // Copy to change and store; records read from a repository are shared with other readers
+    public User copy() {
+        return new User(tp, role, name, email, password, profilePicture, description, phoneNumber, address);
+    }
+
+    // Field values in file order, the same ones toString joins with '|'
+    public String[] toFields() {
+        return new String[] {tp, role, name, email, password, profilePicture, description, phoneNumber, address};
+    }
+
     @Override
     public String toString() {
         // Format: tp|role|name|email|password|profilePicture|description|phoneNumber|address
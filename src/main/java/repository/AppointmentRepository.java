@@ -0,0 +1,53 @@
+package repository;
+
+import model.Appointment;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage for approved, completed and cancelled appointments
+ */
+public interface AppointmentRepository {
+
+    // Load all appointments
+    ArrayList<Appointment> loadAll();
+
+    // Immutable view of every appointment as of the last change; it never changes while being read
+    List<Appointment> viewAll();
+
+    // Replace all appointments
+    void saveAll(ArrayList<Appointment> appointments);
+
+    // Add one appointment; false if it could not be stored
+    boolean appendOne(Appointment appointment);
+
+    // Stage adding an appointment as part of a unit of work
+    void appendOne(UnitOfWork work, Appointment appointment);
+
+    // Next unused appointment ID
+    String nextId();
+
+    // Reserve consecutive appointment IDs for a bulk insert
+    ArrayList<String> nextIds(int count);
+
+    // Find appointment by ID, or null
+    Appointment findById(String appointmentId);
+
+    // Update the appointment stored under the appointment's ID
+    boolean update(Appointment updatedAppointment);
+
+    // Stage an appointment update as part of a unit of work
+    void update(UnitOfWork work, Appointment updatedAppointment);
+
+    // Delete appointment by ID
+    boolean delete(String appointmentId);
+
+    // Get appointments by lecturer TP
+    ArrayList<Appointment> getAppointmentsByLecturer(String lecturerTp);
+
+    // Get appointments by student TP
+    ArrayList<Appointment> getAppointmentsByStudent(String studentTp);
+
+    // Get appointments with a status (SCHEDULED, COMPLETED, CANCELLED)
+    ArrayList<Appointment> getAppointmentsByStatus(String status);
+}
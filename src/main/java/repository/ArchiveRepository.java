@@ -0,0 +1,28 @@
+package repository;
+
+import model.Appointment;
+import model.Request;
+import java.util.ArrayList;
+
+/**
+ * History that has been moved out of the live appointment and request storage.
+ * Finished appointments and cancelled requests older than the archive horizon are
+ * only found here, not through AppointmentRepository or RequestRepository.
+ */
+public interface ArchiveRepository {
+
+    // Move everything past the archive horizon into the archive now; returns the number of records moved
+    int archiveDue();
+
+    // Archived appointments of one student
+    ArrayList<Appointment> getArchivedAppointmentsByStudent(String studentTp);
+
+    // Archived appointments of one lecturer
+    ArrayList<Appointment> getArchivedAppointmentsByLecturer(String lecturerTp);
+
+    // Archived appointments dated from one yyyy-MM-dd date to another (null bounds are open)
+    ArrayList<Appointment> getArchivedAppointmentsBetween(String from, String to);
+
+    // Archived cancelled requests of one student
+    ArrayList<Request> getArchivedRequestsByStudent(String studentTp);
+}
@@ -0,0 +1,69 @@
+package repository;
+
+/**
+ * Entry point to storage: one repository per entity, all from the same backend.
+ *
+ * The backend is chosen once, at startup, with system properties:
+ *   oob.storage      - "text" (default): the pipe-delimited files in src/main/resources
+ *                      "sql": an embedded SQL database through JDBC
+ *   oob.storage.url  - JDBC URL for "sql" (default jdbc:h2:./src/main/resources/oob-data;
+ *                      e.g. jdbc:sqlite:src/main/resources/oob-data.db with the SQLite driver)
+ * The first time the SQL backend opens an empty database it imports the text files.
+ */
+public class Repositories {
+    private static final String DEFAULT_SQL_URL = "jdbc:h2:./src/main/resources/oob-data";
+
+    private static final UserRepository USERS;
+    private static final SlotRepository SLOTS;
+    private static final RequestRepository REQUESTS;
+    private static final AppointmentRepository APPOINTMENTS;
+    private static final ArchiveRepository ARCHIVE;
+    private static final SqlDatabase DATABASE;
+
+    static {
+        if ("sql".equalsIgnoreCase(System.getProperty("oob.storage", "text"))) {
+            DATABASE = new SqlDatabase(System.getProperty("oob.storage.url", DEFAULT_SQL_URL));
+            USERS = new SqlUserRepository(DATABASE);
+            SLOTS = new SqlSlotRepository(DATABASE);
+            REQUESTS = new SqlRequestRepository(DATABASE, SLOTS);
+            APPOINTMENTS = new SqlAppointmentRepository(DATABASE);
+            ARCHIVE = new SqlArchiveRepository();
+        } else {
+            DATABASE = null;
+            USERS = new TextUserRepository();
+            SLOTS = new TextSlotRepository();
+            REQUESTS = new TextRequestRepository();
+            APPOINTMENTS = new TextAppointmentRepository();
+            ARCHIVE = new TextArchiveRepository();
+        }
+    }
+
+    private Repositories() {
+    }
+
+    public static UserRepository users() {
+        return USERS;
+    }
+
+    public static SlotRepository slots() {
+        return SLOTS;
+    }
+
+    public static RequestRepository requests() {
+        return REQUESTS;
+    }
+
+    public static AppointmentRepository appointments() {
+        return APPOINTMENTS;
+    }
+
+    // Finished appointments and cancelled requests past the archive horizon
+    public static ArchiveRepository archive() {
+        return ARCHIVE;
+    }
+
+    // Start a unit of work for changes that must be applied together
+    public static UnitOfWork begin() {
+        return DATABASE != null ? new SqlUnitOfWork(DATABASE) : new TextUnitOfWork();
+    }
+}
@@ -0,0 +1,59 @@
+package repository;
+
+import model.Request;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage for students' consultation requests
+ */
+public interface RequestRepository {
+
+    // Load all requests
+    ArrayList<Request> loadAll();
+
+    // Immutable view of every request as of the last change; it never changes while being read
+    List<Request> viewAll();
+
+    // Replace all requests
+    void saveAll(ArrayList<Request> requests);
+
+    // Add one request; false if it could not be stored
+    boolean appendOne(Request request);
+
+    // Stage adding a request as part of a unit of work
+    void appendOne(UnitOfWork work, Request request);
+
+    // Next unused request ID
+    String nextId();
+
+    // Reserve consecutive request IDs for a bulk insert
+    ArrayList<String> nextIds(int count);
+
+    // Find request by ID, or null
+    Request findById(String requestId);
+
+    // Update the request stored under the request's ID
+    boolean update(Request updatedRequest);
+
+    // Delete request by ID
+    boolean delete(String requestId);
+
+    // Stage deleting a request as part of a unit of work
+    void delete(UnitOfWork work, String requestId);
+
+    // Get requests by student TP
+    ArrayList<Request> getRequestsByStudent(String studentTp);
+
+    // Get pending requests
+    ArrayList<Request> getPendingRequests();
+
+    /**
+     * Cancel a pending request, releasing its slot back to OPEN
+     * @param requestId The request ID to cancel
+     * @param reason Cancellation reason
+     * @return true if cancelled successfully, false if request not found, already processed
+     *         or its slot is gone
+     */
+    boolean cancelRequest(String requestId, String reason);
+}
@@ -0,0 +1,86 @@
+package repository;
+
+import model.Slot;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Storage for lecturer consultation slots
+ */
+public interface SlotRepository {
+
+    // Load all slots
+    ArrayList<Slot> loadAll();
+
+    // Immutable view of the current slots as of the last change (the text backend leaves out sealed past months)
+    List<Slot> viewAll();
+
+    // Replace all slots
+    void saveAll(ArrayList<Slot> slots);
+
+    // Add one slot; false if it could not be stored
+    boolean appendOne(Slot slot);
+
+    // Next unused slot ID
+    String nextId();
+
+    // Reserve consecutive slot IDs for a bulk insert
+    ArrayList<String> nextIds(int count);
+
+    // Find slot by ID, or null
+    Slot findById(String slotId);
+
+    // Update the slot stored under the slot's ID
+    boolean update(Slot updatedSlot);
+
+    // Delete slot by ID
+    boolean delete(String slotId);
+
+    // Stage deleting a slot as part of a unit of work
+    void delete(UnitOfWork work, String slotId);
+
+    // Get available slots (status = OPEN)
+    ArrayList<Slot> getAvailableSlots();
+
+    /**
+     * Get available slots dated within a range
+     * @param fromDate First date (yyyy-MM-dd), or null for no lower bound
+     * @param toDate Last date (yyyy-MM-dd), or null for no upper bound
+     */
+    ArrayList<Slot> getAvailableSlots(String fromDate, String toDate);
+
+    // Get slots by lecturer TP
+    ArrayList<Slot> getSlotsByLecturer(String lecturerTp);
+
+    /**
+     * Get a lecturer's slots dated within a range
+     * @param fromDate First date (yyyy-MM-dd), or null for no lower bound
+     * @param toDate Last date (yyyy-MM-dd), or null for no upper bound
+     */
+    ArrayList<Slot> getSlotsByLecturer(String lecturerTp, String fromDate, String toDate);
+
+    // Update slot status by ID
+    boolean updateStatus(String slotId, String newStatus);
+
+    /**
+     * Change a slot's status only if it has not changed since it was read, checked and
+     * changed in one step
+     * @param expectedVersion Version of the slot as read
+     * @param expectedStatus Status the slot must still have
+     * @return false if the slot does not exist or changed since it was read
+     */
+    boolean compareAndSetStatus(String slotId, long expectedVersion, String expectedStatus, String newStatus);
+
+    /**
+     * Stage a checked status change as part of a unit of work; the unit of work fails
+     * to commit if the slot changed since it was read
+     * @return false if the slot does not exist or already changed since it was read
+     */
+    boolean compareAndSetStatus(UnitOfWork work, String slotId, long expectedVersion, String expectedStatus, String newStatus);
+
+    /**
+     * Stage a slot status change as part of a unit of work
+     * @return false if the slot does not exist
+     */
+    boolean updateStatus(UnitOfWork work, String slotId, String newStatus);
+}
@@ -0,0 +1,117 @@
+package repository;
+
+import file.AppointmentArchive;
+import file.AppointmentFileManager;
+import model.Appointment;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Appointments in the appointments table
+final class SqlAppointmentRepository implements AppointmentRepository {
+    private final SqlDatabase db;
+    private final SqlTable<Appointment> table;
+    private final SqlSequence ids;
+
+    SqlAppointmentRepository(SqlDatabase db) {
+        this.db = db;
+        this.table = new SqlTable<>(db, "appointments",
+                new String[] {"appointment_id", "request_id", "student_tp", "lecturer_tp", "slot_id",
+                              "appointment_date", "start_time", "status", "cancel_reason", "status_key"},
+                new String[] {"student_tp", "lecturer_tp", "status_key"},
+                Appointment::getAppointmentId,
+                (statement, appointment) -> {
+                    statement.setString(1, appointment.getAppointmentId());
+                    statement.setString(2, appointment.getRequestId());
+                    statement.setString(3, appointment.getStudentTp());
+                    statement.setString(4, appointment.getLecturerTp());
+                    statement.setString(5, appointment.getSlotId());
+                    statement.setString(6, appointment.getDate());
+                    statement.setString(7, appointment.getStartTime());
+                    statement.setString(8, appointment.getStatus());
+                    statement.setString(9, appointment.getCancelReason());
+                    statement.setString(10, appointment.getStatus().toUpperCase());
+                },
+                row -> new Appointment(row.getString(1), row.getString(2), row.getString(3), row.getString(4),
+                                       row.getString(5), row.getString(6), row.getString(7), row.getString(8),
+                                       row.getString(9)),
+                () -> {
+                    ArrayList<Appointment> legacy = AppointmentFileManager.loadAll();
+                    legacy.addAll(AppointmentArchive.loadAll());
+                    return legacy;
+                });
+        this.ids = new SqlSequence(db, "appointments", "A",
+                c -> SqlSequence.highestIn(c, "appointments", "appointment_id"));
+    }
+
+    @Override
+    public ArrayList<Appointment> loadAll() {
+        return db.call(table::all, new ArrayList<>());
+    }
+
+    // Rows are read fresh from the table, so the view is a private unmodifiable copy
+    @Override
+    public List<Appointment> viewAll() {
+        return Collections.unmodifiableList(loadAll());
+    }
+
+    @Override
+    public void saveAll(ArrayList<Appointment> appointments) {
+        db.transaction(c -> table.replaceAll(c, appointments));
+    }
+
+    @Override
+    public boolean appendOne(Appointment appointment) {
+        return db.call(c -> table.insert(c, appointment), false);
+    }
+
+    @Override
+    public void appendOne(UnitOfWork work, Appointment appointment) {
+        SqlUnitOfWork.of(work).stage(c -> table.insert(c, appointment));
+    }
+
+    @Override
+    public String nextId() {
+        return ids.next();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return ids.next(count);
+    }
+
+    @Override
+    public Appointment findById(String appointmentId) {
+        return db.call(c -> table.find(c, appointmentId), null);
+    }
+
+    @Override
+    public boolean update(Appointment updatedAppointment) {
+        return db.call(c -> table.update(c, updatedAppointment), false);
+    }
+
+    @Override
+    public void update(UnitOfWork work, Appointment updatedAppointment) {
+        SqlUnitOfWork.of(work).stage(c -> table.update(c, updatedAppointment));
+    }
+
+    @Override
+    public boolean delete(String appointmentId) {
+        return db.call(c -> table.delete(c, appointmentId), false);
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByLecturer(String lecturerTp) {
+        return db.call(c -> table.where(c, "lecturer_tp", lecturerTp), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByStudent(String studentTp) {
+        return db.call(c -> table.where(c, "student_tp", studentTp), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByStatus(String status) {
+        return db.call(c -> table.where(c, "status_key", status.toUpperCase()), new ArrayList<>());
+    }
+}
@@ -0,0 +1,38 @@
+package repository;
+
+import model.Appointment;
+import model.Request;
+import java.util.ArrayList;
+
+/**
+ * The SQL backend keeps all history in its indexed tables, so nothing is ever
+ * archived and every query here is empty. Archives the text backend had written
+ * are brought into the tables by the first import.
+ */
+final class SqlArchiveRepository implements ArchiveRepository {
+
+    @Override
+    public int archiveDue() {
+        return 0;
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsByStudent(String studentTp) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsByLecturer(String lecturerTp) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsBetween(String from, String to) {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public ArrayList<Request> getArchivedRequestsByStudent(String studentTp) {
+        return new ArrayList<>();
+    }
+}
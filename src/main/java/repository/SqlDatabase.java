@@ -0,0 +1,141 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+
+/**
+ * One embedded, in-process SQL database reached through JDBC (H2 or SQLite; the
+ * driver only has to be on the classpath and match the URL).
+ *
+ * A single connection is shared and every use of it is serialised on this object,
+ * which keeps transactions simple for a desktop application. The schema is created
+ * on first use, and each table is filled once from its text file, so switching an
+ * existing installation to the SQL backend keeps its data.
+ */
+final class SqlDatabase {
+
+    // Work done with the connection
+    interface Work<R> {
+        R run(Connection connection) throws SQLException;
+    }
+
+    private static final String META_TABLE = "storage_meta";
+
+    private final String url;
+    private final ArrayList<SqlTable<?>> tables = new ArrayList<>();
+    private Connection connection;
+
+    SqlDatabase(String url) {
+        this.url = url;
+    }
+
+    // Add a table to the schema; call before the first query
+    synchronized void register(SqlTable<?> table) {
+        tables.add(table);
+    }
+
+    /**
+     * Run work with auto-commit on
+     * @param fallback Returned if the database reports an error
+     */
+    synchronized <R> R call(Work<R> work, R fallback) {
+        try {
+            return work.run(connection());
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            return fallback;
+        }
+    }
+
+    /**
+     * Run work as one transaction: committed if it returns true, rolled back if it
+     * returns false or fails
+     */
+    synchronized boolean transaction(Work<Boolean> work) {
+        Connection c;
+        try {
+            c = connection();
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            return false;
+        }
+        try {
+            c.setAutoCommit(false);
+            boolean committed = work.run(c);
+            if (committed) {
+                c.commit();
+            } else {
+                c.rollback();
+            }
+            return committed;
+        } catch (SQLException e) {
+            System.err.println("Database error: " + e.getMessage());
+            try {
+                c.rollback();
+            } catch (SQLException ignored) {
+                // Rolled back when the connection is dropped
+            }
+            return false;
+        } finally {
+            try {
+                c.setAutoCommit(true);
+            } catch (SQLException e) {
+                // Connection is unusable; the next call reconnects
+                connection = null;
+            }
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection != null && !connection.isClosed()) {
+            return connection;
+        }
+        connection = DriverManager.getConnection(url);
+        createSchema(connection);
+        return connection;
+    }
+
+    private void createSchema(Connection c) throws SQLException {
+        try (Statement statement = c.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + META_TABLE
+                    + " (name VARCHAR(64) NOT NULL, PRIMARY KEY (name))");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + SqlSequence.TABLE
+                    + " (name VARCHAR(64) NOT NULL, highest BIGINT NOT NULL, PRIMARY KEY (name))");
+        }
+        for (SqlTable<?> table : tables) {
+            table.create(c);
+            importOnce(c, table);
+        }
+    }
+
+    // Copy a table's text file in the first time the table is created
+    private void importOnce(Connection c, SqlTable<?> table) throws SQLException {
+        String marker = "imported:" + table.name;
+        try (PreparedStatement check = c.prepareStatement(
+                "SELECT name FROM " + META_TABLE + " WHERE name = ?")) {
+            check.setString(1, marker);
+            if (check.executeQuery().next()) {
+                return;
+            }
+        }
+        c.setAutoCommit(false);
+        try {
+            table.importLegacy(c);
+            try (PreparedStatement mark = c.prepareStatement(
+                    "INSERT INTO " + META_TABLE + " (name) VALUES (?)")) {
+                mark.setString(1, marker);
+                mark.executeUpdate();
+            }
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package repository;
+
+import file.RequestArchive;
+import file.RequestFileManager;
+import model.Request;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Requests in the requests table
+final class SqlRequestRepository implements RequestRepository {
+    private final SqlDatabase db;
+    private final SqlTable<Request> table;
+    private final SlotRepository slots;
+
+    // Approved requests are deleted but still named by appointments
+    private final SqlSequence ids;
+
+    SqlRequestRepository(SqlDatabase db, SlotRepository slots) {
+        this.db = db;
+        this.slots = slots;
+        this.table = new SqlTable<>(db, "requests",
+                new String[] {"request_id", "student_tp", "lecturer_tp", "slot_id", "request_date", "start_time",
+                              "end_time", "reason", "status", "cancel_reason", "status_key"},
+                new String[] {"student_tp", "status_key"},
+                Request::getRequestId,
+                (statement, request) -> {
+                    statement.setString(1, request.getRequestId());
+                    statement.setString(2, request.getStudentTp());
+                    statement.setString(3, request.getLecturerTp());
+                    statement.setString(4, request.getSlotId());
+                    statement.setString(5, request.getDate());
+                    statement.setString(6, request.getStartTime());
+                    statement.setString(7, request.getEndTime());
+                    statement.setString(8, request.getReason());
+                    statement.setString(9, request.getStatus());
+                    statement.setString(10, request.getCancelReason());
+                    statement.setString(11, request.getStatus().toUpperCase());
+                },
+                row -> new Request(row.getString(1), row.getString(2), row.getString(3), row.getString(4),
+                                   row.getString(5), row.getString(6), row.getString(7), row.getString(8),
+                                   row.getString(9), row.getString(10) != null ? row.getString(10) : ""),
+                () -> {
+                    ArrayList<Request> legacy = RequestFileManager.loadAll();
+                    legacy.addAll(RequestArchive.loadAll());
+                    return legacy;
+                });
+        this.ids = new SqlSequence(db, "requests", "R", c -> Math.max(
+                SqlSequence.highestIn(c, "requests", "request_id"),
+                SqlSequence.highestIn(c, "appointments", "request_id")));
+    }
+
+    @Override
+    public ArrayList<Request> loadAll() {
+        return db.call(table::all, new ArrayList<>());
+    }
+
+    // Rows are read fresh from the table, so the view is a private unmodifiable copy
+    @Override
+    public List<Request> viewAll() {
+        return Collections.unmodifiableList(loadAll());
+    }
+
+    @Override
+    public void saveAll(ArrayList<Request> requests) {
+        db.transaction(c -> table.replaceAll(c, requests));
+    }
+
+    @Override
+    public boolean appendOne(Request request) {
+        return db.call(c -> table.insert(c, request), false);
+    }
+
+    @Override
+    public void appendOne(UnitOfWork work, Request request) {
+        SqlUnitOfWork.of(work).stage(c -> table.insert(c, request));
+    }
+
+    @Override
+    public String nextId() {
+        return ids.next();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return ids.next(count);
+    }
+
+    @Override
+    public Request findById(String requestId) {
+        return db.call(c -> table.find(c, requestId), null);
+    }
+
+    @Override
+    public boolean update(Request updatedRequest) {
+        return db.call(c -> table.update(c, updatedRequest), false);
+    }
+
+    @Override
+    public boolean delete(String requestId) {
+        return db.call(c -> table.delete(c, requestId), false);
+    }
+
+    @Override
+    public void delete(UnitOfWork work, String requestId) {
+        SqlUnitOfWork.of(work).stage(c -> table.delete(c, requestId));
+    }
+
+    @Override
+    public ArrayList<Request> getRequestsByStudent(String studentTp) {
+        return db.call(c -> table.where(c, "student_tp", studentTp), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Request> getPendingRequests() {
+        return db.call(c -> table.where(c, "status_key", "PENDING"), new ArrayList<>());
+    }
+
+    @Override
+    public boolean cancelRequest(String requestId, String reason) {
+        Request request = findById(requestId);
+        if (request == null) {
+            return false;
+        }
+
+        // Only allow cancellation of pending requests
+        if (!"PENDING".equalsIgnoreCase(request.getStatus())) {
+            return false;
+        }
+
+        // Release the slot back to OPEN status and drop the request together
+        SqlUnitOfWork work = new SqlUnitOfWork(db);
+        if (!slots.updateStatus(work, request.getSlotId(), "OPEN")) {
+            return false;
+        }
+        delete(work, requestId);
+        return work.commit();
+    }
+}
@@ -0,0 +1,100 @@
+package repository;
+
+import file.IdSequence;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+/**
+ * Persistent ID sequence for the SQL backend, the counterpart of file.IdSequence:
+ * blocks of numbers are reserved from the id_sequences table in one transaction
+ * and handed out from memory.
+ */
+final class SqlSequence {
+    static final String TABLE = "id_sequences";
+    private static final int BLOCK_SIZE = Math.max(1, Integer.getInteger("oob.ids.blockSize", 32));
+
+    // Highest number already in use, read with the database's connection
+    interface Seed {
+        long highest(Connection connection) throws SQLException;
+    }
+
+    private final SqlDatabase db;
+    private final String name;
+    private final String prefix;
+    private final Seed seed;
+    private long next;
+    private long limit;
+
+    SqlSequence(SqlDatabase db, String name, String prefix, Seed seed) {
+        this.db = db;
+        this.name = name;
+        this.prefix = prefix;
+        this.seed = seed;
+    }
+
+    synchronized String next() {
+        return prefix + take(1);
+    }
+
+    synchronized ArrayList<String> next(int count) {
+        long first = take(count);
+        ArrayList<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(prefix + (first + i));
+        }
+        return ids;
+    }
+
+    private long take(int count) {
+        if (limit - next < count) {
+            int block = Math.max(count, BLOCK_SIZE);
+            long[] first = new long[1];
+            if (!db.transaction(c -> reserve(c, block, first))) {
+                throw new IllegalStateException("Could not reserve " + name + " IDs");
+            }
+            next = first[0];
+            limit = next + block;
+        }
+        long first = next;
+        next += count;
+        return first;
+    }
+
+    private boolean reserve(Connection c, int count, long[] first) throws SQLException {
+        Long stored = null;
+        try (PreparedStatement select = c.prepareStatement("SELECT highest FROM " + TABLE + " WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet row = select.executeQuery()) {
+                if (row.next()) {
+                    stored = row.getLong(1);
+                }
+            }
+        }
+        long from = stored != null ? stored : seed.highest(c);
+        String sql = stored != null
+                ? "UPDATE " + TABLE + " SET highest = ? WHERE name = ?"
+                : "INSERT INTO " + TABLE + " (highest, name) VALUES (?, ?)";
+        try (PreparedStatement write = c.prepareStatement(sql)) {
+            write.setLong(1, from + count);
+            write.setString(2, name);
+            write.executeUpdate();
+        }
+        first[0] = from + 1;
+        return true;
+    }
+
+    // Highest trailing number in a column of a table
+    static long highestIn(Connection c, String table, String column) throws SQLException {
+        long highest = 0;
+        try (PreparedStatement select = c.prepareStatement("SELECT " + column + " FROM " + table);
+             ResultSet row = select.executeQuery()) {
+            while (row.next()) {
+                highest = Math.max(highest, IdSequence.numberOf(row.getString(1)));
+            }
+        }
+        return highest;
+    }
+}
@@ -0,0 +1,155 @@
+package repository;
+
+import file.SlotFileManager;
+import model.Slot;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Slots in the slots table
+final class SqlSlotRepository implements SlotRepository {
+    private final SqlDatabase db;
+    private final SqlTable<Slot> table;
+
+    // Booked slots are deleted but still named by requests and appointments
+    private final SqlSequence ids;
+
+    SqlSlotRepository(SqlDatabase db) {
+        this.db = db;
+        this.table = new SqlTable<>(db, "slots",
+                new String[] {"slot_id", "lecturer_tp", "slot_date", "start_time", "end_time", "status", "status_key"},
+                new String[] {"lecturer_tp", "status_key", "slot_date"},
+                Slot::getSlotId,
+                (statement, slot) -> {
+                    statement.setString(1, slot.getSlotId());
+                    statement.setString(2, slot.getLecturerTp());
+                    statement.setString(3, slot.getDate());
+                    statement.setString(4, slot.getStartTime());
+                    statement.setString(5, slot.getEndTime());
+                    statement.setString(6, slot.getStatus());
+                    statement.setString(7, slot.getStatus().toUpperCase());
+                },
+                row -> new Slot(row.getString(1), row.getString(2), row.getString(3),
+                                row.getString(4), row.getString(5), row.getString(6)),
+                SlotFileManager::loadAll);
+        this.ids = new SqlSequence(db, "slots", "S", c -> Math.max(
+                SqlSequence.highestIn(c, "slots", "slot_id"),
+                Math.max(SqlSequence.highestIn(c, "requests", "slot_id"),
+                         SqlSequence.highestIn(c, "appointments", "slot_id"))));
+    }
+
+    @Override
+    public ArrayList<Slot> loadAll() {
+        return db.call(table::all, new ArrayList<>());
+    }
+
+    // Rows are read fresh from the table, so the view is a private unmodifiable copy
+    @Override
+    public List<Slot> viewAll() {
+        return Collections.unmodifiableList(loadAll());
+    }
+
+    @Override
+    public void saveAll(ArrayList<Slot> slots) {
+        db.transaction(c -> table.replaceAll(c, slots));
+    }
+
+    @Override
+    public boolean appendOne(Slot slot) {
+        return db.call(c -> table.insert(c, slot), false);
+    }
+
+    @Override
+    public String nextId() {
+        return ids.next();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return ids.next(count);
+    }
+
+    @Override
+    public Slot findById(String slotId) {
+        return db.call(c -> table.find(c, slotId), null);
+    }
+
+    @Override
+    public boolean update(Slot updatedSlot) {
+        return db.call(c -> table.update(c, updatedSlot), false);
+    }
+
+    @Override
+    public boolean delete(String slotId) {
+        return db.call(c -> table.delete(c, slotId), false);
+    }
+
+    @Override
+    public void delete(UnitOfWork work, String slotId) {
+        SqlUnitOfWork.of(work).stage(c -> table.delete(c, slotId));
+    }
+
+    @Override
+    public ArrayList<Slot> getAvailableSlots() {
+        return db.call(c -> table.where(c, "status_key", "OPEN"), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Slot> getAvailableSlots(String fromDate, String toDate) {
+        return db.call(c -> table.whereInRange(c, "status_key", "OPEN", "slot_date", fromDate, toDate), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Slot> getSlotsByLecturer(String lecturerTp) {
+        return db.call(c -> table.where(c, "lecturer_tp", lecturerTp), new ArrayList<>());
+    }
+
+    @Override
+    public ArrayList<Slot> getSlotsByLecturer(String lecturerTp, String fromDate, String toDate) {
+        return db.call(c -> table.whereInRange(c, "lecturer_tp", lecturerTp, "slot_date", fromDate, toDate), new ArrayList<>());
+    }
+
+    @Override
+    public boolean updateStatus(String slotId, String newStatus) {
+        Slot slot = findById(slotId);
+        if (slot == null) {
+            return false;
+        }
+        slot.setStatus(newStatus);
+        return update(slot);
+    }
+
+    // Rows are read fresh from the table, so the status condition of the UPDATE is the check
+    @Override
+    public boolean compareAndSetStatus(String slotId, long expectedVersion, String expectedStatus, String newStatus) {
+        Slot slot = findById(slotId);
+        if (slot == null) {
+            return false;
+        }
+        slot.setStatus(newStatus);
+        return db.call(c -> table.updateIf(c, slot, "status_key", expectedStatus.toUpperCase()), false);
+    }
+
+    // Staged the same way: no row updated by the checked UPDATE rolls the unit of work back
+    @Override
+    public boolean compareAndSetStatus(UnitOfWork work, String slotId, long expectedVersion, String expectedStatus, String newStatus) {
+        Slot slot = findById(slotId);
+        if (slot == null || !expectedStatus.equalsIgnoreCase(slot.getStatus())) {
+            return false;
+        }
+        slot.setStatus(newStatus);
+        SqlUnitOfWork.of(work).stage(c -> table.updateIf(c, slot, "status_key", expectedStatus.toUpperCase()));
+        return true;
+    }
+
+    @Override
+    public boolean updateStatus(UnitOfWork work, String slotId, String newStatus) {
+        Slot slot = findById(slotId);
+        if (slot == null) {
+            return false;
+        }
+        slot.setStatus(newStatus);
+        SqlUnitOfWork.of(work).stage(c -> table.update(c, slot));
+        return true;
+    }
+}
@@ -0,0 +1,219 @@
+package repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Mapping of one entity to one table. Every column is text, the first column is the
+ * primary key, and a row_order column keeps rows in insertion order so loadAll
+ * returns them in the same order as the text backend. Lookup columns get an index;
+ * case-insensitive lookups use a normalised copy of the value (e.g. status_key).
+ */
+final class SqlTable<T> {
+
+    // Sets parameters 1..columns.length from a record, in column order
+    interface Binder<T> {
+        void bind(PreparedStatement statement, T record) throws SQLException;
+    }
+
+    // Builds a record from the current row
+    interface RowReader<T> {
+        T read(ResultSet row) throws SQLException;
+    }
+
+    private static final String ORDER = "row_order";
+
+    final String name;
+    private final String[] columns;
+    private final String[] indexed;
+    private final Function<T, String> idOf;
+    private final Binder<T> binder;
+    private final RowReader<T> reader;
+    private final Supplier<? extends List<T>> legacy;
+    private final String columnList;
+
+    /**
+     * @param name Table name
+     * @param columns Column names, primary key first
+     * @param indexed Columns used for lookups
+     * @param legacy Records to import the first time the table is created
+     */
+    SqlTable(SqlDatabase db, String name, String[] columns, String[] indexed, Function<T, String> idOf,
+             Binder<T> binder, RowReader<T> reader, Supplier<? extends List<T>> legacy) {
+        this.name = name;
+        this.columns = columns;
+        this.indexed = indexed;
+        this.idOf = idOf;
+        this.binder = binder;
+        this.reader = reader;
+        this.legacy = legacy;
+        this.columnList = String.join(", ", columns);
+        db.register(this);
+    }
+
+    void create(Connection c) throws SQLException {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(name)
+                .append(" (").append(ORDER).append(" BIGINT NOT NULL");
+        for (String column : columns) {
+            sql.append(", ").append(column).append(" VARCHAR(1000)");
+        }
+        sql.append(", PRIMARY KEY (").append(columns[0]).append("))");
+        try (Statement statement = c.createStatement()) {
+            statement.executeUpdate(sql.toString());
+            statement.executeUpdate(createIndex(ORDER));
+            for (String column : indexed) {
+                statement.executeUpdate(createIndex(column));
+            }
+        }
+    }
+
+    private String createIndex(String column) {
+        return "CREATE INDEX IF NOT EXISTS " + name + "_" + column + " ON " + name + " (" + column + ")";
+    }
+
+    void importLegacy(Connection c) throws SQLException {
+        for (T record : distinct(legacy.get())) {
+            insert(c, record);
+        }
+    }
+
+    /**
+     * One record per primary key, so the key constraint holds: the text files may
+     * name an ID twice (IDs were once reused), and as when the text store replays
+     * them the last record wins, kept where the ID first appeared
+     */
+    private List<T> distinct(List<T> records) {
+        LinkedHashMap<String, T> byId = new LinkedHashMap<>();
+        for (T record : records) {
+            byId.put(idOf.apply(record), record);
+        }
+        return new ArrayList<>(byId.values());
+    }
+
+    // All rows in insertion order
+    ArrayList<T> all(Connection c) throws SQLException {
+        return query(c, "SELECT " + columnList + " FROM " + name + " ORDER BY " + ORDER);
+    }
+
+    // Row with this primary key, or null
+    T find(Connection c, String id) throws SQLException {
+        ArrayList<T> rows = query(c, "SELECT " + columnList + " FROM " + name
+                + " WHERE " + columns[0] + " = ?", id);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    // Rows whose column equals a value, in insertion order
+    ArrayList<T> where(Connection c, String column, String value) throws SQLException {
+        return query(c, "SELECT " + columnList + " FROM " + name
+                + " WHERE " + column + " = ? ORDER BY " + ORDER, value);
+    }
+
+    /**
+     * Rows whose column equals a value and whose range column lies between two
+     * bounds (compared as text, which orders yyyy-MM-dd dates), in insertion order
+     * @param from Lowest value, or null for no lower bound
+     * @param to Highest value, or null for no upper bound
+     */
+    ArrayList<T> whereInRange(Connection c, String column, String value, String rangeColumn,
+                              String from, String to) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ").append(columnList).append(" FROM ").append(name)
+                .append(" WHERE ").append(column).append(" = ?");
+        ArrayList<String> parameters = new ArrayList<>();
+        parameters.add(value);
+        if (from != null) {
+            sql.append(" AND ").append(rangeColumn).append(" >= ?");
+            parameters.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND ").append(rangeColumn).append(" <= ?");
+            parameters.add(to);
+        }
+        sql.append(" ORDER BY ").append(ORDER);
+        return query(c, sql.toString(), parameters.toArray(new String[0]));
+    }
+
+    boolean insert(Connection c, T record) throws SQLException {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(name)
+                .append(" (").append(ORDER).append(", ").append(columnList)
+                .append(") SELECT COALESCE(MAX(").append(ORDER).append("), 0) + 1");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(" FROM ").append(name);
+        try (PreparedStatement statement = c.prepareStatement(sql.toString())) {
+            binder.bind(statement, record);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    // Replace the row stored under the record's primary key
+    boolean update(Connection c, T record) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(name).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]).append(" = ?");
+        }
+        sql.append(" WHERE ").append(columns[0]).append(" = ?");
+        try (PreparedStatement statement = c.prepareStatement(sql.toString())) {
+            binder.bind(statement, record);
+            statement.setString(columns.length + 1, idOf.apply(record));
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    // Replace the row stored under the record's primary key only while a column still has a value
+    boolean updateIf(Connection c, T record, String column, String value) throws SQLException {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(name).append(" SET ");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ", ").append(columns[i]).append(" = ?");
+        }
+        sql.append(" WHERE ").append(columns[0]).append(" = ? AND ").append(column).append(" = ?");
+        try (PreparedStatement statement = c.prepareStatement(sql.toString())) {
+            binder.bind(statement, record);
+            statement.setString(columns.length + 1, idOf.apply(record));
+            statement.setString(columns.length + 2, value);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    boolean delete(Connection c, String id) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement(
+                "DELETE FROM " + name + " WHERE " + columns[0] + " = ?")) {
+            statement.setString(1, id);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    // Replace every row; call inside a transaction
+    boolean replaceAll(Connection c, List<T> records) throws SQLException {
+        try (Statement statement = c.createStatement()) {
+            statement.executeUpdate("DELETE FROM " + name);
+        }
+        for (T record : distinct(records)) {
+            insert(c, record);
+        }
+        return true;
+    }
+
+    private ArrayList<T> query(Connection c, String sql, String... parameters) throws SQLException {
+        try (PreparedStatement statement = c.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            ArrayList<T> rows = new ArrayList<>();
+            try (ResultSet row = statement.executeQuery()) {
+                while (row.next()) {
+                    rows.add(reader.read(row));
+                }
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package repository;
+
+import java.util.ArrayList;
+
+// Unit of work for the SQL backend: staged statements run in one database transaction
+final class SqlUnitOfWork implements UnitOfWork {
+    private final SqlDatabase db;
+    private final ArrayList<SqlDatabase.Work<Boolean>> steps = new ArrayList<>();
+
+    SqlUnitOfWork(SqlDatabase db) {
+        this.db = db;
+    }
+
+    // Stage a statement; returning false (e.g. nothing to update) rolls everything back
+    void stage(SqlDatabase.Work<Boolean> step) {
+        steps.add(step);
+    }
+
+    @Override
+    public boolean commit() {
+        return db.transaction(c -> {
+            for (SqlDatabase.Work<Boolean> step : steps) {
+                if (!step.run(c)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    // The SQL unit of work behind a unit of work from this backend
+    static SqlUnitOfWork of(UnitOfWork work) {
+        if (!(work instanceof SqlUnitOfWork)) {
+            throw new IllegalArgumentException("Unit of work belongs to another storage backend");
+        }
+        return (SqlUnitOfWork) work;
+    }
+}
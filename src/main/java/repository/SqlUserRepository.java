@@ -0,0 +1,124 @@
+package repository;
+
+import file.UserFileManager;
+import model.User;
+import util.FreeIdAllocator;
+import util.UserIdGenerator;
+import java.util.ArrayList;
+
+// Users in the users table
+final class SqlUserRepository implements UserRepository {
+    private final SqlDatabase db;
+    private final SqlTable<User> table;
+
+    // Numbers taken by each role's user IDs; built on first use, then kept current by every change
+    private FreeIdAllocator usedNumbers;
+
+    SqlUserRepository(SqlDatabase db) {
+        this.db = db;
+        this.table = new SqlTable<>(db, "users",
+                new String[] {"tp", "role", "name", "email", "password", "profile_picture",
+                              "description", "phone_number", "address", "email_key"},
+                new String[] {"email_key"},
+                User::getTp,
+                (statement, user) -> {
+                    statement.setString(1, user.getTp());
+                    statement.setString(2, user.getRole());
+                    statement.setString(3, user.getName());
+                    statement.setString(4, user.getEmail());
+                    statement.setString(5, user.getPassword());
+                    statement.setString(6, user.getProfilePicture());
+                    statement.setString(7, user.getDescription());
+                    statement.setString(8, user.getPhoneNumber());
+                    statement.setString(9, user.getAddress());
+                    statement.setString(10, user.getEmail().toLowerCase());
+                },
+                row -> {
+                    User user = UserRepository.newUser(row.getString(1), row.getString(2), row.getString(3),
+                                                       row.getString(4), row.getString(5));
+                    user.setProfilePicture(row.getString(6));
+                    user.setDescription(row.getString(7));
+                    user.setPhoneNumber(row.getString(8));
+                    user.setAddress(row.getString(9));
+                    return user;
+                },
+                UserFileManager::loadAll);
+    }
+
+    @Override
+    public ArrayList<User> loadAll() {
+        return db.call(table::all, new ArrayList<>());
+    }
+
+    @Override
+    public void saveAll(ArrayList<User> users) {
+        db.transaction(c -> table.replaceAll(c, users));
+        synchronized (this) {
+            usedNumbers = null;
+        }
+    }
+
+    @Override
+    public boolean appendOne(User user) {
+        if (!db.call(c -> table.insert(c, user), false)) {
+            return false;
+        }
+        synchronized (this) {
+            if (usedNumbers != null) {
+                usedNumbers.add(user.getRole(), user.getTp());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public User findById(String tp) {
+        return db.call(c -> table.find(c, tp), null);
+    }
+
+    @Override
+    public boolean update(User updatedUser) {
+        return db.call(c -> table.update(c, updatedUser), false);
+    }
+
+    @Override
+    public boolean delete(String tp) {
+        User user = findById(tp);
+        boolean deleted = db.call(c -> table.delete(c, tp), false);
+        if (deleted && user != null) {
+            synchronized (this) {
+                if (usedNumbers != null) {
+                    usedNumbers.remove(user.getRole(), tp);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public synchronized String generateUserId(String role) {
+        if (usedNumbers == null) {
+            usedNumbers = new FreeIdAllocator();
+            for (User user : loadAll()) {
+                usedNumbers.add(user.getRole(), user.getTp());
+            }
+        }
+        return UserIdGenerator.generateUserId(role, usedNumbers);
+    }
+
+    @Override
+    public User validateLoginByEmail(String email, String password) {
+        for (User user : db.call(c -> table.where(c, "email_key", email.toLowerCase()), new ArrayList<User>())) {
+            if (user.getPassword().equals(password)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        ArrayList<User> users = db.call(c -> table.where(c, "email_key", email.toLowerCase()), new ArrayList<>());
+        return users.isEmpty() ? null : users.get(0);
+    }
+}
@@ -0,0 +1,80 @@
+package repository;
+
+import file.AppointmentFileManager;
+import model.Appointment;
+import java.util.ArrayList;
+import java.util.List;
+
+// Appointments in src/main/resources/appointments.txt
+final class TextAppointmentRepository implements AppointmentRepository {
+
+    @Override
+    public ArrayList<Appointment> loadAll() {
+        return AppointmentFileManager.loadAll();
+    }
+
+    @Override
+    public List<Appointment> viewAll() {
+        return AppointmentFileManager.viewAll();
+    }
+
+    @Override
+    public void saveAll(ArrayList<Appointment> appointments) {
+        AppointmentFileManager.saveAll(appointments);
+    }
+
+    @Override
+    public boolean appendOne(Appointment appointment) {
+        return AppointmentFileManager.appendOne(appointment);
+    }
+
+    @Override
+    public void appendOne(UnitOfWork work, Appointment appointment) {
+        AppointmentFileManager.appendOne(TextUnitOfWork.of(work), appointment);
+    }
+
+    @Override
+    public String nextId() {
+        return AppointmentFileManager.nextId();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return AppointmentFileManager.nextIds(count);
+    }
+
+    @Override
+    public Appointment findById(String appointmentId) {
+        return AppointmentFileManager.findById(appointmentId);
+    }
+
+    @Override
+    public boolean update(Appointment updatedAppointment) {
+        return AppointmentFileManager.update(updatedAppointment);
+    }
+
+    @Override
+    public void update(UnitOfWork work, Appointment updatedAppointment) {
+        AppointmentFileManager.update(TextUnitOfWork.of(work), updatedAppointment);
+    }
+
+    @Override
+    public boolean delete(String appointmentId) {
+        return AppointmentFileManager.delete(appointmentId);
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByLecturer(String lecturerTp) {
+        return AppointmentFileManager.getAppointmentsByLecturer(lecturerTp);
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByStudent(String studentTp) {
+        return AppointmentFileManager.getAppointmentsByStudent(studentTp);
+    }
+
+    @Override
+    public ArrayList<Appointment> getAppointmentsByStatus(String status) {
+        return AppointmentFileManager.getAppointmentsByStatus(status);
+    }
+}
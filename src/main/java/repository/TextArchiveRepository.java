@@ -0,0 +1,36 @@
+package repository;
+
+import file.AppointmentArchive;
+import file.RequestArchive;
+import model.Appointment;
+import model.Request;
+import java.util.ArrayList;
+
+// Compressed month archives in src/main/resources/archive
+final class TextArchiveRepository implements ArchiveRepository {
+
+    @Override
+    public int archiveDue() {
+        return AppointmentArchive.archiveDue() + RequestArchive.archiveDue();
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsByStudent(String studentTp) {
+        return AppointmentArchive.getAppointmentsByStudent(studentTp);
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsByLecturer(String lecturerTp) {
+        return AppointmentArchive.getAppointmentsByLecturer(lecturerTp);
+    }
+
+    @Override
+    public ArrayList<Appointment> getArchivedAppointmentsBetween(String from, String to) {
+        return AppointmentArchive.getAppointmentsBetween(from, to);
+    }
+
+    @Override
+    public ArrayList<Request> getArchivedRequestsByStudent(String studentTp) {
+        return RequestArchive.getRequestsByStudent(studentTp);
+    }
+}
@@ -0,0 +1,80 @@
+package repository;
+
+import file.RequestFileManager;
+import model.Request;
+import java.util.ArrayList;
+import java.util.List;
+
+// Requests in src/main/resources/requests.txt
+final class TextRequestRepository implements RequestRepository {
+
+    @Override
+    public ArrayList<Request> loadAll() {
+        return RequestFileManager.loadAll();
+    }
+
+    @Override
+    public List<Request> viewAll() {
+        return RequestFileManager.viewAll();
+    }
+
+    @Override
+    public void saveAll(ArrayList<Request> requests) {
+        RequestFileManager.saveAll(requests);
+    }
+
+    @Override
+    public boolean appendOne(Request request) {
+        return RequestFileManager.appendOne(request);
+    }
+
+    @Override
+    public void appendOne(UnitOfWork work, Request request) {
+        RequestFileManager.appendOne(TextUnitOfWork.of(work), request);
+    }
+
+    @Override
+    public String nextId() {
+        return RequestFileManager.nextId();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return RequestFileManager.nextIds(count);
+    }
+
+    @Override
+    public Request findById(String requestId) {
+        return RequestFileManager.findById(requestId);
+    }
+
+    @Override
+    public boolean update(Request updatedRequest) {
+        return RequestFileManager.update(updatedRequest);
+    }
+
+    @Override
+    public boolean delete(String requestId) {
+        return RequestFileManager.delete(requestId);
+    }
+
+    @Override
+    public void delete(UnitOfWork work, String requestId) {
+        RequestFileManager.delete(TextUnitOfWork.of(work), requestId);
+    }
+
+    @Override
+    public ArrayList<Request> getRequestsByStudent(String studentTp) {
+        return RequestFileManager.getRequestsByStudent(studentTp);
+    }
+
+    @Override
+    public ArrayList<Request> getPendingRequests() {
+        return RequestFileManager.getPendingRequests();
+    }
+
+    @Override
+    public boolean cancelRequest(String requestId, String reason) {
+        return RequestFileManager.cancelRequest(requestId, reason);
+    }
+}
@@ -0,0 +1,100 @@
+package repository;
+
+import file.SlotFileManager;
+import model.Slot;
+import java.util.ArrayList;
+import java.util.List;
+
+// Slots in src/main/resources/slots.txt
+final class TextSlotRepository implements SlotRepository {
+
+    @Override
+    public ArrayList<Slot> loadAll() {
+        return SlotFileManager.loadAll();
+    }
+
+    @Override
+    public List<Slot> viewAll() {
+        return SlotFileManager.viewAll();
+    }
+
+    @Override
+    public void saveAll(ArrayList<Slot> slots) {
+        SlotFileManager.saveAll(slots);
+    }
+
+    @Override
+    public boolean appendOne(Slot slot) {
+        return SlotFileManager.appendOne(slot);
+    }
+
+    @Override
+    public String nextId() {
+        return SlotFileManager.nextId();
+    }
+
+    @Override
+    public ArrayList<String> nextIds(int count) {
+        return SlotFileManager.nextIds(count);
+    }
+
+    @Override
+    public Slot findById(String slotId) {
+        return SlotFileManager.findById(slotId);
+    }
+
+    @Override
+    public boolean update(Slot updatedSlot) {
+        return SlotFileManager.update(updatedSlot);
+    }
+
+    @Override
+    public boolean delete(String slotId) {
+        return SlotFileManager.delete(slotId);
+    }
+
+    @Override
+    public void delete(UnitOfWork work, String slotId) {
+        SlotFileManager.delete(TextUnitOfWork.of(work), slotId);
+    }
+
+    @Override
+    public ArrayList<Slot> getAvailableSlots() {
+        return SlotFileManager.getAvailableSlots();
+    }
+
+    @Override
+    public ArrayList<Slot> getAvailableSlots(String fromDate, String toDate) {
+        return SlotFileManager.getAvailableSlots(fromDate, toDate);
+    }
+
+    @Override
+    public ArrayList<Slot> getSlotsByLecturer(String lecturerTp) {
+        return SlotFileManager.getSlotsByLecturer(lecturerTp);
+    }
+
+    @Override
+    public ArrayList<Slot> getSlotsByLecturer(String lecturerTp, String fromDate, String toDate) {
+        return SlotFileManager.getSlotsByLecturer(lecturerTp, fromDate, toDate);
+    }
+
+    @Override
+    public boolean updateStatus(String slotId, String newStatus) {
+        return SlotFileManager.updateStatus(slotId, newStatus);
+    }
+
+    @Override
+    public boolean compareAndSetStatus(String slotId, long expectedVersion, String expectedStatus, String newStatus) {
+        return SlotFileManager.compareAndSetStatus(slotId, expectedVersion, expectedStatus, newStatus);
+    }
+
+    @Override
+    public boolean compareAndSetStatus(UnitOfWork work, String slotId, long expectedVersion, String expectedStatus, String newStatus) {
+        return SlotFileManager.compareAndSetStatus(TextUnitOfWork.of(work), slotId, expectedVersion, expectedStatus, newStatus);
+    }
+
+    @Override
+    public boolean updateStatus(UnitOfWork work, String slotId, String newStatus) {
+        return SlotFileManager.updateStatus(TextUnitOfWork.of(work), slotId, newStatus);
+    }
+}
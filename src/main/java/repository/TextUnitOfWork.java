@@ -0,0 +1,21 @@
+package repository;
+
+import file.Transaction;
+
+// Unit of work for the text backend: a file.Transaction over the data files
+final class TextUnitOfWork implements UnitOfWork {
+    final Transaction transaction = new Transaction();
+
+    @Override
+    public boolean commit() {
+        return transaction.commit();
+    }
+
+    // The transaction behind a unit of work from this backend
+    static Transaction of(UnitOfWork work) {
+        if (!(work instanceof TextUnitOfWork)) {
+            throw new IllegalArgumentException("Unit of work belongs to another storage backend");
+        }
+        return ((TextUnitOfWork) work).transaction;
+    }
+}
@@ -0,0 +1,59 @@
+package repository;
+
+import file.UserFileManager;
+import model.User;
+import java.util.ArrayList;
+
+// Users in src/main/resources/users.txt
+final class TextUserRepository implements UserRepository {
+
+    @Override
+    public ArrayList<User> loadAll() {
+        return UserFileManager.loadAll();
+    }
+
+    @Override
+    public void saveAll(ArrayList<User> users) {
+        UserFileManager.saveAll(users);
+    }
+
+    @Override
+    public boolean appendOne(User user) {
+        return UserFileManager.appendOne(user);
+    }
+
+    @Override
+    public User findById(String tp) {
+        return UserFileManager.findById(tp);
+    }
+
+    @Override
+    public boolean update(User updatedUser) {
+        return UserFileManager.update(updatedUser);
+    }
+
+    @Override
+    public boolean delete(String tp) {
+        return UserFileManager.delete(tp);
+    }
+
+    @Override
+    public String generateUserId(String role) {
+        return UserFileManager.generateNewUserId(role, "");
+    }
+
+    @Override
+    public User validateLogin(String tp, String password) {
+        return UserFileManager.validateLogin(tp, password);
+    }
+
+    @Override
+    public User validateLoginByEmail(String email, String password) {
+        return UserFileManager.validateLoginByEmail(email, password);
+    }
+
+    @Override
+    public User findByEmail(String email) {
+        return UserFileManager.findByEmail(email);
+    }
+}
@@ -0,0 +1,18 @@
+package repository;
+
+/**
+ * Changes to several repositories that are applied all-or-nothing, e.g. approving
+ * a request (add appointment, delete slot, delete request).
+ *
+ * Get one from Repositories.begin(), pass it to the repository overloads that take
+ * a UnitOfWork, then call commit(). Nothing is visible before commit().
+ */
+public interface UnitOfWork {
+
+    /**
+     * Apply every staged change, or none of them
+     * @return true if all changes were applied and stored, false otherwise; by the time
+     *         false is returned nothing of it is left, in memory or in storage
+     */
+    boolean commit();
+}
@@ -0,0 +1,78 @@
+package repository;
+
+import model.*;
+import java.util.ArrayList;
+
+/**
+ * Storage for users, keyed by TP number / user ID
+ */
+public interface UserRepository {
+
+    // Load all users
+    ArrayList<User> loadAll();
+
+    // Replace all users
+    void saveAll(ArrayList<User> users);
+
+    // Add one user; false if it could not be stored
+    boolean appendOne(User user);
+
+    // Find user by TP, or null
+    User findById(String tp);
+
+    // Update the user stored under the user's TP
+    boolean update(User updatedUser);
+
+    // Delete user by TP
+    boolean delete(String tp);
+
+    /**
+     * Validates user login using email and password
+     * @param email User's email address
+     * @param password Plain text password
+     * @return User object if credentials are valid, null otherwise
+     */
+    User validateLoginByEmail(String email, String password);
+
+    /**
+     * Find user by email address
+     * @param email User's email
+     * @return User object if found, null otherwise
+     */
+    User findByEmail(String email);
+
+    /**
+     * Suggest the next ID for a new user of a role, filling gaps left by deleted users
+     * @param role User role (STUDENT, LECTURER, STAFF, ADMIN)
+     * @return ID such as TP004 or LEC-002
+     */
+    String generateUserId(String role);
+
+    // Validate login by TP
+    default User validateLogin(String tp, String password) {
+        User user = findById(tp);
+        if (user != null && user.getPassword().equals(password)) {
+            return user;
+        }
+        return null;
+    }
+
+    /**
+     * Build the User subclass matching a role
+     * @return Student, Lecturer, Staff or Admin, or a plain User for an unknown role
+     */
+    static User newUser(String tp, String role, String name, String email, String password) {
+        switch (role.toUpperCase()) {
+            case "STUDENT":
+                return new Student(tp, name, email, password);
+            case "LECTURER":
+                return new Lecturer(tp, name, email, password);
+            case "STAFF":
+                return new Staff(tp, name, email, password);
+            case "ADMIN":
+                return new Admin(tp, name, email, password);
+            default:
+                return new User(tp, role, name, email, password);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import model.Student;
 import model.Lecturer;
 import model.Staff;
 import model.Admin;
-import file.UserFileManager;
+import repository.Repositories;
 import java.util.ArrayList;
 
 public class AdminService {
@@ -13,7 +13,7 @@ public class AdminService {
     // Create a new user
     public boolean createUser(String tp, String role, String name, String email, String password) {
         // Check if user already exists
-        User existingUser = UserFileManager.findById(tp);
+        User existingUser = Repositories.users().findById(tp);
         if (existingUser != null) {
             return false;
         }
@@ -37,29 +37,34 @@ public class AdminService {
                 return false;
         }
 
-        UserFileManager.appendOne(newUser);
-        return true;
+        return Repositories.users().appendOne(newUser);
+    }
+
+    // Suggested ID for a new user of the given role
+    public String nextUserId(String role) {
+        return Repositories.users().generateUserId(role);
     }
 
     // View all users
     public ArrayList<User> viewAllUsers() {
-        return UserFileManager.loadAll();
+        return Repositories.users().loadAll();
     }
 
     // Search user by TP
     public User searchUser(String tp) {
-        return UserFileManager.findById(tp);
+        return Repositories.users().findById(tp);
     }
 
     // Update user
     public boolean updateUser(String tp, String newName, String newEmail, String newPassword) {
-        User user = UserFileManager.findById(tp);
+        User stored = Repositories.users().findById(tp);
         
-        if (user == null) {
+        if (stored == null) {
             System.out.println("User not found.");
             return false;
         }
 
+        User user = stored.copy();
         if (newName != null && !newName.isEmpty()) {
             user.setName(newName);
         }
@@ -70,14 +75,14 @@ public class AdminService {
             user.setPassword(newPassword);
         }
 
-        UserFileManager.update(user);
+        Repositories.users().update(user);
         System.out.println("User updated successfully.");
         return true;
     }
 
     // Update user TP (only admin can do this)
     public boolean updateUserTp(String oldTp, String newTp) {
-        User user = UserFileManager.findById(oldTp);
+        User user = Repositories.users().findById(oldTp);
         
         if (user == null) {
             System.out.println("User not found.");
@@ -85,15 +90,20 @@ public class AdminService {
         }
 
         // Check if new TP already exists
-        User existingUser = UserFileManager.findById(newTp);
+        User existingUser = Repositories.users().findById(newTp);
         if (existingUser != null) {
             System.out.println("New TP already exists.");
             return false;
         }
 
+        user = user.copy();
         user.setTp(newTp);
-        UserFileManager.delete(oldTp);
-        UserFileManager.appendOne(user);
+        // Stored under the new TP before the old one goes, so a failed write loses nothing
+        if (!Repositories.users().appendOne(user)) {
+            System.out.println("User TP could not be saved.");
+            return false;
+        }
+        Repositories.users().delete(oldTp);
         
         System.out.println("User TP updated successfully.");
         return true;
@@ -101,7 +111,7 @@ public class AdminService {
 
     // Delete user
     public boolean deleteUser(String tp) {
-        boolean deleted = UserFileManager.delete(tp);
+        boolean deleted = Repositories.users().delete(tp);
         
         if (deleted) {
             System.out.println("User deleted successfully.");
@@ -0,0 +1,25 @@
+package service;
+
+/**
+ * Outcome of a student booking a consultation slot
+ */
+public enum BookingResult {
+    // Request created and the slot put ON_HOLD
+    BOOKED,
+
+    // No slot with that ID
+    SLOT_NOT_FOUND,
+
+    // Slot was not OPEN when read, or is in the past
+    SLOT_UNAVAILABLE,
+
+    // Slot was OPEN when read but someone else booked or changed it first
+    SLOT_TAKEN,
+
+    // Slot was still free but the booking could not be written; nothing was changed
+    NOT_SAVED;
+
+    public boolean isBooked() {
+        return this == BOOKED;
+    }
+}
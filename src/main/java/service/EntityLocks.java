@@ -0,0 +1,116 @@
+package service;
+
+import model.Appointment;
+import model.Request;
+import repository.Repositories;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-process locks over the entities the services change, so a check and
+ * the change that depends on it (a request is still PENDING, then it is approved)
+ * cannot interleave with another thread working on the same slot, request or
+ * appointment, while work on unrelated entities runs in parallel.
+ *
+ * A key ("slot:S12") maps to one of a fixed number of stripes, -Doob.entityLocks.stripes
+ * (default 64, rounded up to a power of two); two keys may share a stripe, which only
+ * costs parallelism. Ordering rule: an operation touching several entities names all
+ * their keys in one withLock() call, and the stripes are taken once each in ascending
+ * stripe order, so two operations can never wait for each other in a cycle. Do not
+ * call withLock() again from inside its action.
+ *
+ * These locks only order threads of this process; the stores' own file locks and
+ * SlotRepository.compareAndSetStatus still guard against other processes.
+ */
+final class EntityLocks {
+    private static final ReentrantLock[] STRIPES = stripes(Integer.getInteger("oob.entityLocks.stripes", 64));
+
+    private EntityLocks() {
+    }
+
+    static String slot(String slotId) {
+        return "slot:" + slotId;
+    }
+
+    static String request(String requestId) {
+        return "request:" + requestId;
+    }
+
+    static String appointment(String appointmentId) {
+        return "appointment:" + appointmentId;
+    }
+
+    /**
+     * Run an action with the stripes of some entities locked, taken in ascending
+     * stripe order and released when it returns or throws
+     * @param action The check and the change that depends on it
+     * @param keys Entity keys (slot, request, appointment); null keys are skipped
+     * @return What the action returned
+     */
+    static <T> T withLock(Supplier<T> action, String... keys) {
+        int[] stripes = new int[keys.length];
+        int count = 0;
+        for (String key : keys) {
+            if (key != null) {
+                stripes[count++] = stripeOf(key);
+            }
+        }
+        Arrays.sort(stripes, 0, count);
+
+        // A stripe named twice is taken once
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+                stripes[distinct++] = stripes[i];
+            }
+        }
+        int taken = 0;
+        try {
+            for (; taken < distinct; taken++) {
+                STRIPES[stripes[taken]].lock();
+            }
+            return action.get();
+        } finally {
+            // Release in the reverse of the order taken
+            for (int i = taken - 1; i >= 0; i--) {
+                STRIPES[stripes[i]].unlock();
+            }
+        }
+    }
+
+    // Run an action with a slot locked
+    static <T> T withSlot(String slotId, Supplier<T> action) {
+        return withLock(action, slot(slotId));
+    }
+
+    // Run an action with a request and the slot it names locked; a request never moves to another slot
+    static <T> T withRequest(String requestId, Supplier<T> action) {
+        Request request = Repositories.requests().findById(requestId);
+        return withLock(action, request(requestId), request != null ? slot(request.getSlotId()) : null);
+    }
+
+    // Run an action with an appointment and the slot it names locked
+    static <T> T withAppointment(String appointmentId, Supplier<T> action) {
+        Appointment appointment = Repositories.appointments().findById(appointmentId);
+        return withLock(action, appointment(appointmentId), appointment != null ? slot(appointment.getSlotId()) : null);
+    }
+
+    private static int stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return hash & (STRIPES.length - 1);
+    }
+
+    private static ReentrantLock[] stripes(int requested) {
+        int count = 1;
+        while (count < requested && count < (1 << 16)) {
+            count <<= 1;
+        }
+        ReentrantLock[] stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        return stripes;
+    }
+}
@@ -2,10 +2,10 @@ package service;
 
 import model.Slot;
 import model.Appointment;
-import file.SlotFileManager;
-import file.AppointmentFileManager;
+import repository.Repositories;
 import java.util.ArrayList;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 
 public class LecturerService {
@@ -35,21 +35,30 @@ public class LecturerService {
         }
 
         // Generate slot ID
-        ArrayList<Slot> allSlots = SlotFileManager.loadAll();
-        String slotId = "S" + (allSlots.size() + 1);
+        String slotId = Repositories.slots().nextId();
 
         // Create new slot
         Slot newSlot = new Slot(slotId, lecturerTp, date, startTime, endTime, "OPEN");
-        SlotFileManager.appendOne(newSlot);
-        return true;
+        return Repositories.slots().appendOne(newSlot);
     }
 
     /**
-     * Retrieves all slots created by this lecturer
+     * Retrieves this lecturer's slots from the start of the current month onwards;
+     * earlier months are only read through viewOwnSlots(fromDate, toDate)
      * @return List of slots belonging to this lecturer
      */
     public ArrayList<Slot> viewOwnSlots() {
-        return SlotFileManager.getSlotsByLecturer(lecturerTp);
+        return Repositories.slots().getSlotsByLecturer(lecturerTp, YearMonth.now().atDay(1).toString(), null);
+    }
+
+    /**
+     * Retrieves this lecturer's slots dated within a range
+     * @param fromDate First date (yyyy-MM-dd), or null for no lower bound
+     * @param toDate Last date (yyyy-MM-dd), or null for no upper bound
+     * @return List of slots belonging to this lecturer
+     */
+    public ArrayList<Slot> viewOwnSlots(String fromDate, String toDate) {
+        return Repositories.slots().getSlotsByLecturer(lecturerTp, fromDate, toDate);
     }
 
     /**
@@ -57,7 +66,15 @@ public class LecturerService {
      * @return List of appointments for this lecturer
      */
     public ArrayList<Appointment> viewApprovedBookings() {
-        return AppointmentFileManager.getAppointmentsByLecturer(lecturerTp);
+        return Repositories.appointments().getAppointmentsByLecturer(lecturerTp);
+    }
+
+    /**
+     * Retrieves this lecturer's archived appointments, finished before the archive horizon
+     * @return List of archived appointments for this lecturer
+     */
+    public ArrayList<Appointment> viewAppointmentHistory() {
+        return Repositories.archive().getArchivedAppointmentsByLecturer(lecturerTp);
     }
 
     /**
@@ -67,23 +84,26 @@ public class LecturerService {
      * @return true if cancelled successfully, false otherwise
      */
     public boolean cancelSlot(String slotId) {
-        Slot slot = SlotFileManager.findById(slotId);
+        // The slot, so it is not booked while being cancelled
+        return EntityLocks.withSlot(slotId, () -> {
+            Slot slot = Repositories.slots().findById(slotId);
         
-        if (slot == null) {
-            return false;
-        }
+            if (slot == null) {
+                return false;
+            }
 
-        if (!slot.getLecturerTp().equals(lecturerTp)) {
-            return false;
-        }
+            if (!slot.getLecturerTp().equals(lecturerTp)) {
+                return false;
+            }
 
-        if (!"OPEN".equalsIgnoreCase(slot.getStatus())) {
-            return false;
-        }
+            if (!"OPEN".equalsIgnoreCase(slot.getStatus())) {
+                return false;
+            }
 
-        slot.setStatus("CANCELLED");
-        SlotFileManager.update(slot);
-        return true;
+            Slot cancelled = slot.copy();
+            cancelled.setStatus("CANCELLED");
+            return Repositories.slots().update(cancelled);
+        });
     }
 
     /**
@@ -95,20 +115,23 @@ public class LecturerService {
      * @return true if updated successfully, false otherwise
      */
     public boolean updateSlot(String slotId, String newDate, String newStartTime, String newEndTime) {
-        Slot slot = SlotFileManager.findById(slotId);
+        // The slot
+        return EntityLocks.withSlot(slotId, () -> {
+            Slot slot = Repositories.slots().findById(slotId);
         
-        if (slot == null) {
-            return false;
-        }
+            if (slot == null) {
+                return false;
+            }
 
-        if (!slot.getLecturerTp().equals(lecturerTp)) {
-            return false;
-        }
+            if (!slot.getLecturerTp().equals(lecturerTp)) {
+                return false;
+            }
 
-        slot.setDate(newDate);
-        slot.setStartTime(newStartTime);
-        slot.setEndTime(newEndTime);
-        SlotFileManager.update(slot);
-        return true;
+            Slot updated = slot.copy();
+            updated.setDate(newDate);
+            updated.setStartTime(newStartTime);
+            updated.setEndTime(newEndTime);
+            return Repositories.slots().update(updated);
+        });
     }
 }
@@ -3,177 +3,216 @@ package service;
 import model.Request;
 import model.Slot;
 import model.Appointment;
-import file.RequestFileManager;
-import file.SlotFileManager;
-import file.AppointmentFileManager;
+import repository.Repositories;
+import repository.UnitOfWork;
 import java.util.ArrayList;
+import java.util.List;
 
 public class StaffService {
 
     // View all pending requests
     public ArrayList<Request> viewPendingRequests() {
-        return RequestFileManager.getPendingRequests();
+        return Repositories.requests().getPendingRequests();
     }
 
     // Approve request - creates an appointment and deletes the request
     public boolean approveRequest(String requestId) {
-        Request request = RequestFileManager.findById(requestId);
+        // The request and its slot, so it is not approved and cancelled at once
+        return EntityLocks.withRequest(requestId, () -> {
+            Request request = Repositories.requests().findById(requestId);
         
-        if (request == null) {
-            return false;
-        }
-
-        if (!"PENDING".equalsIgnoreCase(request.getStatus())) {
-            return false;
-        }
-
-        // Get slot details
-        Slot slot = SlotFileManager.findById(request.getSlotId());
-        if (slot == null) {
-            System.out.println("Slot not found.");
-            return false;
-        }
-
-        // Create appointment
-        ArrayList<Appointment> allAppointments = AppointmentFileManager.loadAll();
-        String appointmentId = "A" + (allAppointments.size() + 1);
+            if (request == null) {
+                return false;
+            }
+
+            if (!"PENDING".equalsIgnoreCase(request.getStatus())) {
+                return false;
+            }
+
+            // Get slot details
+            Slot slot = Repositories.slots().findById(request.getSlotId());
+            if (slot == null) {
+                System.out.println("Slot not found.");
+                return false;
+            }
+
+            // Create appointment
+            String appointmentId = Repositories.appointments().nextId();
         
-        Appointment newAppointment = new Appointment(
-            appointmentId,
-            requestId,
-            request.getStudentTp(),
-            request.getLecturerTp(),
-            request.getSlotId(),
-            slot.getDate(),
-            slot.getStartTime(),
-            "SCHEDULED"
-        );
+            Appointment newAppointment = new Appointment(
+                appointmentId,
+                requestId,
+                request.getStudentTp(),
+                request.getLecturerTp(),
+                request.getSlotId(),
+                slot.getDate(),
+                slot.getStartTime(),
+                "SCHEDULED"
+            );
         
-        AppointmentFileManager.appendOne(newAppointment);
+            // Appointment, slot and request change together or not at all
+            UnitOfWork work = Repositories.begin();
+            Repositories.appointments().appendOne(work, newAppointment);
 
-        // Delete the slot since it's now booked
-        SlotFileManager.delete(request.getSlotId());
+            // Delete the slot since it's now booked
+            Repositories.slots().delete(work, request.getSlotId());
 
-        // Delete the request from requests.txt
-        RequestFileManager.delete(requestId);
-        return true;
+            // Delete the request from requests.txt
+            Repositories.requests().delete(work, requestId);
+            return work.commit();
+        });
     }
 
     // Reject/Cancel request with reason - creates cancelled appointment
     public boolean cancelRequest(String requestId, String cancelReason) {
-        Request request = RequestFileManager.findById(requestId);
+        // The request and its slot
+        return EntityLocks.withRequest(requestId, () -> {
+            Request request = Repositories.requests().findById(requestId);
         
-        if (request == null) {
-            return false;
-        }
-
-        // Get slot details
-        Slot slot = SlotFileManager.findById(request.getSlotId());
-        if (slot == null) {
-            return false;
-        }
-
-        // Release the slot back to OPEN
-        SlotFileManager.updateStatus(request.getSlotId(), "OPEN");
-
-        // Create cancelled appointment with cancel reason
-        ArrayList<Appointment> allAppointments = AppointmentFileManager.loadAll();
-        String appointmentId = "A" + (allAppointments.size() + 1);
+            if (request == null) {
+                return false;
+            }
+
+            // Get slot details
+            Slot slot = Repositories.slots().findById(request.getSlotId());
+            if (slot == null) {
+                return false;
+            }
+
+            // Release the slot back to OPEN
+            UnitOfWork work = Repositories.begin();
+            if (!Repositories.slots().updateStatus(work, request.getSlotId(), "OPEN")) {
+                return false;
+            }
+
+            // Create cancelled appointment with cancel reason
+            String appointmentId = Repositories.appointments().nextId();
         
-        Appointment cancelledAppointment = new Appointment(
-            appointmentId,
-            requestId,
-            request.getStudentTp(),
-            request.getLecturerTp(),
-            request.getSlotId(),
-            slot.getDate(),
-            slot.getStartTime(),
-            "CANCELLED",
-            cancelReason != null ? cancelReason : "Cancelled by staff"
-        );
+            Appointment cancelledAppointment = new Appointment(
+                appointmentId,
+                requestId,
+                request.getStudentTp(),
+                request.getLecturerTp(),
+                request.getSlotId(),
+                slot.getDate(),
+                slot.getStartTime(),
+                "CANCELLED",
+                cancelReason != null ? cancelReason : "Cancelled by staff"
+            );
         
-        AppointmentFileManager.appendOne(cancelledAppointment);
+            Repositories.appointments().appendOne(work, cancelledAppointment);
 
-        // Delete the request from requests.txt
-        RequestFileManager.delete(requestId);
+            // Delete the request from requests.txt
+            Repositories.requests().delete(work, requestId);
+            if (!work.commit()) {
+                return false;
+            }
 
-        System.out.println("Request cancelled and appointment created with status CANCELLED.");
-        return true;
+            System.out.println("Request cancelled and appointment created with status CANCELLED.");
+            return true;
+        });
     }
 
-    // View all appointments
-    public ArrayList<Appointment> viewAllAppointments() {
-        return AppointmentFileManager.loadAll();
+    // View all appointments, as an immutable view that later changes do not disturb
+    public List<Appointment> viewAllAppointments() {
+        return Repositories.appointments().viewAll();
+    }
+
+    // View archived appointments dated within a range (yyyy-MM-dd, null bounds are open)
+    public ArrayList<Appointment> viewArchivedAppointments(String fromDate, String toDate) {
+        return Repositories.archive().getArchivedAppointmentsBetween(fromDate, toDate);
     }
 
     // Update appointment (change date/time)
     public boolean updateAppointment(String appointmentId, String newDate, String newStartTime) {
-        Appointment appointment = AppointmentFileManager.findById(appointmentId);
+        // The appointment and its slot
+        return EntityLocks.withAppointment(appointmentId, () -> {
+            Appointment appointment = Repositories.appointments().findById(appointmentId);
         
-        if (appointment == null) {
-            System.out.println("Appointment not found.");
-            return false;
-        }
-
-        // Verify new date/time matches a lecturer slot
-        Slot slot = SlotFileManager.findById(appointment.getSlotId());
-        if (slot == null) {
-            System.out.println("Slot not found.");
-            return false;
-        }
-
-        // Check if new date and time match slot
-        if (!slot.getDate().equals(newDate) || !slot.getStartTime().equals(newStartTime)) {
-            System.out.println("New date/time must match lecturer's slot.");
-            return false;
-        }
-
-        appointment.setDate(newDate);
-        appointment.setStartTime(newStartTime);
-        AppointmentFileManager.update(appointment);
+            if (appointment == null) {
+                System.out.println("Appointment not found.");
+                return false;
+            }
+
+            // Verify new date/time matches a lecturer slot
+            Slot slot = Repositories.slots().findById(appointment.getSlotId());
+            if (slot == null) {
+                System.out.println("Slot not found.");
+                return false;
+            }
+
+            // Check if new date and time match slot
+            if (!slot.getDate().equals(newDate) || !slot.getStartTime().equals(newStartTime)) {
+                System.out.println("New date/time must match lecturer's slot.");
+                return false;
+            }
+
+            Appointment updated = appointment.copy();
+            updated.setDate(newDate);
+            updated.setStartTime(newStartTime);
+            Repositories.appointments().update(updated);
         
-        System.out.println("Appointment updated successfully.");
-        return true;
+            System.out.println("Appointment updated successfully.");
+            return true;
+        });
     }
 
     // Cancel appointment
     public boolean cancelAppointment(String appointmentId) {
-        Appointment appointment = AppointmentFileManager.findById(appointmentId);
+        // The appointment and its slot
+        return EntityLocks.withAppointment(appointmentId, () -> {
+            Appointment appointment = Repositories.appointments().findById(appointmentId);
         
-        if (appointment == null) {
-            System.out.println("Appointment not found.");
-            return false;
-        }
-
-        appointment.setStatus("CANCELLED");
-        AppointmentFileManager.update(appointment);
-
-        // Free up the slot
-        Slot slot = SlotFileManager.findById(appointment.getSlotId());
-        if (slot != null) {
-            SlotFileManager.updateStatus(appointment.getSlotId(), "OPEN");
-        }
-
-        System.out.println("Appointment cancelled successfully.");
-        return true;
+            if (appointment == null) {
+                System.out.println("Appointment not found.");
+                return false;
+            }
+
+            Appointment cancelled = appointment.copy();
+            cancelled.setStatus("CANCELLED");
+            UnitOfWork work = Repositories.begin();
+            Repositories.appointments().update(work, cancelled);
+
+            // Free up the slot
+            Slot slot = Repositories.slots().findById(appointment.getSlotId());
+            if (slot != null && !Repositories.slots().updateStatus(work, appointment.getSlotId(), "OPEN")) {
+                return false;
+            }
+            if (!work.commit()) {
+                return false;
+            }
+
+            System.out.println("Appointment cancelled successfully.");
+            return true;
+        });
     }
 
     // Complete appointment
     public boolean completeAppointment(String appointmentId) {
-        Appointment appointment = AppointmentFileManager.findById(appointmentId);
+        // The appointment and its slot
+        return EntityLocks.withAppointment(appointmentId, () -> {
+            Appointment appointment = Repositories.appointments().findById(appointmentId);
         
-        if (appointment == null) {
-            System.out.println("Appointment not found.");
-            return false;
-        }
-
-        appointment.setStatus("COMPLETED");
-        AppointmentFileManager.update(appointment);
-
-        // Delete the slot (completed appointments don't need slots anymore)
-        SlotFileManager.delete(appointment.getSlotId());
-
-        System.out.println("Appointment completed successfully.");
-        return true;
+            if (appointment == null) {
+                System.out.println("Appointment not found.");
+                return false;
+            }
+
+            Appointment completed = appointment.copy();
+            completed.setStatus("COMPLETED");
+            UnitOfWork work = Repositories.begin();
+            Repositories.appointments().update(work, completed);
+
+            // Delete the slot (completed appointments don't need slots anymore)
+            if (Repositories.slots().findById(appointment.getSlotId()) != null) {
+                Repositories.slots().delete(work, appointment.getSlotId());
+            }
+            if (!work.commit()) {
+                return false;
+            }
+
+            System.out.println("Appointment completed successfully.");
+            return true;
+        });
     }
 }
@@ -3,9 +3,9 @@ package service;
 import model.Request;
 import model.Slot;
 import model.Appointment;
-import file.RequestFileManager;
-import file.SlotFileManager;
-import file.AppointmentFileManager;
+import repository.Repositories;
+import repository.UnitOfWork;
+import java.time.LocalDate;
 import java.util.ArrayList;
 
 public class StudentService {
@@ -16,40 +16,61 @@ public class StudentService {
     }
 
     /**
-     * Retrieves all available consultation slots (status = OPEN)
+     * Retrieves available consultation slots (status = OPEN) from today onwards
      * @return List of available slots
      */
     public ArrayList<Slot> viewAvailableSlots() {
-        return SlotFileManager.getAvailableSlots();
+        return Repositories.slots().getAvailableSlots(LocalDate.now().toString(), null);
     }
 
     /**
-     * Creates a consultation request for a specific slot
+     * Creates a consultation request for a specific slot. The slot is moved from OPEN to
+     * ON_HOLD and the request is added in one unit of work, and the slot change only
+     * goes ahead if the slot is unchanged since it was read, so when two students book
+     * the same slot at once exactly one gets it and the other is told straight away; a
+     * slot is never left ON_HOLD without its request.
      * @param lecturerTp The lecturer's TP number
      * @param slotId The ID of the requested slot
      * @param reason The reason for consultation
-     * @return true if request created successfully, false otherwise
+     * @return BOOKED if the request was created, otherwise why not
      */
-    public boolean createConsultationRequest(String lecturerTp, String slotId, String reason) {
-        // Check if slot exists and is open
-        Slot slot = SlotFileManager.findById(slotId);
-        if (slot == null || !"OPEN".equalsIgnoreCase(slot.getStatus())) {
-            return false;
-        }
-
-        // Generate request ID
-        ArrayList<Request> allRequests = RequestFileManager.loadAll();
-        String requestId = "R" + (allRequests.size() + 1);
-
-        // Create new request with slot date and time information
-        Request newRequest = new Request(requestId, studentTp, lecturerTp, slotId, 
-                                        slot.getDate(), slot.getStartTime(), slot.getEndTime(),
-                                        reason, "PENDING");
-        RequestFileManager.appendOne(newRequest);
-
-        // Set slot to ON_HOLD
-        SlotFileManager.updateStatus(slotId, "ON_HOLD");
-        return true;
+    public BookingResult createConsultationRequest(String lecturerTp, String slotId, String reason) {
+        // The slot; bookings of other slots go ahead in parallel
+        return EntityLocks.withSlot(slotId, () -> {
+            // Check if slot exists and is open
+            Slot slot = Repositories.slots().findById(slotId);
+            if (slot == null) {
+                return BookingResult.SLOT_NOT_FOUND;
+            }
+            // Past slots cannot be booked; their months are sealed read-only
+            if (!"OPEN".equalsIgnoreCase(slot.getStatus()) || slot.getDate().compareTo(LocalDate.now().toString()) < 0) {
+                return BookingResult.SLOT_UNAVAILABLE;
+            }
+
+            // Claim the slot: OPEN to ON_HOLD, unless another booking got there first
+            UnitOfWork work = Repositories.begin();
+            if (!Repositories.slots().compareAndSetStatus(work, slotId, slot.getVersion(), "OPEN", "ON_HOLD")) {
+                return BookingResult.SLOT_TAKEN;
+            }
+
+            // Generate request ID
+            String requestId = Repositories.requests().nextId();
+
+            // Create new request with slot date and time information, added with the slot change
+            Request newRequest = new Request(requestId, studentTp, lecturerTp, slotId, 
+                                            slot.getDate(), slot.getStartTime(), slot.getEndTime(),
+                                            reason, "PENDING");
+            Repositories.requests().appendOne(work, newRequest);
+            if (work.commit()) {
+                return BookingResult.BOOKED;
+            }
+
+            // Rejected: taken in between, or nothing could be written. commit() has rolled
+            // back by now, so a slot still OPEN here was never claimed
+            Slot current = Repositories.slots().findById(slotId);
+            return current != null && "OPEN".equalsIgnoreCase(current.getStatus())
+                    ? BookingResult.NOT_SAVED : BookingResult.SLOT_TAKEN;
+        });
     }
 
     /**
@@ -57,7 +78,7 @@ public class StudentService {
      * @return List of requests belonging to this student
      */
     public ArrayList<Request> viewOwnRequests() {
-        return RequestFileManager.getRequestsByStudent(studentTp);
+        return Repositories.requests().getRequestsByStudent(studentTp);
     }
 
     /**
@@ -66,51 +87,74 @@ public class StudentService {
      * @return true if cancelled successfully, false otherwise
      */
     public boolean cancelRequest(String requestId) {
-        Request request = RequestFileManager.findById(requestId);
+        // The request and its slot
+        return EntityLocks.withRequest(requestId, () -> {
+            Request request = Repositories.requests().findById(requestId);
         
-        if (request == null) {
-            return false;
-        }
-
-        if (!request.getStudentTp().equals(studentTp)) {
-            return false;
-        }
-
-        String status = request.getStatus().toUpperCase();
-        if (!"PENDING".equals(status)) {
-            return false;
-        }
-
-        // Get slot details
-        Slot slot = SlotFileManager.findById(request.getSlotId());
-        if (slot == null) {
-            return false;
-        }
-
-        // Release the slot back to OPEN
-        SlotFileManager.updateStatus(request.getSlotId(), "OPEN");
-
-        // Create cancelled appointment
-        ArrayList<Appointment> allAppointments = AppointmentFileManager.loadAll();
-        String appointmentId = "A" + (allAppointments.size() + 1);
+            if (request == null) {
+                return false;
+            }
+
+            if (!request.getStudentTp().equals(studentTp)) {
+                return false;
+            }
+
+            String status = request.getStatus().toUpperCase();
+            if (!"PENDING".equals(status)) {
+                return false;
+            }
+
+            // Get slot details
+            Slot slot = Repositories.slots().findById(request.getSlotId());
+            if (slot == null) {
+                return false;
+            }
+
+            // Release the slot back to OPEN
+            UnitOfWork work = Repositories.begin();
+            if (!Repositories.slots().updateStatus(work, request.getSlotId(), "OPEN")) {
+                return false;
+            }
+
+            // Create cancelled appointment
+            String appointmentId = Repositories.appointments().nextId();
         
-        Appointment cancelledAppointment = new Appointment(
-            appointmentId,
-            requestId,
-            studentTp,
-            request.getLecturerTp(),
-            request.getSlotId(),
-            slot.getDate(),
-            slot.getStartTime(),
-            "CANCELLED",
-            "Cancelled by student"
-        );
+            Appointment cancelledAppointment = new Appointment(
+                appointmentId,
+                requestId,
+                studentTp,
+                request.getLecturerTp(),
+                request.getSlotId(),
+                slot.getDate(),
+                slot.getStartTime(),
+                "CANCELLED",
+                "Cancelled by student"
+            );
         
-        AppointmentFileManager.appendOne(cancelledAppointment);
+            Repositories.appointments().appendOne(work, cancelledAppointment);
 
-        // Delete the request from requests.txt
-        RequestFileManager.delete(requestId);
-        return true;
+            // Delete the request from requests.txt
+            Repositories.requests().delete(work, requestId);
+            return work.commit();
+        });
+    }
+
+    /**
+     * Withdraws one of this student's pending requests: the slot is released and the
+     * request deleted together, with no cancelled appointment kept
+     * @param requestId The ID of the request to withdraw
+     * @param reason Why the student withdrew it
+     * @return true if withdrawn, false if not found, not this student's or already processed
+     */
+    public boolean cancelRequest(String requestId, String reason) {
+        // The request and its slot, so it is not approved while being withdrawn
+        return EntityLocks.withRequest(requestId, () -> {
+            Request request = Repositories.requests().findById(requestId);
+            if (request == null || !request.getStudentTp().equals(studentTp)) {
+                return false;
+            }
+            return Repositories.requests().cancelRequest(requestId, reason);
+        });
     }
 
     /**
@@ -118,6 +162,22 @@ public class StudentService {
      * @return List of appointments for this student
      */
     public ArrayList<Appointment> viewOwnAppointments() {
-        return AppointmentFileManager.getAppointmentsByStudent(studentTp);
+        return Repositories.appointments().getAppointmentsByStudent(studentTp);
+    }
+
+    /**
+     * Retrieves this student's archived appointments, finished before the archive horizon
+     * @return List of archived appointments for this student
+     */
+    public ArrayList<Appointment> viewAppointmentHistory() {
+        return Repositories.archive().getArchivedAppointmentsByStudent(studentTp);
+    }
+
+    /**
+     * Retrieves this student's archived cancelled requests
+     * @return List of archived requests for this student
+     */
+    public ArrayList<Request> viewRequestHistory() {
+        return Repositories.archive().getArchivedRequestsByStudent(studentTp);
     }
 }
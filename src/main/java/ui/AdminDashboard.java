@@ -2,11 +2,10 @@ package ui;
 
 import static ui.UITheme.*;
 
-import file.UserFileManager;
+import repository.Repositories;
 import model.User;
 import service.AdminService;
 import util.ImageUtil;
-import util.UserIdGenerator;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -281,8 +280,7 @@ public class AdminDashboard extends JFrame {
         // When role changes, generate new ID
         roleCombo.addActionListener(e -> {
             String role = (String) roleCombo.getSelectedItem();
-            ArrayList<User> existingUsers = adminService.viewAllUsers();
-            String newId = UserIdGenerator.generateUserId(role, "", existingUsers);
+            String newId = adminService.nextUserId(role);
             generatedId[0] = newId;
             idField.setText(newId);
             idField.setForeground(TEXT_COLOR);
@@ -342,10 +340,11 @@ public class AdminDashboard extends JFrame {
             boolean success = adminService.createUser(tp, role, name, email, password);
             if (success) {
                 // Update additional fields
-                User user = UserFileManager.findById(tp);
-                if (user != null) {
+                User stored = Repositories.users().findById(tp);
+                if (stored != null) {
+                    User user = stored.copy();
                     user.setProfilePicture(profilePic);
-                    UserFileManager.update(user);
+                    Repositories.users().update(user);
                 }
                 JOptionPane.showMessageDialog(dialog, 
                     "User created successfully!\n\nID: " + tp + "\nName: " + name + "\nRole: " + role, 
@@ -407,7 +406,7 @@ public class AdminDashboard extends JFrame {
                 
                 if (row >= 0) {
                     String userId = (String) table.getValueAt(row, 0);
-                    User user = UserFileManager.findById(userId);
+                    User user = Repositories.users().findById(userId);
                     
                     if (user != null) {
                         openEditUserDialog(user, model, row);
@@ -611,9 +610,9 @@ public class AdminDashboard extends JFrame {
             
             boolean success = adminService.updateUser(user.getTp(), name, email, password.isEmpty() ? null : password);
             if (success) {
-                User updatedUser = UserFileManager.findById(user.getTp());
+                User updatedUser = Repositories.users().findById(user.getTp());
                 if (updatedUser != null) {
-                    UserFileManager.update(updatedUser);
+                    Repositories.users().update(updatedUser);
                     
                     tableModel.setValueAt(updatedUser.getName(), row, 1);
                     tableModel.setValueAt(updatedUser.getEmail(), row, 3);
@@ -841,7 +840,7 @@ public class AdminDashboard extends JFrame {
             user.setAddress(addressField.getText().trim());
             user.setDescription(descArea.getText().trim());
             
-            boolean success = UserFileManager.update(user);
+            boolean success = Repositories.users().update(user);
             if (success) {
                 ImageIcon newHeaderIcon = ImageUtil.createHeaderProfileImage(user.getProfilePicture());
                 Component[] components = ((JPanel)getContentPane().getComponent(0)).getComponents();
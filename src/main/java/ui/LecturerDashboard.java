@@ -15,8 +15,7 @@ import model.User;
 import model.Slot;
 import model.Appointment;
 import service.LecturerService;
-import file.UserFileManager;
-import file.SlotFileManager;
+import repository.Repositories;
 import util.ImageUtil;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -63,7 +62,7 @@ public class LecturerDashboard extends JFrame {
      * Load student data once at initialization for better performance
      */
     private void loadStudentData() {
-        UserFileManager.loadAll().stream()
+        Repositories.users().loadAll().stream()
             .filter(u -> "STUDENT".equalsIgnoreCase(u.getRole()))
             .forEach(u -> studentMap.put(u.getTp(), u.getName()));
     }
@@ -412,7 +411,7 @@ public class LecturerDashboard extends JFrame {
                 JOptionPane.WARNING_MESSAGE);
             
             if (confirm == JOptionPane.YES_OPTION) {
-                boolean success = SlotFileManager.delete(slotId);
+                boolean success = Repositories.slots().delete(slotId);
                 if (success) {
                     JOptionPane.showMessageDialog(dialog,
                         "Slot deleted successfully!",
@@ -728,7 +727,7 @@ public class LecturerDashboard extends JFrame {
             user.setAddress(addressField.getText().trim());
             user.setDescription(descArea.getText().trim());
             
-            boolean success = UserFileManager.update(user);
+            boolean success = Repositories.users().update(user);
             if (success) {
                 Component[] components = ((JPanel)getContentPane().getComponent(0)).getComponents();
                 for (Component comp : components) {
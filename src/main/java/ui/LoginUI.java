@@ -3,7 +3,7 @@ package ui;
 
 
 import model.User;
-import file.UserFileManager;
+import repository.Repositories;
 import javax.swing.*;
 import java.awt.*;
 
@@ -67,7 +67,7 @@ public class LoginUI extends JFrame {
             return;
         }
 
-        User user = UserFileManager.validateLoginByEmail(email, password);
+        User user = Repositories.users().validateLoginByEmail(email, password);
 
         if (user == null) {
             JOptionPane.showMessageDialog(this, "Invalid email or password.", 
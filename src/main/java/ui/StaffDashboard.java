@@ -14,8 +14,7 @@ import model.User;
 import model.Request;
 import model.Appointment;
 import service.StaffService;
-import file.UserFileManager;
-import file.AppointmentFileManager;
+import repository.Repositories;
 import util.ImageUtil;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -24,6 +23,7 @@ import java.awt.*;
 import java.awt.event.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 // LGoodDatePicker imports
@@ -66,7 +66,7 @@ public class StaffDashboard extends JFrame {
      * Load student and lecturer data once at initialization for better performance
      */
     private void loadUserData() {
-        UserFileManager.loadAll().forEach(u -> {
+        Repositories.users().loadAll().forEach(u -> {
             if ("STUDENT".equalsIgnoreCase(u.getRole())) {
                 studentMap.put(u.getTp(), u.getName());
             } else if ("LECTURER".equalsIgnoreCase(u.getRole())) {
@@ -406,7 +406,7 @@ public class StaffDashboard extends JFrame {
      * View all appointments with edit functionality
      */
     private void viewAllAppointments() {
-        ArrayList<Appointment> appointments = staffService.viewAllAppointments();
+        List<Appointment> appointments = staffService.viewAllAppointments();
         
         if (appointments.isEmpty()) {
             JOptionPane.showMessageDialog(this, 
@@ -478,7 +478,10 @@ public class StaffDashboard extends JFrame {
             Appointment appointment = appointmentMap.get(appointmentId);
             
             if (appointment != null) {
-                openEditAppointmentDialog(appointment, tableModel, selectedRow);
+                // The dialog edits this table's own copy, never the stored record other readers share
+                Appointment editable = appointment.copy();
+                appointmentMap.put(appointmentId, editable);
+                openEditAppointmentDialog(editable, tableModel, selectedRow);
             }
         });
         
@@ -588,7 +591,7 @@ public class StaffDashboard extends JFrame {
             appointment.setStatus(selectedStatus);
             
             // Save to file
-            if (AppointmentFileManager.update(appointment)) {
+            if (Repositories.appointments().update(appointment)) {
                 // Update table display
                 tableModel.setValueAt(appointment.getDate(), row, 3);
                 tableModel.setValueAt(appointment.getStartTime(), row, 4);
@@ -820,7 +823,7 @@ public class StaffDashboard extends JFrame {
             user.setDescription(descArea.getText().trim());
             
             // Save to file
-            boolean success = UserFileManager.update(user);
+            boolean success = Repositories.users().update(user);
             if (success) {
                 // Update header profile image
                 updateHeaderProfileImage();
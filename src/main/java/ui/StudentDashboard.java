@@ -5,9 +5,9 @@ import static ui.UITheme.*;
 import model.User;
 import model.Slot;
 import model.Request;
+import service.BookingResult;
 import service.StudentService;
-import file.UserFileManager;
-import file.RequestFileManager;
+import repository.Repositories;
 import util.ImageUtil;
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
@@ -50,7 +50,7 @@ public class StudentDashboard extends JFrame {
      * Creates both forward (tp->name) and reverse (name->tp) lookups
      */
     private void loadLecturerData() {
-        UserFileManager.loadAll().stream()
+        Repositories.users().loadAll().stream()
             .filter(u -> "LECTURER".equalsIgnoreCase(u.getRole()))
             .forEach(u -> {
                 lecturerMap.put(u.getTp(), u.getName());
@@ -386,12 +386,16 @@ public class StudentDashboard extends JFrame {
             String lecturerTp = lecturerNameToTpMap.get(selectedLecturer);
             String slotId = slotIdMap.get(selectedSlot);
             
-            if (lecturerTp != null && slotId != null && 
-                studentService.createConsultationRequest(lecturerTp, slotId, reason.trim())) {
+            BookingResult result = lecturerTp != null && slotId != null
+                ? studentService.createConsultationRequest(lecturerTp, slotId, reason.trim())
+                : BookingResult.SLOT_NOT_FOUND;
+            if (result.isBooked()) {
                 JOptionPane.showMessageDialog(dialog, 
                     "Request submitted successfully!\nYou will be notified once approved.", 
                     "Success", JOptionPane.INFORMATION_MESSAGE);
                 dialog.dispose();
+            } else if (result == BookingResult.SLOT_TAKEN) {
+                showError("Another student booked this slot just before you.\nPlease choose another slot.");
             } else {
                 showError("Failed to create request. The slot may no longer be available.");
             }
@@ -599,7 +603,7 @@ public class StudentDashboard extends JFrame {
             }
             
             // Cancel the request
-            boolean success = RequestFileManager.cancelRequest(requestId, reason);
+            boolean success = studentService.cancelRequest(requestId, reason);
             if (success) {
                 JOptionPane.showMessageDialog(cancelDialog,
                     "Request cancelled successfully.",
@@ -1060,7 +1064,7 @@ public class StudentDashboard extends JFrame {
             user.setDescription(descArea.getText().trim());
             
             // Save to file
-            boolean success = UserFileManager.update(user);
+            boolean success = Repositories.users().update(user);
             if (success) {
                 // Update header profile image
                 ImageIcon newHeaderIcon = ImageUtil.createHeaderProfileImage(user.getProfilePicture());
@@ -0,0 +1,120 @@
+package util;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Numbers in use per role, for UserIdGenerator's gap filling (LEC-001, LEC-002...).
+ *
+ * Each role keeps a BitSet of the numbers its users' IDs carry, plus the lowest
+ * clear bit. Adding a user moves that mark forward past set bits only, and removing
+ * one can only move it back to the freed number, so lowestFree() is a field read
+ * and keeping it current costs O(1) amortized per change. This replaces collecting,
+ * regex-parsing and sorting every user's ID each time an ID was suggested.
+ *
+ * The same number may appear under one role more than once (TP012 and TP12); such
+ * extra holders are counted separately so removing one keeps the number in use.
+ */
+public class FreeIdAllocator {
+
+    // Used numbers of one role
+    private static final class Numbers {
+        final BitSet used = new BitSet();
+        final HashMap<Integer, Integer> extraHolders = new HashMap<>();
+        int lowestFree = 1;
+    }
+
+    private final HashMap<String, Numbers> byRole = new HashMap<>();
+
+    /**
+     * Record a user's ID as taken
+     * @param role User role
+     * @param id User ID; IDs that do not end in a number are ignored
+     */
+    public synchronized void add(String role, String id) {
+        int number = numberOf(id);
+        if (number <= 0) {
+            return;
+        }
+        Numbers numbers = byRole.computeIfAbsent(key(role), k -> new Numbers());
+        if (numbers.used.get(number)) {
+            numbers.extraHolders.merge(number, 1, Integer::sum);
+            return;
+        }
+        numbers.used.set(number);
+        if (number == numbers.lowestFree) {
+            numbers.lowestFree = numbers.used.nextClearBit(number + 1);
+        }
+    }
+
+    /**
+     * Record a user's ID as free again
+     * @param role User role
+     * @param id User ID the user was stored under
+     */
+    public synchronized void remove(String role, String id) {
+        int number = numberOf(id);
+        Numbers numbers = byRole.get(key(role));
+        if (number <= 0 || numbers == null || !numbers.used.get(number)) {
+            return;
+        }
+        Integer extra = numbers.extraHolders.get(number);
+        if (extra != null) {
+            if (extra == 1) {
+                numbers.extraHolders.remove(number);
+            } else {
+                numbers.extraHolders.put(number, extra - 1);
+            }
+            return;
+        }
+        numbers.used.clear(number);
+        numbers.lowestFree = Math.min(numbers.lowestFree, number);
+    }
+
+    // Forget every user
+    public synchronized void clear() {
+        byRole.clear();
+    }
+
+    /**
+     * Lowest number no user of the role has
+     * @param role User role
+     * @return 1 for a role without users
+     */
+    public synchronized int lowestFree(String role) {
+        Numbers numbers = byRole.get(key(role));
+        return numbers != null ? numbers.lowestFree : 1;
+    }
+
+    private static String key(String role) {
+        return role == null ? "" : role.toUpperCase();
+    }
+
+    /**
+     * Number at the end of an ID ("LEC-007" gives 7, "TP012" gives 12)
+     * @return The number, or 0 if the ID does not end in digits
+     */
+    static int numberOf(String id) {
+        if (id == null) {
+            return 0;
+        }
+        int end = id.length();
+        int start = end;
+        while (start > 0 && id.charAt(start - 1) >= '0' && id.charAt(start - 1) <= '9') {
+            start--;
+        }
+        // Skip leading zeros so only significant digits count towards the length limit
+        while (start < end - 1 && id.charAt(start) == '0') {
+            start++;
+        }
+        // Anything longer could overflow an int and cannot be a realistic user number
+        if (start == end || end - start > 9) {
+            return 0;
+        }
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            number = number * 10 + (id.charAt(i) - '0');
+        }
+        return number;
+    }
+}
@@ -28,6 +28,17 @@ public class UserIdGenerator {
         return prefix + String.format("%03d", nextNumber);
     }
     
+    /**
+     * Generate a unique user ID from numbers already tracked by an allocator,
+     * without looking at the user list
+     * @param role User role (STUDENT, LECTURER, STAFF, ADMIN)
+     * @param usedNumbers Numbers in use, kept current by the user storage
+     * @return Generated unique user ID
+     */
+    public static String generateUserId(String role, FreeIdAllocator usedNumbers) {
+        return getPrefixForRole(role) + String.format("%03d", usedNumbers.lowestFree(role));
+    }
+    
     /**
      * Generate ID with name-based code (alternative format)
      * Format: PREFIX-XXX where XXX is first 3 letters of name
@@ -73,45 +84,11 @@ public class UserIdGenerator {
      * Implements gap-filling logic to reuse deleted IDs
      */
     private static int getNextNumberForRole(String role, ArrayList<User> existingUsers) {
-        String prefix = getPrefixForRole(role);
-        ArrayList<Integer> existingNumbers = new ArrayList<>();
-        
-        // Collect all existing numbers for this role
+        FreeIdAllocator numbers = new FreeIdAllocator();
         for (User user : existingUsers) {
-            if (user.getRole().equalsIgnoreCase(role)) {
-                String userId = user.getTp();
-                try {
-                    // Extract number from ID
-                    String numberPart = userId.replace(prefix, "").replaceAll("[^0-9]", "");
-                    if (!numberPart.isEmpty()) {
-                        int number = Integer.parseInt(numberPart);
-                        existingNumbers.add(number);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip if can't parse number
-                }
-            }
-        }
-        
-        // If no existing users, start with 1
-        if (existingNumbers.isEmpty()) {
-            return 1;
-        }
-        
-        // Sort the numbers
-        existingNumbers.sort(Integer::compareTo);
-        
-        // Find the first gap
-        for (int i = 0; i < existingNumbers.size(); i++) {
-            int expected = i + 1;
-            if (existingNumbers.get(i) != expected) {
-                // Found a gap!
-                return expected;
-            }
+            numbers.add(user.getRole(), user.getTp());
         }
-        
-        // No gap found, return next sequential number
-        return existingNumbers.get(existingNumbers.size() - 1) + 1;
+        return numbers.lowestFree(role);
     }
     
     /**
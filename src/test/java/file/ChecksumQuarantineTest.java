@@ -0,0 +1,81 @@
+package file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A record or log line that fails its CRC is left out of the store, saved to the
+ * Quarantine and dropped from its file, while the valid ones still load.
+ */
+class ChecksumQuarantineTest {
+
+    @Test
+    void damagedBaseRecordIsQuarantined() throws Exception {
+        String file = Note.freshFile("crc-base.txt");
+        // As the store writes a base file: header line, then one checksummed record per line
+        StringBuilder content = new StringBuilder("# seq 0 tx 0 " + RecordChecksum.MARK + "\n");
+        RecordChecksum.appendLine(content, "N1|one");
+        RecordChecksum.appendLine(content, "N2|two");
+        RecordChecksum.appendLine(content, "N3|three");
+        write(Paths.get(file), content.toString().replace("N2|two", "N2|tw0"));
+
+        RecordStore<Note> store = Note.store(file);
+        assertEquals(2, store.loadAll().size());
+        assertEquals("one", Note.textOf(store, "N1"));
+        assertNull(Note.textOf(store, "N2"));
+        assertEquals("three", Note.textOf(store, "N3"));
+        assertTrue(quarantined("crc-base.txt-", "N2|tw0"));
+    }
+
+    @Test
+    void damagedLogLineIsQuarantinedAndDropped() throws Exception {
+        String file = Note.freshFile("crc-log.txt");
+        RecordStore<Note> before = Note.store(file);
+        assertTrue(before.append(new Note("N1", "first")));
+        assertTrue(before.append(new Note("N2", "second")));
+
+        Path log = Paths.get(file + ".log");
+        write(log, read(log).replace("N1|first", "N1|forged"));
+
+        RecordStore<Note> restarted = Note.store(file);
+        assertEquals(1, restarted.loadAll().size());
+        assertNull(Note.textOf(restarted, "N1"));
+        assertEquals("second", Note.textOf(restarted, "N2"));
+        assertTrue(quarantined("crc-log.txt.log-", "N1|forged"));
+        assertFalse(read(log).contains("forged"));
+    }
+
+    // Whether a quarantine file of that data file holds the text
+    private static boolean quarantined(String prefix, String text) throws IOException {
+        if (!Files.isDirectory(Quarantine.DIRECTORY)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(Quarantine.DIRECTORY)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .anyMatch(path -> read(path).contains(text));
+        }
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,58 @@
+package file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * IDs handed out by one run are never handed out again by the next, even when it
+ * was killed without giving its block back and the records were deleted since.
+ * A second IdSequence of the same name stands for the next run.
+ */
+class IdSequenceTest {
+
+    @BeforeAll
+    static void startWithoutSequences() throws Exception {
+        Files.createDirectories(Paths.get("src", "main", "resources"));
+        Files.deleteIfExists(Paths.get("src", "main", "resources", "sequences.txt"));
+    }
+
+    @Test
+    void restartContinuesAfterTheReservedBlock() {
+        HashSet<String> issued = new HashSet<>();
+        IdSequence first = new IdSequence("test-restart", "T", () -> 0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(issued.add(first.next()));
+        }
+
+        // Killed: the rest of the block is skipped, and the data has no records left to seed from
+        IdSequence restarted = new IdSequence("test-restart", "T", () -> 0);
+        for (int i = 0; i < IdSequence.BLOCK_SIZE * 2; i++) {
+            assertTrue(issued.add(restarted.next()), "reissued an ID after restart");
+        }
+    }
+
+    @Test
+    void restartAfterBulkReservationDoesNotReissue() {
+        IdSequence first = new IdSequence("test-bulk", "B", () -> 0);
+        ArrayList<String> bulk = first.next(IdSequence.BLOCK_SIZE + 5);
+        long highest = IdSequence.numberOf(bulk.get(bulk.size() - 1));
+        assertEquals(IdSequence.numberOf(bulk.get(0)) + IdSequence.BLOCK_SIZE + 4, highest);
+
+        IdSequence restarted = new IdSequence("test-bulk", "B", () -> 0);
+        assertTrue(IdSequence.numberOf(restarted.next()) > highest);
+    }
+
+    @Test
+    void newSequenceStartsAfterItsSeed() {
+        IdSequence sequence = new IdSequence("test-seeded", "S", () -> 41);
+        assertEquals("S42", sequence.next());
+    }
+}
@@ -0,0 +1,64 @@
+package file;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Two-field record ("id|text") for store tests, with helpers that give each test
+ * its own data file under src/main/resources of the working directory.
+ */
+final class Note {
+    final String id;
+    final String text;
+
+    Note(String id, String text) {
+        this.id = id;
+        this.text = text;
+    }
+
+    static Note parse(PipeRecord line) {
+        return line.fieldCount() >= 2 ? new Note(line.field(0), line.field(1)) : null;
+    }
+
+    String[] fields() {
+        return new String[] {id, text};
+    }
+
+    @Override
+    public String toString() {
+        return id + "|" + text;
+    }
+
+    /**
+     * A store over a data file, as it is opened when the program starts; a second
+     * store over the same file stands for the next run
+     */
+    static RecordStore<Note> store(String filePath) {
+        return new RecordStore<>(filePath, Note::parse, note -> note.id, Note::fields);
+    }
+
+    /**
+     * Path of a data file with nothing left over from an earlier test run
+     * @param name File name, e.g. notes.txt
+     */
+    static String freshFile(String name) throws IOException {
+        Path directory = Paths.get("src", "main", "resources");
+        Files.createDirectories(directory);
+        for (String suffix : new String[] {"", ".log", ".lock", ".tmp"}) {
+            Files.deleteIfExists(directory.resolve(name + suffix));
+        }
+        return directory.resolve(name).toString();
+    }
+
+    // Text of a note, or null if the store does not have it
+    static String textOf(RecordStore<Note> store, String id) {
+        for (Note note : store.loadAll()) {
+            if (note.id.equals(id)) {
+                return note.text;
+            }
+        }
+        return null;
+    }
+}
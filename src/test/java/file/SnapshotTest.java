@@ -0,0 +1,59 @@
+package file;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A snapshot section is only used while the store's files are exactly as they were
+ * when it was taken; any write since makes the store load its files instead.
+ */
+class SnapshotTest {
+
+    @Test
+    void sectionIsRejectedOnceTheBaseFileChanged() throws Exception {
+        String file = Note.freshFile("snapshot-base.txt");
+        Files.write(Paths.get(file), "N1|first\n".getBytes(StandardCharsets.UTF_8));
+        RecordStore<Note> store = Note.store(file);
+        store.loadAll();
+
+        Snapshot.Section section = store.snapshot();
+        assertNotNull(section);
+        assertTrue(section.matches(filesOf(section)));
+
+        // Written by hand (or by another process) after the snapshot was taken
+        Files.write(Paths.get(file), "N2|second\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertFalse(section.matches(filesOf(section)));
+    }
+
+    @Test
+    void sectionIsRejectedOnceTheLogChanged() throws Exception {
+        String file = Note.freshFile("snapshot-log.txt");
+        RecordStore<Note> store = Note.store(file);
+        assertTrue(store.append(new Note("N1", "first")));
+
+        Snapshot.Section section = store.snapshot();
+        assertNotNull(section);
+        assertTrue(section.matches(filesOf(section)));
+
+        assertTrue(store.append(new Note("N2", "second")));
+        assertFalse(section.matches(filesOf(section)));
+    }
+
+    // The files as the section lists them, now
+    private static Path[] filesOf(Snapshot.Section section) {
+        Path[] files = new Path[section.files.length];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = Paths.get(section.files[i]);
+        }
+        return files;
+    }
+}
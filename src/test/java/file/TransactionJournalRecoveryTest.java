@@ -0,0 +1,54 @@
+package file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * A transaction whose journal line is durable but whose store entries never got
+ * written (the process died in between) is finished when the store next loads.
+ */
+class TransactionJournalRecoveryTest {
+
+    @Test
+    void journalledTransactionIsReappliedAfterCrash() throws Exception {
+        String file = Note.freshFile("journal-recovery.txt");
+        RecordStore<Note> before = Note.store(file);
+        assertTrue(before.append(new Note("N1", "first")));
+
+        // Journal the transaction, then "crash": nothing is applied to the store
+        ArrayList<TransactionJournal.Operation> operations = new ArrayList<>();
+        operations.add(new TransactionJournal.Operation(before.name(), MutationLog.UPDATE, "N1|changed"));
+        operations.add(new TransactionJournal.Operation(before.name(), MutationLog.APPEND, "N2|second"));
+        assertTrue(TransactionJournal.append(TransactionJournal.nextTxId(), operations).await());
+
+        RecordStore<Note> restarted = Note.store(file);
+        assertEquals(2, restarted.loadAll().size());
+        assertEquals("changed", Note.textOf(restarted, "N1"));
+        assertEquals("second", Note.textOf(restarted, "N2"));
+
+        // Recovery logged it, so the run after does not apply it a second time
+        RecordStore<Note> again = Note.store(file);
+        assertEquals(2, again.loadAll().size());
+        assertEquals("changed", Note.textOf(again, "N1"));
+    }
+
+    @Test
+    void appliedTransactionIsNotReappliedOverLaterChanges() throws Exception {
+        String file = Note.freshFile("journal-applied.txt");
+        RecordStore<Note> before = Note.store(file);
+        assertTrue(before.append(new Note("N1", "first")));
+
+        Transaction transaction = new Transaction();
+        transaction.update(before, new Note("N1", "in transaction"));
+        assertTrue(transaction.commit());
+        assertTrue(before.update(new Note("N1", "after")));
+
+        RecordStore<Note> restarted = Note.store(file);
+        assertEquals(1, restarted.loadAll().size());
+        assertEquals("after", Note.textOf(restarted, "N1"));
+    }
+}
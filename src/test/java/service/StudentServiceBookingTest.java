@@ -0,0 +1,108 @@
+package service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.Request;
+import model.Slot;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import repository.Repositories;
+import repository.UnitOfWork;
+
+/**
+ * Students booking the same slot at the same moment: exactly one gets it, and the
+ * slot is left ON_HOLD with exactly one request.
+ */
+class StudentServiceBookingTest {
+    private static final int STUDENTS = 8;
+
+    @BeforeAll
+    static void createDataDirectory() throws Exception {
+        // Before any file manager is loaded, since they find their files from here
+        Files.createDirectories(Paths.get("src", "main", "resources"));
+    }
+
+    @Test
+    void concurrentBookingsOfOneSlotBookItOnce() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(STUDENTS);
+        try {
+            for (int round = 0; round < 20; round++) {
+                Slot slot = openSlot();
+                CountDownLatch start = new CountDownLatch(1);
+                ArrayList<Future<BookingResult>> results = new ArrayList<>();
+                for (int i = 0; i < STUDENTS; i++) {
+                    StudentService student = new StudentService("TP0" + i);
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return student.createConsultationRequest(slot.getLecturerTp(), slot.getSlotId(), "race");
+                    }));
+                }
+                start.countDown();
+
+                int booked = 0;
+                for (Future<BookingResult> result : results) {
+                    BookingResult outcome = result.get();
+                    if (outcome.isBooked()) {
+                        booked++;
+                    } else {
+                        assertTrue(outcome == BookingResult.SLOT_TAKEN || outcome == BookingResult.SLOT_UNAVAILABLE,
+                                "unexpected " + outcome);
+                    }
+                }
+                assertEquals(1, booked, "bookings of " + slot.getSlotId());
+                assertEquals(1, requestsFor(slot.getSlotId()), "requests for " + slot.getSlotId());
+                assertEquals("ON_HOLD", Repositories.slots().findById(slot.getSlotId()).getStatus());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void claimStagedFromAStaleReadIsRejected() {
+        Slot slot = openSlot();
+        Slot read = Repositories.slots().findById(slot.getSlotId());
+
+        // Both read the slot while it was OPEN; the second commits after the first claimed it
+        UnitOfWork first = Repositories.begin();
+        UnitOfWork second = Repositories.begin();
+        assertTrue(Repositories.slots().compareAndSetStatus(first, slot.getSlotId(), read.getVersion(), "OPEN", "ON_HOLD"));
+        Repositories.requests().appendOne(first, request(slot, "TP01"));
+        assertTrue(Repositories.slots().compareAndSetStatus(second, slot.getSlotId(), read.getVersion(), "OPEN", "ON_HOLD"));
+        Repositories.requests().appendOne(second, request(slot, "TP02"));
+
+        assertTrue(first.commit());
+        assertFalse(second.commit());
+        assertEquals(1, requestsFor(slot.getSlotId()));
+    }
+
+    // A new OPEN slot a year ahead, so it is bookable and never sealed
+    private static Slot openSlot() {
+        Slot slot = new Slot(Repositories.slots().nextId(), "LEC-001",
+                LocalDate.now().plusYears(1).toString(), "09:00", "09:30", "OPEN");
+        assertTrue(Repositories.slots().appendOne(slot));
+        return slot;
+    }
+
+    private static Request request(Slot slot, String studentTp) {
+        return new Request(Repositories.requests().nextId(), studentTp, slot.getLecturerTp(), slot.getSlotId(),
+                slot.getDate(), slot.getStartTime(), slot.getEndTime(), "race", "PENDING");
+    }
+
+    private static long requestsFor(String slotId) {
+        return Repositories.requests().loadAll().stream()
+                .filter(request -> request.getSlotId().equals(slotId))
+                .count();
+    }
+}